@@ -1,6 +1,13 @@
 package cs209a.finalproject_demo;
 
+import cs209a.finalproject_demo.service.BulkReloadService;
 import cs209a.finalproject_demo.service.DataImportService;
+import cs209a.finalproject_demo.service.DatasetSwapService;
+import cs209a.finalproject_demo.service.ImportDeadLetterService;
+import cs209a.finalproject_demo.service.ImportEngine;
+import cs209a.finalproject_demo.service.ImportResult;
+import cs209a.finalproject_demo.service.PerThreadImportEngine;
+import cs209a.finalproject_demo.service.SolvabilitySketchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
@@ -10,12 +17,19 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 
+import java.util.List;
+
 /**
  * 独立的数据导入工具
  * 只执行数据导入，不启动 Web 服务器
  *
  * 使用方式：
  *   java -jar app.jar --import.directory=Sample_SO_data
+ *   java -jar app.jar --import.directory=Sample_SO_data --import.engine=bulk
+ *   java -jar app.jar --import.directory=Sample_SO_data --import.engine=bulk --import.bulk-reload=true
+ *   java -jar app.jar --import.directory=Sample_SO_data --import.engine=bulk --import.swap=true
+ *   java -jar app.jar --import.swap-rollback=true
+ *   java -jar app.jar --import.replay-quarantine=true --import.engine=batched
  *   或
  *   mvnw exec:java -Dexec.mainClass="cs209a.finalproject_demo.DataImporterApplication" -Dexec.args="--import.directory=Sample_SO_data"
  */
@@ -27,22 +41,52 @@ public class DataImporterApplication {
     public static void main(String[] args) {
         // 设置属性，确保CommandLineRunner被启用
         System.setProperty("import.importer", "true");
+        if (isSwapMode(args)) {
+            // 切换模式：导入进程的所有连接默认写暂存 schema；Flyway 仍只迁移 public
+            System.setProperty("spring.datasource.hikari.connection-init-sql", DatasetSwapService.STAGING_SEARCH_PATH_SQL);
+            System.setProperty("spring.flyway.default-schema", DatasetSwapService.LIVE_SCHEMA);
+        }
         SpringApplication app = new SpringApplication(DataImporterApplication.class);
         app.setWebApplicationType(WebApplicationType.NONE); // 不启动 Web 服务器
         app.run(args);
     }
 
+    /**
+     * 是否以蓝绿切换模式导入：命令行参数 --import.swap=true、系统属性 import.swap 或环境变量 IMPORT_SWAP
+     */
+    private static boolean isSwapMode(String[] args) {
+        for (String arg : args) {
+            if (arg.equalsIgnoreCase("--import.swap=true")) {
+                return true;
+            }
+        }
+        return Boolean.parseBoolean(System.getProperty("import.swap",
+                System.getenv().getOrDefault("IMPORT_SWAP", "false")));
+    }
+
     /**
      * 只有在明确指定使用DataImporterApplication作为主类时才启用
      * 或者设置了import.importer=true属性时才启用
      */
     @Bean
     @ConditionalOnProperty(name = "import.importer", havingValue = "true", matchIfMissing = false)
-    public CommandLineRunner importRunner(DataImportService importService) {
+    public CommandLineRunner importRunner(DataImportService importService,
+                                          List<ImportEngine> importEngines,
+                                          SolvabilitySketchService sketchService,
+                                          BulkReloadService bulkReloadService,
+                                          DatasetSwapService datasetSwapService,
+                                          ImportDeadLetterService deadLetterService) {
         return args -> {
             // 从命令行参数、系统属性或环境变量读取目录
             String directory = "Sample_SO_data"; // 默认值
             boolean cleanBeforeImport = false;   // 默认不清库，避免覆盖已有数据
+            boolean bulkReload = false;          // 批量重载：导入期间删除二级索引与外键，结束后并行重建
+            boolean swap = isSwapMode(args);     // 蓝绿切换：导入暂存 schema，校验后原子切换为正式数据
+            boolean swapRollback = false;        // 换回上一代数据，不导入
+            boolean replayQuarantine = false;    // 只重放隔离目录中被拒绝的数据源
+            // 导入引擎：thread（逐个 thread 事务，默认）、batched（流水线 + 批量 saveAll）、bulk（流水线 + COPY）
+            String engineName = System.getProperty("import.engine",
+                    System.getenv().getOrDefault("IMPORT_ENGINE", PerThreadImportEngine.NAME));
 
             // 1. 先检查命令行参数 (--import.directory=xxx)
             for (String arg : args) {
@@ -52,6 +96,22 @@ public class DataImporterApplication {
                 }
                 if (arg.equalsIgnoreCase("--import.clean=true")) {
                     cleanBeforeImport = true;
+                    continue;
+                }
+                if (arg.equalsIgnoreCase("--import.swap-rollback=true")) {
+                    swapRollback = true;
+                    continue;
+                }
+                if (arg.equalsIgnoreCase("--import.replay-quarantine=true")) {
+                    replayQuarantine = true;
+                    continue;
+                }
+                if (arg.equalsIgnoreCase("--import.bulk-reload=true")) {
+                    bulkReload = true;
+                    continue;
+                }
+                if (arg.startsWith("--import.engine=")) {
+                    engineName = arg.substring("--import.engine=".length());
                 }
             }
 
@@ -64,6 +124,12 @@ public class DataImporterApplication {
             }
             cleanBeforeImport = cleanBeforeImport ||
                     Boolean.parseBoolean(System.getProperty("import.clean", "false"));
+            bulkReload = bulkReload ||
+                    Boolean.parseBoolean(System.getProperty("import.bulk-reload", "false"));
+            swapRollback = swapRollback ||
+                    Boolean.parseBoolean(System.getProperty("import.swap-rollback", "false"));
+            replayQuarantine = replayQuarantine ||
+                    Boolean.parseBoolean(System.getProperty("import.replay-quarantine", "false"));
 
             // 3. 检查环境变量
             if (directory.equals("Sample_SO_data")) {
@@ -76,38 +142,75 @@ public class DataImporterApplication {
                 cleanBeforeImport = Boolean.parseBoolean(
                         System.getenv().getOrDefault("IMPORT_CLEAN", "false"));
             }
+            if (!bulkReload) {
+                bulkReload = Boolean.parseBoolean(
+                        System.getenv().getOrDefault("IMPORT_BULK_RELOAD", "false"));
+            }
+            if (!swapRollback) {
+                swapRollback = Boolean.parseBoolean(
+                        System.getenv().getOrDefault("IMPORT_SWAP_ROLLBACK", "false"));
+            }
+            if (!replayQuarantine) {
+                replayQuarantine = Boolean.parseBoolean(
+                        System.getenv().getOrDefault("IMPORT_REPLAY_QUARANTINE", "false"));
+            }
 
             log.info("========================================");
             log.info("Stack Overflow Data Importer");
             log.info("========================================");
             log.info("Import directory: {}", directory);
             log.info("Clean before import: {}", cleanBeforeImport);
+            log.info("Import engine: {}", engineName);
+            log.info("Bulk reload: {}", bulkReload);
+            log.info("Swap: {}", swap);
+            log.info("Replay quarantine: {}", replayQuarantine);
             log.info("========================================\n");
 
-            // 可选清库：默认不清空，避免覆盖已有数据
-            if (cleanBeforeImport) {
+            if (swapRollback) {
+                datasetSwapService.rollback();
+                return;
+            }
+
+            // 先校验引擎名称，避免清库后才发现参数错误
+            ImportEngine engine = ImportEngine.byName(importEngines, engineName);
+
+            // 上次批量重载中断时先恢复索引与外键
+            bulkReloadService.restoreIfPending();
+
+            if (replayQuarantine) {
+                // 只导入隔离目录，不清库、不切换；成功的副本删除，台账记录标记为已解决
+                ImportResult result = deadLetterService.replay(engine);
+                sketchService.rebuild();
+                result.logReport(log);
+                return;
+            }
+
+            if (swap) {
+                // 暂存 schema 每次都从空表开始，不需要清库，正式数据在切换前保持可读
+                datasetSwapService.prepareStaging();
+            } else if (cleanBeforeImport) {
+                // 可选清库：默认不清空，避免覆盖已有数据
                 importService.clearAllData();
             }
 
-            DataImportService.ImportResult result = importService.importFromDirectory(directory);
+            ImportResult result = bulkReload
+                    ? bulkReloadService.reload(engine, directory)
+                    : engine.importFromDirectory(directory);
+            if (result.isAborted()) {
+                // 数据库故障导致导入中止：不重建草图、不切换数据集，数据源留在原处，恢复后重新运行即可
+                result.logReport(log);
+                throw new IllegalStateException("Import aborted: " + result.getAbortReason());
+            }
 
-            log.info("\n========================================");
-            log.info("Import Summary");
-            log.info("========================================");
-            log.info("Success: {}", result.getSuccessCount());
-            log.info("Failed: {}", result.getFailedCount());
-            log.info("Skipped: {}", result.getSkippedCount());
-
-            if (!result.getErrors().isEmpty()) {
-                log.warn("\nErrors encountered (showing first 10):");
-                result.getErrors().stream()
-                        .limit(10)
-                        .forEach(error -> log.warn("  - {}", error));
-                if (result.getErrors().size() > 10) {
-                    log.warn("  ... and {} more errors", result.getErrors().size() - 10);
-                }
+            // 导入完成后重建可解性分析的按月草图（切换模式下建在暂存 schema 中，与数据一起切换）
+            sketchService.rebuild();
+
+            if (swap) {
+                datasetSwapService.swap();
             }
 
+            result.logReport(log);
+
             log.info("\n========================================");
             log.info("Import completed!");
             log.info("========================================");
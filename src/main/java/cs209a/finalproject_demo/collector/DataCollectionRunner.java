@@ -1,11 +1,22 @@
 package cs209a.finalproject_demo.collector;
 
+import cs209a.finalproject_demo.collector.client.ApiResponseCache;
 import cs209a.finalproject_demo.collector.client.StackOverflowApiClient;
 import cs209a.finalproject_demo.collector.config.CollectionConfig;
 import cs209a.finalproject_demo.collector.service.DataCollectorService;
+import cs209a.finalproject_demo.collector.saver.DatabaseThreadSink;
+import cs209a.finalproject_demo.collector.saver.FileThreadSink;
 import cs209a.finalproject_demo.collector.saver.ThreadDataSaver;
+import cs209a.finalproject_demo.collector.saver.ThreadSink;
+import cs209a.finalproject_demo.dataset.ThreadFileLoader;
+import cs209a.finalproject_demo.repository.QuestionRepository;
+import cs209a.finalproject_demo.service.BatchedImportEngine;
+import cs209a.finalproject_demo.service.BulkCopyImportEngine;
+import cs209a.finalproject_demo.service.DataImportServiceOptimized;
+import cs209a.finalproject_demo.service.SolvabilitySketchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -17,18 +28,26 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Optional;
 
 /**
  * 数据采集命令行工具
  * 使用方式：
  *   java -jar app.jar --collect.count=1000 --collect.output=Sample_SO_data
+ *   java -jar app.jar --collect.count=1000 --collect.sink=bulk --collect.archive=true
+ *   java -jar app.jar --collect.mode=delta --collect.sink=bulk
  *   或者设置环境变量后运行
+ *
+ * collect.sink：file（默认，写 JSON 文件）、batched / bulk（直接写库，写入端同导入引擎 batched / bulk），
+ * 直接写库时 collect.archive=true 会在后台同时把 JSON 文件写到 collect.output。
+ * collect.mode=delta：增量同步，重新采集最后活动时间不早于 collect.since（默认取库中最大值）的线程，写库时按主键更新，
+ * 只支持 batched / bulk 写入端且不能归档（JSON 文件按序号命名，会覆盖已有文件）。
  */
 /**
  * 默认禁用，只有激活 profile "collector" 时才会加载并触发采集。
  */
 @Profile("collector")
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = "cs209a.finalproject_demo") // 直接写库需要导入服务与仓库
 @Import(CollectionConfig.class)
 public class DataCollectionRunner {
 
@@ -43,15 +62,21 @@ public class DataCollectionRunner {
     @Bean
     public CommandLineRunner collectorCommandLineRunner(
             StackOverflowApiClient apiClient,
-            ThreadDataSaver dataSaver) {
+            ThreadDataSaver dataSaver,
+            ThreadFileLoader fileLoader,
+            DataImportServiceOptimized importService,
+            SolvabilitySketchService sketchService,
+            QuestionRepository questionRepository,
+            Optional<ApiResponseCache> responseCache,
+            @Value("${so.api.requests-per-second:25}") double requestsPerSecond,
+            @Value("${so.api.max-in-flight:8}") int maxInFlight) {
         return args -> {
             log.info("=== Stack Overflow Java Thread Data Collector ===");
             log.info("This tool will collect Java-related threads from Stack Overflow API");
             log.info("================================================");
 
             // 从系统属性或环境变量读取配置
-            String countStr = System.getProperty("collect.count", 
-                    System.getenv().getOrDefault("COLLECT_COUNT", "1000"));
+            String countStr = System.getProperty("collect.count", System.getenv("COLLECT_COUNT"));
             String outputDir = System.getProperty("collect.output",
                     System.getenv().getOrDefault("COLLECT_OUTPUT", "Sample_SO_data"));
             String accessToken = System.getProperty("collect.token",
@@ -60,10 +85,44 @@ public class DataCollectionRunner {
                     System.getenv().getOrDefault("COLLECT_FROM", null));
             String toDateStr = System.getProperty("collect.to",
                     System.getenv().getOrDefault("COLLECT_TO", null));
+            String sinkName = System.getProperty("collect.sink",
+                    System.getenv().getOrDefault("COLLECT_SINK", "file"));
+            boolean archive = Boolean.parseBoolean(System.getProperty("collect.archive",
+                    System.getenv().getOrDefault("COLLECT_ARCHIVE", "false")));
+            String mode = System.getProperty("collect.mode",
+                    System.getenv().getOrDefault("COLLECT_MODE", "full"));
+            String sinceStr = System.getProperty("collect.since",
+                    System.getenv().getOrDefault("COLLECT_SINCE", null));
+            for (String arg : args) {
+                if (arg.startsWith("--collect.sink=")) {
+                    sinkName = arg.substring("--collect.sink=".length());
+                } else if (arg.equalsIgnoreCase("--collect.archive=true")) {
+                    archive = true;
+                } else if (arg.startsWith("--collect.mode=")) {
+                    mode = arg.substring("--collect.mode=".length());
+                } else if (arg.startsWith("--collect.since=")) {
+                    sinceStr = arg.substring("--collect.since=".length());
+                }
+            }
+            boolean delta = mode.equalsIgnoreCase("delta");
+            if (!delta && !mode.equalsIgnoreCase("full")) {
+                log.error("Unknown mode '{}', expected full or delta", mode);
+                return;
+            }
+            // JSON 文件按采集序号命名（thread_01.json ...），增量同步写文件会覆盖已有线程的数据
+            if (delta && (sinkName.equalsIgnoreCase("file") || archive)) {
+                log.error("Delta sync writes to the database only: use --collect.sink={} or {} "
+                        + "without collect.archive (JSON files are named by index and would overwrite "
+                        + "previously collected threads)", BatchedImportEngine.NAME, BulkCopyImportEngine.NAME);
+                return;
+            }
 
             int targetCount;
             try {
-                targetCount = Integer.parseInt(countStr);
+                // 增量同步默认不设上限：按活动时间从新到旧翻页，中途停止会漏掉更早的变化
+                targetCount = countStr == null
+                        ? (delta ? Integer.MAX_VALUE : 1000)
+                        : Integer.parseInt(countStr);
                 if (targetCount < 1) {
                     log.error("Invalid count: {}. Must be at least 1.", targetCount);
                     return;
@@ -77,26 +136,72 @@ public class DataCollectionRunner {
             Long fromDate = parseDate(fromDateStr);
             Long toDate = parseDate(toDateStr);
 
+            // 增量同步的起点：指定的时间，否则为库中问题的最大最后活动时间
+            Long sinceDate = null;
+            if (delta) {
+                sinceDate = parseDate(sinceStr);
+                if (sinceDate == null) {
+                    sinceDate = questionRepository.findMaxLastActivityDate()
+                            .map(Instant::getEpochSecond)
+                            .orElse(null);
+                }
+                if (sinceDate == null) {
+                    log.error("Delta sync needs collect.since or existing questions in the database; "
+                            + "run a full collection first");
+                    return;
+                }
+            }
+
             log.info("Configuration:");
-            log.info("  Target count: {}", targetCount);
+            log.info("  Mode: {}", delta ? "delta (threads active since " + formatDate(sinceDate) + ")" : "full");
+            log.info("  Target count: {}", targetCount == Integer.MAX_VALUE ? "unlimited" : targetCount);
             log.info("  Output directory: {}", outputDir);
+            log.info("  Sink: {}{}", sinkName, archive ? " (with JSON archive)" : "");
             log.info("  Date range: {} to {}", 
                     fromDate != null ? formatDate(fromDate) : "default",
                     toDate != null ? formatDate(toDate) : "default");
             log.info("  Access token: {}", accessToken.isEmpty() ? "not set" : "set");
 
-            // 创建 API 客户端
-            StackOverflowApiClient client = accessToken.isEmpty() 
-                    ? new StackOverflowApiClient() 
-                    : new StackOverflowApiClient(accessToken);
+            // 创建 API 客户端：命令行给出令牌时单独创建（沿用速率与缓存配置），否则使用配置好的客户端
+            StackOverflowApiClient client = accessToken.isEmpty()
+                    ? apiClient
+                    : new StackOverflowApiClient(accessToken, null, requestsPerSecond, maxInFlight,
+                            responseCache.orElse(null));
 
             // 创建服务
             DataCollectorService collectorService = new DataCollectorService(client, dataSaver);
 
+            // 写入端：JSON 文件，或直接写库（可选同时归档 JSON 文件）
+            ThreadSink sink;
+            if (sinkName.equalsIgnoreCase("file")) {
+                sink = new FileThreadSink(dataSaver, outputDir);
+            } else if (sinkName.equalsIgnoreCase(BatchedImportEngine.NAME)
+                    || sinkName.equalsIgnoreCase(BulkCopyImportEngine.NAME)) {
+                DataImportServiceOptimized.Sink writeSink = sinkName.equalsIgnoreCase(BulkCopyImportEngine.NAME)
+                        ? DataImportServiceOptimized.Sink.COPY : DataImportServiceOptimized.Sink.JPA;
+                // 一页问题（100 个）为一批
+                sink = new DatabaseThreadSink(fileLoader, importService, writeSink, 100,
+                        archive ? dataSaver : null, outputDir);
+            } else {
+                log.error("Unknown sink '{}', expected file, {} or {}", sinkName,
+                        BatchedImportEngine.NAME, BulkCopyImportEngine.NAME);
+                return;
+            }
+
             // 开始采集
             log.info("\nStarting collection...\n");
-            DataCollectorService.CollectionResult result = collectorService.collectThreads(
-                    targetCount, outputDir, fromDate, toDate);
+            DataCollectorService.CollectionResult result;
+            try (ThreadSink openSink = sink) {
+                result = delta
+                        ? collectorService.collectChangedThreads(sinceDate, targetCount, openSink)
+                        : collectorService.collectThreads(targetCount, openSink, fromDate, toDate);
+            }
+            if (sink instanceof DatabaseThreadSink databaseSink && databaseSink.getResult().isAborted()) {
+                log.error("Database writes were aborted: {}", databaseSink.getResult().getAbortReason());
+            } else if (sink instanceof DatabaseThreadSink) {
+                // 与导入工具一样，写库后重建可解性分析的按月草图
+                sketchService.rebuild();
+            }
 
             // 输出结果
             log.info("\n=== Collection Summary ===");
@@ -116,7 +221,7 @@ public class DataCollectionRunner {
                 }
             }
 
-            log.info("\nCollection completed! Data saved to: {}", outputDir);
+            log.info("\nCollection completed! Data saved to: {}", sink);
         };
     }
 
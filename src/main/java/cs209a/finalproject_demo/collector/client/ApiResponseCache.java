@@ -0,0 +1,334 @@
+package cs209a.finalproject_demo.collector.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * API 响应的磁盘缓存：重复采集与开发调试时不再消耗配额
+ *
+ * 1. 键：规范化后的请求 URL（去掉 key 与 access_token，其余参数排序）的 SHA-256，
+ *    响应体（已解压的 JSON）以 gzip 保存为 {@code <前两位>/<哈希>.json.gz}
+ * 2. 有效期：按端点类型分别设置（问题列表会随新问题变化，回答与评论变化较慢），文件修改时间即抓取时间
+ * 3. 容量：总大小超过上限时按最近最少使用淘汰；使用顺序只在内存中维护，启动时按抓取时间近似
+ * 4. 离线模式：只读缓存，忽略有效期，未命中时直接失败，不发出任何请求
+ *
+ * 只缓存成功的响应（HTTP 200 且不含 error_id），写入先落到临时文件，确认成功后原子替换。
+ */
+public class ApiResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiResponseCache.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SUFFIX = ".json.gz";
+
+    /**
+     * 端点类型（按 URL 路径区分）
+     */
+    public enum Endpoint {
+        QUESTIONS,          // /questions
+        ANSWERS,            // /questions/{ids}/answers
+        QUESTION_COMMENTS,  // /questions/{ids}/comments
+        ANSWER_COMMENTS,    // /answers/{ids}/comments
+        OTHER;
+
+        static Endpoint of(String path) {
+            String[] segments = Arrays.stream(path.split("/")).filter(s -> !s.isEmpty()).toArray(String[]::new);
+            // 路径形如 /2.3/questions/{ids}/answers，跳过版本号
+            int start = segments.length > 0 && Character.isDigit(segments[0].charAt(0)) ? 1 : 0;
+            int length = segments.length - start;
+            if (length == 1 && segments[start].equals("questions")) {
+                return QUESTIONS;
+            }
+            if (length == 3 && segments[start].equals("questions") && segments[start + 2].equals("answers")) {
+                return ANSWERS;
+            }
+            if (length == 3 && segments[start].equals("questions") && segments[start + 2].equals("comments")) {
+                return QUESTION_COMMENTS;
+            }
+            if (length == 3 && segments[start].equals("answers") && segments[start + 2].equals("comments")) {
+                return ANSWER_COMMENTS;
+            }
+            return OTHER;
+        }
+    }
+
+    private final Path directory;
+    private final Map<Endpoint, Duration> ttls;
+    private final long maxBytes;
+    private final boolean offline;
+
+    // 哈希 → 文件大小，按访问顺序排列（最久未用的在前）
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * @param directory 缓存目录
+     * @param ttls 各端点类型的有效期，未列出的类型不缓存
+     * @param maxBytes 缓存总大小上限
+     * @param offline 是否只从缓存回放
+     */
+    public ApiResponseCache(Path directory, Map<Endpoint, Duration> ttls, long maxBytes, boolean offline)
+            throws IOException {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.ttls = ttls.isEmpty() ? Map.of() : new EnumMap<>(ttls);
+        this.maxBytes = maxBytes;
+        this.offline = offline;
+        Files.createDirectories(this.directory);
+        loadIndex();
+        log.info("Response cache at {}: {} entries, {} MB{}", this.directory, entries.size(),
+                totalBytes / (1024 * 1024), offline ? " (offline replay)" : "");
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * 读取未过期的缓存响应（离线模式下忽略有效期）
+     * @return 解压后的 JSON 流，调用方负责关闭；未命中时为空
+     */
+    public Optional<InputStream> lookup(String url) {
+        Endpoint endpoint = Endpoint.of(URI.create(url).getPath());
+        Duration ttl = ttls.get(endpoint);
+        if (ttl == null && !offline) {
+            return Optional.empty();
+        }
+        String hash = hash(url);
+        synchronized (this) {
+            if (entries.get(hash) == null) {
+                return Optional.empty();
+            }
+        }
+        Path file = pathOf(hash);
+        try {
+            if (!offline) {
+                Instant fetchedAt = Files.getLastModifiedTime(file).toInstant();
+                if (fetchedAt.plus(ttl).isBefore(Instant.now())) {
+                    return Optional.empty();
+                }
+            }
+            return Optional.of(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)), BUFFER_SIZE));
+        } catch (IOException e) {
+            // 文件损坏或已被删除：当作未命中，之后的成功响应会覆盖它
+            log.debug("Dropping unreadable cache entry {}: {}", file.getFileName(), e.getMessage());
+            remove(hash);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 开始写入一个响应；端点类型不缓存时返回 null
+     */
+    public Entry begin(String url) throws IOException {
+        if (offline || !ttls.containsKey(Endpoint.of(URI.create(url).getPath()))) {
+            return null;
+        }
+        return new Entry(hash(url));
+    }
+
+    /**
+     * 一个正在写入的缓存项：{@link #tee} 返回的流被读取时同时写入临时文件，
+     * {@link #commit} 后生效，未提交就关闭则丢弃临时文件
+     */
+    public final class Entry implements Closeable {
+        private final String hash;
+        private final Path temp;
+        private final OutputStream out;
+        private boolean committed;
+
+        private Entry(String hash) throws IOException {
+            this.hash = hash;
+            this.temp = Files.createTempFile(directory, ".response-", ".tmp");
+            this.out = new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE);
+        }
+
+        /**
+         * 包装响应流：读到的每个字节同时写入缓存
+         */
+        public InputStream tee(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        out.write(b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int n = super.read(buffer, offset, length);
+                    if (n > 0) {
+                        out.write(buffer, offset, n);
+                    }
+                    return n;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    // 跳过的字节也必须写入缓存
+                    return read(new byte[(int) Math.min(n, BUFFER_SIZE)]);
+                }
+            };
+        }
+
+        /**
+         * 响应已完整读取且确认成功：替换缓存文件并按容量上限淘汰
+         */
+        public void commit() throws IOException {
+            out.close();
+            Path target = pathOf(hash);
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            put(hash, Files.size(target));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed) {
+                return;
+            }
+            try {
+                out.close();
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * 去掉 key 与 access_token、其余参数排序后的 URL（缓存与凭证无关）
+     */
+    static String normalize(String url) {
+        URI uri = URI.create(url);
+        String query = uri.getRawQuery() == null ? "" : Arrays.stream(uri.getRawQuery().split("&"))
+                .filter(param -> !param.isEmpty())
+                .filter(param -> {
+                    String name = param.contains("=") ? param.substring(0, param.indexOf('=')) : param;
+                    return !name.equals("key") && !name.equals("access_token");
+                })
+                .sorted()
+                .collect(Collectors.joining("&"));
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase() + "://";
+        String host = uri.getRawAuthority() == null ? "" : uri.getRawAuthority().toLowerCase();
+        return scheme + host + uri.getRawPath() + (query.isEmpty() ? "" : "?" + query);
+    }
+
+    private static String hash(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(normalize(url).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Path pathOf(String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash + SUFFIX);
+    }
+
+    private synchronized void put(String hash, long size) {
+        Long previous = entries.put(hash, size);
+        totalBytes += size - (previous != null ? previous : 0);
+        evict();
+    }
+
+    private synchronized void remove(String hash) {
+        Long size = entries.remove(hash);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        try {
+            Files.deleteIfExists(pathOf(hash));
+        } catch (IOException e) {
+            log.debug("Failed to delete cache entry {}: {}", hash, e.getMessage());
+        }
+    }
+
+    /**
+     * 淘汰最久未用的项，直到总大小不超过上限
+     */
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        int evicted = 0;
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            try {
+                Files.deleteIfExists(pathOf(eldest.getKey()));
+            } catch (IOException e) {
+                log.debug("Failed to evict cache entry {}: {}", eldest.getKey(), e.getMessage());
+            }
+            evicted++;
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} cache entries, {} MB remain", evicted, totalBytes / (1024 * 1024));
+        }
+    }
+
+    /**
+     * 启动时扫描缓存目录，按抓取时间从旧到新建立使用顺序，并清理上次中断留下的临时文件
+     */
+    private void loadIndex() throws IOException {
+        record Item(String hash, long size, FileTime modified) {
+        }
+        List<Item> items = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(SUFFIX)) {
+                    items.add(new Item(name.substring(0, name.length() - SUFFIX.length()),
+                            Files.size(file), Files.getLastModifiedTime(file)));
+                }
+            }
+        }
+        items.sort((a, b) -> a.modified().compareTo(b.modified()));
+        synchronized (this) {
+            for (Item item : items) {
+                entries.put(item.hash(), item.size());
+                totalBytes += item.size();
+            }
+            evict();
+        }
+    }
+}
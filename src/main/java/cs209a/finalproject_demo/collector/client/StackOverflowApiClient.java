@@ -6,20 +6,47 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Stack Overflow API 客户端
  * 处理 API 请求、速率限制和重试逻辑
+ *
+ * 请求通过 {@link HttpClient#sendAsync} 并发发出：
+ * 1. 速率：所有请求共享一个无锁令牌桶（{@link TokenBucketRateLimiter}），等待令牌用延迟执行器，不阻塞线程；
+ *    响应中的 backoff 与 HTTP 429 的 retry-after 推迟之后的所有请求，quota_remaining 耗尽时拒绝新请求
+ * 2. 并发：同时在途的请求数有上限，达到上限时发起请求的线程等待
+ * 3. 重试：失败的请求按指数退避异步重试，最多 3 次
+ * 4. 传输：优先使用 HTTP/2（同一连接复用多个请求），显式声明接受 gzip / deflate；
+ *    响应体以 InputStream 接收，按 Content-Encoding 解压后直接交给 Jackson 流式解析，不经过中间 String
+ * 5. 缓存：可选的磁盘缓存（{@link ApiResponseCache}），命中时不发请求、不消耗配额；离线模式下只从缓存回放
+ * 客户端是线程安全的，多个采集线程可以共用。
  */
 @Component
 public class StackOverflowApiClient {
@@ -29,29 +56,65 @@ public class StackOverflowApiClient {
     private static final String BASE_URL = "https://api.stackexchange.com/2.3";
     private static final String SITE = "stackoverflow";
     
-    // 速率限制：每秒最多 30 个请求（保守估计）
-    private static final long MIN_REQUEST_INTERVAL_MS = 100;
+    // 速率限制：Stack Exchange 对同一 IP 每秒超过 30 个请求会直接封禁，默认按 25 个/秒发放令牌
+    private static final double DEFAULT_REQUESTS_PER_SECOND = 25;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    private static final int MAX_RETRIES = 3;
+    // 按 ID 查询时每个请求最多 100 个 ID，每页最多 100 条
+    private static final int MAX_IDS_PER_REQUEST = 100;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 非 200 响应只读取前若干字节作为错误信息
+    private static final int MAX_ERROR_BODY_BYTES = 4096;
     
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
     private final String accessToken;
     private final String apiKey;
-    
-    private long lastRequestTime = 0;
-    private int quotaRemaining = Integer.MAX_VALUE;
-    private int backoffSeconds = 0;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final Semaphore inFlight;
+    // 读取并解析响应体的线程；InputStream 的读取是阻塞的，不能放在 HttpClient 自己的线程上
+    private final Executor bodyReader;
+    private final ApiResponseCache cache;
 
     public StackOverflowApiClient(String accessToken) {
         this(accessToken, null);
     }
 
     public StackOverflowApiClient(String accessToken, String apiKey) {
+        this(accessToken, apiKey, DEFAULT_REQUESTS_PER_SECOND, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param requestsPerSecond 每秒请求数上限（令牌发放速率）
+     * @param maxInFlight 同时在途的请求数上限
+     */
+    public StackOverflowApiClient(String accessToken, String apiKey, double requestsPerSecond, int maxInFlight) {
+        this(accessToken, apiKey, requestsPerSecond, maxInFlight, null);
+    }
+
+    /**
+     * @param cache 响应缓存，为 null 时不缓存
+     */
+    public StackOverflowApiClient(String accessToken, String apiKey, double requestsPerSecond, int maxInFlight,
+                                  ApiResponseCache cache) {
+        this.cache = cache;
         this.accessToken = accessToken;
         this.apiKey = apiKey;
         this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
                 .connectTimeout(Duration.ofSeconds(30))
                 .build();
         this.objectMapper = new ObjectMapper();
+        this.rateLimiter = new TokenBucketRateLimiter(requestsPerSecond, 1);
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        // 同时解析的响应数不超过在途请求数
+        AtomicInteger readerCounter = new AtomicInteger();
+        this.bodyReader = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "so-api-reader-" + readerCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public StackOverflowApiClient() {
@@ -99,22 +162,59 @@ public class StackOverflowApiClient {
     }
 
     /**
-     * 获取问题的所有回答
+     * 获取最后活动时间不早于指定时间的带 java 标签问题，按最后活动时间从新到旧排列（增量同步用）
+     * sort=activity 时 min 作用于 last_activity_date；新的活动只会把问题移到第一页，
+     * 从新到旧翻页时后面的页只会出现重复，不会漏掉问题
+     *
+     * @param minActivityDate 最后活动时间下限（Unix 时间戳，包含）
+     */
+    public ApiResponse fetchQuestionsActiveSince(int page, int pageSize, long minActivityDate)
+            throws IOException, InterruptedException {
+        List<String> params = new ArrayList<>();
+        params.add("tagged=java");
+        params.add("site=" + SITE);
+        params.add("page=" + page);
+        params.add("pagesize=" + Math.min(pageSize, 100));
+        params.add("sort=activity");
+        params.add("order=desc");
+        params.add("min=" + minActivityDate);
+        params.add("filter=withbody");
+
+        if (apiKey != null && !apiKey.isEmpty()) {
+            params.add("key=" + apiKey);
+        }
+        if (accessToken != null && !accessToken.isEmpty()) {
+            params.add("access_token=" + accessToken);
+        }
+
+        return executeRequest(BASE_URL + "/questions?" + String.join("&", params));
+    }
+
+    /**
+     * 获取问题的所有回答（第一页）
      */
     public ApiResponse fetchAnswers(List<Long> questionIds) throws IOException, InterruptedException {
+        return fetchAnswers(questionIds, 1);
+    }
+
+    /**
+     * 获取一批问题（最多 100 个）的回答，按页读取，每页最多 100 条
+     */
+    public ApiResponse fetchAnswers(List<Long> questionIds, int page) throws IOException, InterruptedException {
         if (questionIds.isEmpty()) {
             return new ApiResponse(null, Map.of("items", List.of()), false, 0);
         }
+        return executeRequest(answersUrl(questionIds, page));
+    }
 
+    private String answersUrl(List<Long> questionIds, int page) {
         // API 最多支持 100 个 ID
-        String ids = questionIds.stream()
-                .limit(100)
-                .map(String::valueOf)
-                .reduce((a, b) -> a + ";" + b)
-                .orElse("");
+        String ids = joinIds(questionIds);
 
         List<String> params = new ArrayList<>();
         params.add("site=" + SITE);
+        params.add("page=" + page);
+        params.add("pagesize=" + MAX_PAGE_SIZE);
         params.add("filter=withbody");
         params.add("order=desc");
         params.add("sort=votes");
@@ -126,26 +226,35 @@ public class StackOverflowApiClient {
             params.add("access_token=" + accessToken);
         }
 
-        String url = BASE_URL + "/questions/" + ids + "/answers?" + String.join("&", params);
-        return executeRequest(url);
+        return BASE_URL + "/questions/" + ids + "/answers?" + String.join("&", params);
     }
 
     /**
-     * 获取问题的评论
+     * 获取问题的评论（第一页）
      */
     public ApiResponse fetchQuestionComments(List<Long> questionIds) throws IOException, InterruptedException {
+        return fetchQuestionComments(questionIds, 1);
+    }
+
+    /**
+     * 获取一批问题（最多 100 个）的评论，按页读取，每页最多 100 条
+     */
+    public ApiResponse fetchQuestionComments(List<Long> questionIds, int page)
+            throws IOException, InterruptedException {
         if (questionIds.isEmpty()) {
             return new ApiResponse(null, Map.of("items", List.of()), false, 0);
         }
+        return executeRequest(questionCommentsUrl(questionIds, page));
+    }
 
-        String ids = questionIds.stream()
-                .limit(100)
-                .map(String::valueOf)
-                .reduce((a, b) -> a + ";" + b)
-                .orElse("");
+    private String questionCommentsUrl(List<Long> questionIds, int page) {
+        // API 最多支持 100 个 ID
+        String ids = joinIds(questionIds);
 
         List<String> params = new ArrayList<>();
         params.add("site=" + SITE);
+        params.add("page=" + page);
+        params.add("pagesize=" + MAX_PAGE_SIZE);
         params.add("filter=withbody");
         params.add("order=desc");
         params.add("sort=creation");
@@ -157,26 +266,34 @@ public class StackOverflowApiClient {
             params.add("access_token=" + accessToken);
         }
 
-        String url = BASE_URL + "/questions/" + ids + "/comments?" + String.join("&", params);
-        return executeRequest(url);
+        return BASE_URL + "/questions/" + ids + "/comments?" + String.join("&", params);
     }
 
     /**
-     * 获取回答的评论
+     * 获取回答的评论（第一页）
      */
     public ApiResponse fetchAnswerComments(List<Long> answerIds) throws IOException, InterruptedException {
+        return fetchAnswerComments(answerIds, 1);
+    }
+
+    /**
+     * 获取一批回答（最多 100 个）的评论，按页读取，每页最多 100 条
+     */
+    public ApiResponse fetchAnswerComments(List<Long> answerIds, int page) throws IOException, InterruptedException {
         if (answerIds.isEmpty()) {
             return new ApiResponse(null, Map.of("items", List.of()), false, 0);
         }
+        return executeRequest(answerCommentsUrl(answerIds, page));
+    }
 
-        String ids = answerIds.stream()
-                .limit(100)
-                .map(String::valueOf)
-                .reduce((a, b) -> a + ";" + b)
-                .orElse("");
+    private String answerCommentsUrl(List<Long> answerIds, int page) {
+        // API 最多支持 100 个 ID
+        String ids = joinIds(answerIds);
 
         List<String> params = new ArrayList<>();
         params.add("site=" + SITE);
+        params.add("page=" + page);
+        params.add("pagesize=" + MAX_PAGE_SIZE);
         params.add("filter=withbody");
         params.add("order=desc");
         params.add("sort=creation");
@@ -188,106 +305,326 @@ public class StackOverflowApiClient {
             params.add("access_token=" + accessToken);
         }
 
-        String url = BASE_URL + "/answers/" + ids + "/comments?" + String.join("&", params);
-        return executeRequest(url);
+        return BASE_URL + "/answers/" + ids + "/comments?" + String.join("&", params);
+    }
+
+    /**
+     * 获取任意数量问题的全部回答：每 100 个 ID 一组，每组读到 has_more 为 false
+     */
+    public List<JsonNode> fetchAllAnswers(List<Long> questionIds) throws IOException, InterruptedException {
+        return fetchAllPages(questionIds, (ids, page) -> executeRequestAsync(answersUrl(ids, page)));
+    }
+
+    /**
+     * 获取任意数量问题的全部评论
+     */
+    public List<JsonNode> fetchAllQuestionComments(List<Long> questionIds) throws IOException, InterruptedException {
+        return fetchAllPages(questionIds, (ids, page) -> executeRequestAsync(questionCommentsUrl(ids, page)));
+    }
+
+    /**
+     * 获取任意数量回答的全部评论
+     */
+    public List<JsonNode> fetchAllAnswerComments(List<Long> answerIds) throws IOException, InterruptedException {
+        return fetchAllPages(answerIds, (ids, page) -> executeRequestAsync(answerCommentsUrl(ids, page)));
+    }
+
+    /**
+     * 按 ID 查询的分页请求
+     */
+    @FunctionalInterface
+    private interface PagedFetch {
+        CompletableFuture<ApiResponse> fetch(List<Long> ids, int page) throws InterruptedException;
     }
 
     /**
-     * 执行 HTTP 请求，处理速率限制和错误重试
+     * 每组 ID 的第一页并发请求，之后每一轮并发请求上一轮中 has_more 为 true 的各组的下一页
+     */
+    private List<JsonNode> fetchAllPages(List<Long> ids, PagedFetch fetch) throws IOException, InterruptedException {
+        List<List<Long>> pending = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_REQUEST) {
+            pending.add(ids.subList(from, Math.min(from + MAX_IDS_PER_REQUEST, ids.size())));
+        }
+        List<JsonNode> items = new ArrayList<>();
+        for (int page = 1; !pending.isEmpty(); page++) {
+            List<CompletableFuture<ApiResponse>> responses = new ArrayList<>(pending.size());
+            for (List<Long> chunk : pending) {
+                responses.add(fetch.fetch(chunk, page));
+            }
+            List<List<Long>> more = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                ApiResponse response = await(responses.get(i));
+                items.addAll(response.getItems());
+                if (response.hasMore()) {
+                    more.add(pending.get(i));
+                }
+            }
+            pending = more;
+        }
+        return items;
+    }
+
+    private static String joinIds(List<Long> ids) {
+        return ids.stream()
+                .limit(MAX_IDS_PER_REQUEST)
+                .map(String::valueOf)
+                .collect(Collectors.joining(";"));
+    }
+
+    /**
+     * 执行 HTTP 请求并等待结果（速率限制、并发上限与重试见 {@link #executeRequestAsync}）
      */
     private ApiResponse executeRequest(String url) throws IOException, InterruptedException {
-        // 处理 backoff
-        if (backoffSeconds > 0) {
-            log.warn("Waiting {} seconds due to backoff", backoffSeconds);
-            TimeUnit.SECONDS.sleep(backoffSeconds);
-            backoffSeconds = 0;
+        return await(executeRequestAsync(url));
+    }
+
+    /**
+     * 异步执行 HTTP 请求
+     * 在途请求数达到上限时在调用线程中等待；之后的令牌等待、发送与重试都不占用调用线程
+     */
+    private CompletableFuture<ApiResponse> executeRequestAsync(String url) throws InterruptedException {
+        if (cache != null) {
+            ApiResponse cached = readCached(url);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            if (cache.isOffline()) {
+                return CompletableFuture.failedFuture(
+                        new IOException("Offline replay: no cached response for " + ApiResponseCache.normalize(url)));
+            }
         }
+        inFlight.acquire();
+        CompletableFuture<ApiResponse> future;
+        try {
+            future = send(url, 0);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        return future.whenComplete((response, error) -> inFlight.release());
+    }
 
-        // 速率限制：确保请求间隔
-        long now = System.currentTimeMillis();
-        long timeSinceLastRequest = now - lastRequestTime;
-        if (timeSinceLastRequest < MIN_REQUEST_INTERVAL_MS) {
-            Thread.sleep(MIN_REQUEST_INTERVAL_MS - timeSinceLastRequest);
+    private CompletableFuture<ApiResponse> send(String url, int attempt) {
+        long waitNanos;
+        try {
+            waitNanos = rateLimiter.reserve();
+        } catch (TokenBucketRateLimiter.QuotaExhaustedException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        lastRequestTime = System.currentTimeMillis();
 
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(url))
                 .timeout(Duration.ofSeconds(30))
+                .header("Accept-Encoding", "gzip, deflate")
                 .GET()
                 .build();
 
-        int maxRetries = 3;
-        int retryCount = 0;
-        Exception lastException = null;
+        return CompletableFuture.runAsync(() -> { },
+                        CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS))
+                .thenCompose(ignored -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()))
+                .thenApplyAsync(response -> toApiResponse(url, response), bodyReader)
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    if (cause instanceof TokenBucketRateLimiter.QuotaExhaustedException) {
+                        return CompletableFuture.<ApiResponse>failedFuture(cause);
+                    }
+                    if (attempt + 1 >= MAX_RETRIES) {
+                        return CompletableFuture.<ApiResponse>failedFuture(
+                                new IOException("Failed after " + MAX_RETRIES + " attempts", cause));
+                    }
+                    // 429 已通过令牌桶推迟之后的请求，其余错误按指数退避
+                    long waitMillis = cause instanceof RateLimitedException ? 0 : (1L << (attempt + 1)) * 1000;
+                    log.warn("Request failed (attempt {}/{}), retrying in {} ms: {}",
+                            attempt + 1, MAX_RETRIES, waitMillis, cause.getMessage());
+                    return CompletableFuture.runAsync(() -> { },
+                                    CompletableFuture.delayedExecutor(waitMillis, TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> send(url, attempt + 1));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * 读取缓存的响应；未命中或缓存项无法解析时返回 null
+     */
+    private ApiResponse readCached(String url) {
+        Optional<InputStream> cached = cache.lookup(url);
+        if (cached.isEmpty()) {
+            return null;
+        }
+        try (InputStream in = cached.get()) {
+            ApiResponse response = toApiResponse(objectMapper.readTree(in));
+            log.debug("Cache hit: {}", ApiResponseCache.normalize(url));
+            return response;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable cached response for {}: {}", ApiResponseCache.normalize(url), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 解析响应，记录配额与 backoff，成功的响应写入缓存；失败时抛出 {@link CompletionException}（包装 IOException）
+     */
+    private ApiResponse toApiResponse(String url, HttpResponse<InputStream> response) {
+        try (InputStream body = decode(response)) {
+            // 检查 HTTP 状态码
+            if (response.statusCode() == 429) {
+                // 速率限制：之后的所有请求都推迟
+                int retryAfter = Integer.parseInt(response.headers().firstValue("retry-after").orElse("60"));
+                rateLimiter.pause(retryAfter, TimeUnit.SECONDS);
+                log.warn("Rate limit reached. Backoff: {} seconds", retryAfter);
+                throw new RateLimitedException(retryAfter);
+            }
+
+            if (response.statusCode() != 200) {
+                String error = new String(body.readNBytes(MAX_ERROR_BODY_BYTES), StandardCharsets.UTF_8);
+                throw new IOException("HTTP " + response.statusCode() + ": " + error);
+            }
 
-        while (retryCount < maxRetries) {
+            // 直接从解压流解析，不生成中间 String；启用缓存时边读边写入缓存
+            ApiResponseCache.Entry entry = cache != null ? cache.begin(url) : null;
+            InputStream in = entry != null ? entry.tee(body) : body;
+            JsonNode root;
             try {
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-                
-                // 检查 HTTP 状态码
-                if (response.statusCode() == 429) {
-                    // 速率限制
-                    String retryAfter = response.headers().firstValue("retry-after").orElse("60");
-                    backoffSeconds = Integer.parseInt(retryAfter);
-                    log.warn("Rate limit reached. Backoff: {} seconds", backoffSeconds);
-                    Thread.sleep(backoffSeconds * 1000L);
-                    backoffSeconds = 0;
-                    retryCount++;
-                    continue;
+                root = objectMapper.readTree(in);
+            } catch (IOException e) {
+                if (entry != null) {
+                    entry.close();
                 }
+                throw e;
+            }
 
-                if (response.statusCode() != 200) {
-                    throw new IOException("HTTP " + response.statusCode() + ": " + response.body());
-                }
+            // 提取配额信息
+            if (root.has("quota_remaining")) {
+                rateLimiter.updateQuota(root.path("quota_remaining").asInt());
+            }
+            if (root.has("backoff")) {
+                int backoffSeconds = root.path("backoff").asInt();
+                log.warn("API requested backoff of {} seconds", backoffSeconds);
+                rateLimiter.pause(backoffSeconds, TimeUnit.SECONDS);
+            }
 
-                JsonNode root = objectMapper.readTree(response.body());
-                
-                // 提取配额信息
-                if (root.has("quota_remaining")) {
-                    quotaRemaining = root.path("quota_remaining").asInt();
-                }
-                if (root.has("backoff")) {
-                    backoffSeconds = root.path("backoff").asInt();
+            // 检查错误
+            if (root.has("error_id")) {
+                int errorId = root.path("error_id").asInt();
+                String errorMessage = root.path("error_message").asText("Unknown error");
+                if (entry != null) {
+                    entry.close();
                 }
+                throw new IOException("API Error " + errorId + ": " + errorMessage);
+            }
+            if (entry != null) {
+                commit(entry);
+            }
 
-                // 检查错误
-                if (root.has("error_id")) {
-                    int errorId = root.path("error_id").asInt();
-                    String errorMessage = root.path("error_message").asText("Unknown error");
-                    throw new IOException("API Error " + errorId + ": " + errorMessage);
-                }
+            ApiResponse apiResponse = toApiResponse(root);
+            log.debug("API request successful. Items: {}, Has more: {}, Quota remaining: {}",
+                     apiResponse.getItems().size(), apiResponse.hasMore(), apiResponse.getQuotaRemaining());
+            return apiResponse;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
 
-                List<JsonNode> items = new ArrayList<>();
-                if (root.has("items") && root.path("items").isArray()) {
-                    root.path("items").forEach(items::add);
-                }
+    /**
+     * 提交缓存项（Jackson 已读完整个 JSON 并关闭了输入流）；缓存写入失败不影响本次请求
+     */
+    private static void commit(ApiResponseCache.Entry entry) {
+        try (entry) {
+            entry.commit();
+        } catch (IOException e) {
+            log.warn("Failed to cache response: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从响应 JSON 中取出 items 与 has_more
+     */
+    private ApiResponse toApiResponse(JsonNode root) {
+        List<JsonNode> items = new ArrayList<>();
+        if (root.has("items") && root.path("items").isArray()) {
+            root.path("items").forEach(items::add);
+        }
+
+        boolean hasMore = root.path("has_more").asBoolean(false);
+        return new ApiResponse(root, Map.of("items", items), hasMore, rateLimiter.getQuotaRemaining());
+    }
 
-                boolean hasMore = root.path("has_more").asBoolean(false);
-                
-                log.debug("API request successful. Items: {}, Has more: {}, Quota remaining: {}", 
-                         items.size(), hasMore, quotaRemaining);
-
-                return new ApiResponse(root, Map.of("items", items), hasMore, quotaRemaining);
-
-            } catch (IOException | InterruptedException e) {
-                lastException = e;
-                retryCount++;
-                
-                if (retryCount < maxRetries) {
-                    long waitTime = (long) Math.pow(2, retryCount) * 1000; // 指数退避
-                    log.warn("Request failed (attempt {}/{}), retrying in {} ms: {}", 
-                            retryCount, maxRetries, waitTime, e.getMessage());
-                    Thread.sleep(waitTime);
+    /**
+     * 按 Content-Encoding 解压响应体（HttpClient 不会自动解压）
+     * deflate 按规范应为 zlib 格式，但有的服务器发送不带 zlib 头的原始 deflate 流，按首字节区分
+     */
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        InputStream raw = response.body();
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("")
+                .trim().toLowerCase(Locale.ROOT);
+        try {
+            switch (encoding) {
+                case "", "identity":
+                    return new BufferedInputStream(raw, BUFFER_SIZE);
+                case "gzip", "x-gzip":
+                    return new GZIPInputStream(raw, BUFFER_SIZE);
+                case "deflate": {
+                    BufferedInputStream in = new BufferedInputStream(raw, BUFFER_SIZE);
+                    in.mark(2);
+                    int cmf = in.read();
+                    int flg = in.read();
+                    in.reset();
+                    boolean zlibWrapped = cmf >= 0 && flg >= 0 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+                    Inflater inflater = new Inflater(!zlibWrapped);
+                    // 自带的 Inflater 不会随流关闭而释放本地内存
+                    return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                super.close();
+                            } finally {
+                                inflater.end();
+                            }
+                        }
+                    };
                 }
+                default:
+                    throw new IOException("Unsupported Content-Encoding: " + encoding);
             }
+        } catch (IOException e) {
+            raw.close();
+            throw e;
         }
+    }
 
-        throw new IOException("Failed after " + maxRetries + " attempts", lastException);
+    /**
+     * 等待异步请求完成，把失败原因还原为 IOException
+     */
+    private static ApiResponse await(CompletableFuture<ApiResponse> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(cause);
+        }
     }
 
     public int getQuotaRemaining() {
-        return quotaRemaining;
+        return rateLimiter.getQuotaRemaining();
+    }
+
+    /**
+     * HTTP 429：请求过快
+     */
+    private static final class RateLimitedException extends IOException {
+        RateLimitedException(int retryAfterSeconds) {
+            super("HTTP 429, retry after " + retryAfterSeconds + " s");
+        }
     }
 
     /**
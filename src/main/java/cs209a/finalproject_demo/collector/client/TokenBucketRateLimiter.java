@@ -0,0 +1,86 @@
+package cs209a.finalproject_demo.collector.client;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶：所有请求线程共享，按固定速率发放令牌
+ *
+ * 以 GCRA（虚拟调度）形式实现：只保存“下一个令牌的理论发放时间”一个 AtomicLong，
+ * 预约令牌就是一次 CAS，返回调用方需要等待的时间，由调用方决定如何等待（异步请求用延迟执行器，不占线程）。
+ * burst 为桶容量：空闲之后最多连续发放 burst 个令牌，之后严格按速率发放。
+ *
+ * API 响应中的 backoff 通过 {@link #pause} 把理论发放时间整体推后；
+ * quota_remaining 通过 {@link #updateQuota} 记录，每次预约先扣减本地配额，配额耗尽时拒绝预约。
+ */
+final class TokenBucketRateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+    private final AtomicInteger quotaRemaining = new AtomicInteger(Integer.MAX_VALUE);
+
+    /**
+     * @param permitsPerSecond 每秒发放的令牌数
+     * @param burst 桶容量（至少 1）
+     */
+    TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.toleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 预约一个令牌
+     * @return 令牌可用前需要等待的纳秒数（0 表示立即可用）
+     * @throws QuotaExhaustedException API 配额已耗尽
+     */
+    long reserve() throws QuotaExhaustedException {
+        if (quotaRemaining.getAndDecrement() <= 0) {
+            quotaRemaining.incrementAndGet();
+            throw new QuotaExhaustedException();
+        }
+        while (true) {
+            long now = System.nanoTime();
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now) + intervalNanos;
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return Math.max(0, arrival - toleranceNanos - now);
+            }
+        }
+    }
+
+    /**
+     * 在指定时间内不再发放令牌（API 返回 backoff 或 HTTP 429）
+     */
+    void pause(long duration, TimeUnit unit) {
+        long until = System.nanoTime() + unit.toNanos(duration) + toleranceNanos;
+        theoreticalArrival.accumulateAndGet(until, Math::max);
+    }
+
+    /**
+     * 记录 API 报告的剩余配额
+     * 并发响应乱序到达，且本地已为在途请求预扣配额，因此只取较小值
+     */
+    void updateQuota(int remaining) {
+        quotaRemaining.accumulateAndGet(remaining, Math::min);
+    }
+
+    int getQuotaRemaining() {
+        return Math.max(0, quotaRemaining.get());
+    }
+
+    /**
+     * API 配额已耗尽，在配额重置前不再发出请求
+     */
+    static final class QuotaExhaustedException extends IOException {
+        QuotaExhaustedException() {
+            super("API quota exhausted");
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package cs209a.finalproject_demo.collector.config;
 
+import cs209a.finalproject_demo.collector.client.ApiResponseCache;
 import cs209a.finalproject_demo.collector.client.StackOverflowApiClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
 /**
  * 数据采集模块配置
  * 注意：ThreadDataSaver 使用 @Component 注解，会自动注册为 bean，不需要在这里定义
@@ -12,16 +21,41 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class CollectionConfig {
 
+    /**
+     * 请求速率与在途请求数可配置：so.api.requests-per-second（默认 25，低于 Stack Exchange 30 次/秒的封禁阈值）、
+     * so.api.max-in-flight（默认 8）
+     * 响应缓存见 {@link #responseCache}
+     */
     @Bean
     public StackOverflowApiClient stackOverflowApiClient(
             @Value("${so.api.access-token:}") String accessToken,
-            @Value("${so.api.key:}") String apiKey) {
-        if (!apiKey.isEmpty()) {
-            return new StackOverflowApiClient(accessToken.isEmpty() ? null : accessToken, apiKey);
-        }
-        return accessToken.isEmpty() 
-                ? new StackOverflowApiClient() 
-                : new StackOverflowApiClient(accessToken);
+            @Value("${so.api.key:}") String apiKey,
+            @Value("${so.api.requests-per-second:25}") double requestsPerSecond,
+            @Value("${so.api.max-in-flight:8}") int maxInFlight,
+            Optional<ApiResponseCache> responseCache) {
+        return new StackOverflowApiClient(accessToken.isEmpty() ? null : accessToken,
+                apiKey.isEmpty() ? null : apiKey, requestsPerSecond, maxInFlight, responseCache.orElse(null));
+    }
+
+    /**
+     * API 响应磁盘缓存（so.api.cache.enabled=true 或 so.api.cache.offline=true 时启用）
+     * 问题列表随新问题变化，默认 1 小时过期；回答与评论默认 24 小时过期
+     */
+    @Bean
+    @ConditionalOnExpression("${so.api.cache.enabled:false} or ${so.api.cache.offline:false}")
+    public ApiResponseCache responseCache(
+            @Value("${so.api.cache.directory:api-cache}") String directory,
+            @Value("${so.api.cache.max-size-mb:1024}") long maxSizeMb,
+            @Value("${so.api.cache.offline:false}") boolean offline,
+            @Value("${so.api.cache.ttl.questions:1h}") Duration questionsTtl,
+            @Value("${so.api.cache.ttl.answers:24h}") Duration answersTtl,
+            @Value("${so.api.cache.ttl.comments:24h}") Duration commentsTtl) throws IOException {
+        Map<ApiResponseCache.Endpoint, Duration> ttls = new EnumMap<>(ApiResponseCache.Endpoint.class);
+        ttls.put(ApiResponseCache.Endpoint.QUESTIONS, questionsTtl);
+        ttls.put(ApiResponseCache.Endpoint.ANSWERS, answersTtl);
+        ttls.put(ApiResponseCache.Endpoint.QUESTION_COMMENTS, commentsTtl);
+        ttls.put(ApiResponseCache.Endpoint.ANSWER_COMMENTS, commentsTtl);
+        return new ApiResponseCache(Paths.get(directory), ttls, maxSizeMb * 1024 * 1024, offline);
     }
 }
 
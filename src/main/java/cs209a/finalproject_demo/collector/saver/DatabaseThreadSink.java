@@ -0,0 +1,153 @@
+package cs209a.finalproject_demo.collector.saver;
+
+import cs209a.finalproject_demo.dataset.ThreadFileLoader;
+import cs209a.finalproject_demo.model.QuestionThread;
+import cs209a.finalproject_demo.service.BatchedImportEngine;
+import cs209a.finalproject_demo.service.BulkCopyImportEngine;
+import cs209a.finalproject_demo.service.DataImportServiceOptimized;
+import cs209a.finalproject_demo.service.ImportResult;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 采集的线程直接写入数据库，不经过“写文件 → 读文件 → 解析”
+ *
+ * JSON 树直接绑定为模型记录（{@link ThreadFileLoader#load(String, com.fasterxml.jackson.databind.JsonNode)}），
+ * 攒满一批后交给 {@link DataImportServiceOptimized#importBatch}，与目录导入共用映射、写入与失败隔离逻辑。
+ * 清单键为 {@value #SOURCE_PREFIX} + question_id。
+ *
+ * 可选归档：JSON 文件由一个后台线程照常写出（格式与 {@link FileThreadSink} 相同），
+ * 归档队列有界，磁盘跟不上时由采集线程自己写，内存不会无限增长。
+ */
+public class DatabaseThreadSink implements ThreadSink {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseThreadSink.class);
+
+    public static final String SOURCE_PREFIX = "so-api:question/";
+    private static final int ARCHIVE_QUEUE_CAPACITY = 256;
+
+    private final ThreadFileLoader fileLoader;
+    private final DataImportServiceOptimized importService;
+    private final DataImportServiceOptimized.Sink writeSink;
+    private final int batchSize;
+    private final ThreadDataSaver archiveSaver;
+    private final String archiveDir;
+    private final ThreadPoolExecutor archiver;
+    private final AtomicInteger archiveFailures = new AtomicInteger();
+    private final ImportResult result;
+    private final List<QuestionThread> pending = new ArrayList<>();
+
+    /**
+     * @param archiveSaver 为 null 时不归档 JSON 文件
+     * @param archiveDir 归档目录
+     */
+    public DatabaseThreadSink(ThreadFileLoader fileLoader,
+                              DataImportServiceOptimized importService,
+                              DataImportServiceOptimized.Sink writeSink,
+                              int batchSize,
+                              ThreadDataSaver archiveSaver,
+                              String archiveDir) {
+        this.fileLoader = fileLoader;
+        this.importService = importService;
+        this.writeSink = writeSink;
+        this.batchSize = Math.max(1, batchSize);
+        this.archiveSaver = archiveSaver;
+        this.archiveDir = archiveDir;
+        this.result = new ImportResult(writeSink == DataImportServiceOptimized.Sink.COPY
+                ? BulkCopyImportEngine.NAME : BatchedImportEngine.NAME);
+        this.archiver = archiveSaver == null ? null : new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(ARCHIVE_QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "collector-archive");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Override
+    public void accept(ObjectNode threadData, int threadIndex) {
+        if (archiver != null) {
+            archiver.execute(() -> archive(threadData, threadIndex));
+        }
+        String sourceName = SOURCE_PREFIX + threadData.path("question").path("question_id").asLong();
+        Optional<QuestionThread> thread = fileLoader.load(sourceName, threadData);
+        if (thread.isEmpty()) {
+            result.incrementSkipped();
+            result.addError("Failed to map collected thread " + sourceName);
+            return;
+        }
+        pending.add(thread.get());
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * 写入已攒下的线程（同步，返回时该批已提交或已被拒绝并记录）
+     * @throws cs209a.finalproject_demo.service.ImportAbortedException 数据库不可用，该批未写入
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            importService.importBatch(SOURCE_PREFIX, List.copyOf(pending), writeSink, result);
+        } finally {
+            // 中止时该批不再重试（关闭时也不会），下次采集会重新取回
+            pending.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (archiver != null) {
+            archiver.shutdown();
+            try {
+                if (!archiver.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.warn("Archive writer did not finish within 1 minute, {} files pending",
+                            archiver.getQueue().size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (archiveFailures.get() > 0) {
+                log.warn("{} collected threads could not be archived to {}", archiveFailures.get(), archiveDir);
+            }
+        }
+        result.finish();
+        result.logReport(log);
+    }
+
+    /**
+     * 写库统计（成功、失败、各表行数等）
+     */
+    public ImportResult getResult() {
+        return result;
+    }
+
+    private void archive(ObjectNode threadData, int threadIndex) {
+        try {
+            archiveSaver.saveThread(archiveDir, threadData, threadIndex);
+        } catch (IOException e) {
+            archiveFailures.incrementAndGet();
+            log.warn("Failed to archive thread {}: {}", threadIndex, e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "database:" + result.getEngine() + (archiver != null ? " (archive: " + archiveDir + ")" : "");
+    }
+}
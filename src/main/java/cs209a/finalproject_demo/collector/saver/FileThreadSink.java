@@ -0,0 +1,29 @@
+package cs209a.finalproject_demo.collector.saver;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+
+/**
+ * 每个线程写一个 JSON 文件（thread_01.json, thread_02.json, ...）
+ */
+public class FileThreadSink implements ThreadSink {
+
+    private final ThreadDataSaver dataSaver;
+    private final String outputDir;
+
+    public FileThreadSink(ThreadDataSaver dataSaver, String outputDir) {
+        this.dataSaver = dataSaver;
+        this.outputDir = outputDir;
+    }
+
+    @Override
+    public void accept(ObjectNode threadData, int threadIndex) throws IOException {
+        dataSaver.saveThread(outputDir, threadData, threadIndex);
+    }
+
+    @Override
+    public String toString() {
+        return "file:" + outputDir;
+    }
+}
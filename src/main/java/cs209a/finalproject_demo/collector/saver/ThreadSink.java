@@ -0,0 +1,31 @@
+package cs209a.finalproject_demo.collector.saver;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 采集到的线程数据的去向
+ *
+ * 可选实现：
+ * - {@link FileThreadSink}：每个线程写一个 JSON 文件（与 Sample_SO_data 格式一致），之后再单独导入
+ * - {@link DatabaseThreadSink}：直接送入批量导入流程写库，可选在后台同时归档 JSON 文件
+ */
+public interface ThreadSink extends Closeable {
+
+    /**
+     * 接收一个完整的线程（问题 + 回答 + 评论）
+     *
+     * @param threadData 线程数据（JSON 格式，见 {@link ThreadDataSaver#buildThreadJson}）
+     * @param threadIndex 线程序号（从 1 开始）
+     */
+    void accept(ObjectNode threadData, int threadIndex) throws IOException;
+
+    /**
+     * 提交尚未写出的数据并释放资源
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
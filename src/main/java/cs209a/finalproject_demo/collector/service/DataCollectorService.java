@@ -1,7 +1,10 @@
 package cs209a.finalproject_demo.collector.service;
 
 import cs209a.finalproject_demo.collector.client.StackOverflowApiClient;
+import cs209a.finalproject_demo.collector.saver.FileThreadSink;
 import cs209a.finalproject_demo.collector.saver.ThreadDataSaver;
+import cs209a.finalproject_demo.collector.saver.ThreadSink;
+import cs209a.finalproject_demo.service.ImportAbortedException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
@@ -9,19 +12,28 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
  * 数据采集服务
- * 负责从 Stack Overflow API 采集完整的线程数据（问题 + 回答 + 评论）
+ * 负责从 Stack Overflow API 采集完整的线程数据（问题 + 回答 + 评论），
+ * 交给 {@link ThreadSink} 写 JSON 文件或直接写入数据库
  */
 @Service
 public class DataCollectorService {
 
     private static final Logger log = LoggerFactory.getLogger(DataCollectorService.class);
+    // 同时采集的页数；实际请求速率与在途请求数由 StackOverflowApiClient 限制
+    private static final int PAGES_IN_FLIGHT = 4;
 
     private final StackOverflowApiClient apiClient;
     private final ThreadDataSaver dataSaver;
@@ -42,23 +54,93 @@ public class DataCollectorService {
      */
     public CollectionResult collectThreads(int targetCount, String outputDir, 
                                           Long fromDate, Long toDate) {
-        log.info("Starting data collection. Target: {} threads, Output: {}", targetCount, outputDir);
-        
-        CollectionResult result = new CollectionResult();
-        int collectedCount = 0;
-        int page = 1;
-        int pageSize = 100;
-        
+        try (ThreadSink sink = new FileThreadSink(dataSaver, outputDir)) {
+            return collectThreads(targetCount, sink, fromDate, toDate);
+        } catch (IOException e) {
+            // 文件写入端关闭时没有需要提交的数据，不会走到这里
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 采集指定数量的 Java 线程，交给指定的写入端（调用方负责关闭写入端）
+     *
+     * @param targetCount 目标采集数量
+     * @param sink 写入端：JSON 文件，或直接写入数据库
+     * @param fromDate 起始日期（Unix 时间戳，可选）
+     * @param toDate 结束日期（Unix 时间戳，可选）
+     * @return 采集统计信息
+     */
+    public CollectionResult collectThreads(int targetCount, ThreadSink sink,
+                                          Long fromDate, Long toDate) {
+        log.info("Starting data collection. Target: {} threads, Sink: {}", targetCount, sink);
+
         // 如果没有指定日期范围，默认采集最近的数据
         if (fromDate == null && toDate == null) {
             toDate = Instant.now().getEpochSecond();
             fromDate = toDate - (365L * 24 * 60 * 60); // 默认过去一年
         }
+        Long from = fromDate;
+        Long to = toDate;
+        return collect(targetCount, sink,
+                (page, pageSize) -> apiClient.fetchQuestions(page, pageSize, "creation", "desc", from, to));
+    }
+
+    /**
+     * 增量同步：重新采集最后活动时间不早于指定时间的线程（新回答、采纳变化、关闭等都会更新最后活动时间）
+     * 写入端为数据库时按主键更新已有数据
+     *
+     * 问题按最后活动时间从新到旧翻页，达到数量上限时停止；此时更早的变化没有采集到，
+     * 而库中的最大最后活动时间已经前移，因此日常同步应不设上限
+     *
+     * @param sinceActivityDate 最后活动时间下限（Unix 时间戳，包含）
+     * @param maxCount 最多采集的线程数
+     * @param sink 写入端
+     * @return 采集统计信息
+     */
+    public CollectionResult collectChangedThreads(long sinceActivityDate, int maxCount, ThreadSink sink) {
+        log.info("Starting delta sync. Threads active since {}, Max: {}, Sink: {}",
+                Instant.ofEpochSecond(sinceActivityDate), maxCount, sink);
+        CollectionResult result = collect(maxCount, sink,
+                (page, pageSize) -> apiClient.fetchQuestionsActiveSince(page, pageSize, sinceActivityDate));
+        if (result.getTotalCollected() >= maxCount) {
+            log.warn("Delta sync stopped at the limit of {} threads; older changes since {} were not fetched",
+                    maxCount, Instant.ofEpochSecond(sinceActivityDate));
+        }
+        return result;
+    }
+
+    /**
+     * 问题列表的一页
+     */
+    @FunctionalInterface
+    private interface QuestionPageFetch {
+        StackOverflowApiClient.ApiResponse fetch(int page, int pageSize) throws IOException, InterruptedException;
+    }
+
+    /**
+     * 按页读取问题列表，每页在后台采集完整线程后按页码顺序交给写入端
+     */
+    private CollectionResult collect(int targetCount, ThreadSink sink, QuestionPageFetch questionPages) {
+        CollectionResult result = new CollectionResult();
+        int collectedCount = 0;
+        int page = 1;
+        int pageSize = 100;
 
         Set<Long> processedQuestionIds = new HashSet<>();
+        // 已提交采集、尚未写出的页，按页码顺序写出
+        Deque<PendingPage> pendingPages = new ArrayDeque<>();
+        int queuedCount = 0;
+        boolean morePages = true;
+        AtomicInteger workerCounter = new AtomicInteger();
+        ExecutorService pageWorkers = Executors.newFixedThreadPool(PAGES_IN_FLIGHT, runnable -> {
+            Thread thread = new Thread(runnable, "collector-page-" + workerCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
 
         try {
-            while (collectedCount < targetCount) {
+            while (morePages && collectedCount + queuedCount < targetCount) {
                 // 检查配额
                 int quotaRemaining = apiClient.getQuotaRemaining();
                 if (quotaRemaining < 100 && quotaRemaining > 0) {
@@ -70,17 +152,16 @@ public class DataCollectorService {
                 }
 
                 // 获取问题列表
-                log.info("Fetching page {} (collected: {}/{})", page, collectedCount, targetCount);
+                log.info("Fetching page {} (collected: {}/{}, queued: {})", page, collectedCount, targetCount,
+                        queuedCount);
                 
                 StackOverflowApiClient.ApiResponse questionsResponse;
                 try {
-                    questionsResponse = apiClient.fetchQuestions(
-                            page, pageSize, "creation", "desc", fromDate, toDate);
+                    questionsResponse = questionPages.fetch(page, pageSize);
                 } catch (InterruptedException e) {
-                    log.warn("Collection interrupted");
-                    Thread.currentThread().interrupt();
-                    break;
+                    throw e;
                 } catch (Exception e) {
+                    // 客户端已按退避策略重试过，这里直接计错后重试本页
                     log.error("Failed to fetch questions (page {}): {}", page, e.getMessage());
                     result.addError("Failed to fetch page " + page + ": " + e.getMessage());
                     
@@ -89,14 +170,6 @@ public class DataCollectorService {
                         log.error("Too many consecutive errors. Stopping collection.");
                         break;
                     }
-                    
-                    // 等待后重试
-                    try {
-                        Thread.sleep(5000);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
                     continue;
                 }
 
@@ -107,65 +180,59 @@ public class DataCollectorService {
                     break;
                 }
 
-                // 处理每个问题
+                // 本页中尚未处理的问题（不超过剩余目标数量）
+                List<JsonNode> pageQuestions = new ArrayList<>();
                 for (JsonNode questionNode : questions) {
-                    if (collectedCount >= targetCount) {
+                    if (collectedCount + queuedCount + pageQuestions.size() >= targetCount) {
                         break;
                     }
-
-                    long questionId = questionNode.path("question_id").asLong();
-                    
-                    // 跳过已处理的问题
-                    if (processedQuestionIds.contains(questionId)) {
-                        continue;
-                    }
-                    processedQuestionIds.add(questionId);
-
-                    try {
-                        // 采集完整的线程数据
-                        ObjectNode threadJson = collectFullThread(questionId, questionNode);
-                        
-                        // 保存到文件
-                        int threadIndex = collectedCount + 1;
-                        dataSaver.saveThread(outputDir, threadJson, threadIndex);
-                        
-                        collectedCount++;
-                        result.incrementSuccess();
-                        
-                        log.info("Collected thread {}/{} (question_id: {})", 
-                                collectedCount, targetCount, questionId);
-                        
-                        // 添加短暂延迟，避免过快请求
-                        Thread.sleep(200);
-                        
-                    } catch (Exception e) {
-                        log.error("Failed to collect thread for question {}: {}", 
-                                questionId, e.getMessage());
-                        result.incrementFailure();
-                        result.addError("Question " + questionId + ": " + e.getMessage());
+                    if (processedQuestionIds.add(questionNode.path("question_id").asLong())) {
+                        pageQuestions.add(questionNode);
                     }
                 }
 
+                // 整页作为一个单元在后台采集：回答、问题评论、回答评论各用批量请求取回，再在本地按问题分组；
+                // 多页同时采集，请求速率由客户端的令牌桶统一控制
+                int pageNumber = page;
+                pendingPages.add(new PendingPage(pageNumber, pageQuestions.size(),
+                        pageWorkers.submit(() -> collectFullThreads(pageQuestions))));
+                queuedCount += pageQuestions.size();
+
                 // 检查是否还有更多数据
-                if (!questionsResponse.hasMore()) {
+                morePages = questionsResponse.hasMore();
+                if (!morePages) {
                     log.info("No more pages available. Stopping collection.");
-                    break;
                 }
-
                 page++;
-                
-                // 每采集 10 个线程输出一次进度
-                if (collectedCount % 10 == 0) {
-                    log.info("Progress: {}/{} threads collected", collectedCount, targetCount);
+
+                // 在途页达到上限，或已排队的问题足以达到目标时，按顺序写出最早的页
+                while (!pendingPages.isEmpty()
+                        && (pendingPages.size() >= PAGES_IN_FLIGHT || collectedCount + queuedCount >= targetCount)) {
+                    PendingPage done = pendingPages.poll();
+                    queuedCount -= done.size();
+                    collectedCount += writePage(done, sink, result, collectedCount, targetCount);
                 }
             }
 
+            // 写出剩余的页
+            while (!pendingPages.isEmpty()) {
+                collectedCount += writePage(pendingPages.poll(), sink, result, collectedCount, targetCount);
+            }
+
             log.info("Collection completed. Total: {} threads, Success: {}, Failed: {}", 
                     collectedCount, result.getSuccessCount(), result.getFailureCount());
 
+        } catch (InterruptedException e) {
+            log.warn("Collection interrupted");
+            Thread.currentThread().interrupt();
+        } catch (ImportAbortedException e) {
+            log.error("Stopping collection: {}", e.getMessage());
+            result.addError(e.getMessage());
         } catch (Exception e) {
             log.error("Unexpected error during collection: {}", e.getMessage(), e);
             result.addError("Unexpected error: " + e.getMessage());
+        } finally {
+            pageWorkers.shutdownNow();
         }
 
         result.setTotalCollected(collectedCount);
@@ -174,61 +241,115 @@ public class DataCollectorService {
     }
 
     /**
-     * 采集完整的线程数据（问题 + 回答 + 评论）
+     * 等待一页采集完成并交给写入端
+     * @return 成功写出的线程数
      */
-    private ObjectNode collectFullThread(long questionId, JsonNode questionNode) 
-            throws IOException, InterruptedException {
-        
-        // 1. 获取所有回答
-        List<JsonNode> answers = new ArrayList<>();
+    private int writePage(PendingPage pending, ThreadSink sink, CollectionResult result,
+                          int collectedCount, int targetCount) throws InterruptedException {
+        List<ObjectNode> threads;
         try {
-            StackOverflowApiClient.ApiResponse answersResponse = 
-                    apiClient.fetchAnswers(List.of(questionId));
-            answers = answersResponse.getItems();
-            
-            // 添加延迟
-            Thread.sleep(100);
-        } catch (Exception e) {
-            log.warn("Failed to fetch answers for question {}: {}", questionId, e.getMessage());
+            threads = pending.threads().get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.error("Failed to collect threads for page {}: {}", pending.page(), cause.getMessage());
+            result.incrementFailure(pending.size());
+            result.addError("Page " + pending.page() + " (" + pending.size() + " questions): " + cause.getMessage());
+            return 0;
         }
 
-        // 2. 获取问题评论
-        List<JsonNode> questionComments = new ArrayList<>();
-        try {
-            StackOverflowApiClient.ApiResponse commentsResponse = 
-                    apiClient.fetchQuestionComments(List.of(questionId));
-            questionComments = commentsResponse.getItems();
-            
-            Thread.sleep(100);
-        } catch (Exception e) {
-            log.warn("Failed to fetch question comments for question {}: {}", questionId, e.getMessage());
+        int written = 0;
+        for (ObjectNode threadJson : threads) {
+            long questionId = threadJson.path("question").path("question_id").asLong();
+            try {
+                // 交给写入端（写文件或写库）
+                int threadIndex = collectedCount + written + 1;
+                sink.accept(threadJson, threadIndex);
+
+                written++;
+                result.incrementSuccess();
+
+                log.info("Collected thread {}/{} (question_id: {})",
+                        threadIndex, targetCount, questionId);
+            } catch (ImportAbortedException e) {
+                // 数据库不可用：停止采集，不再逐条计为失败
+                throw e;
+            } catch (Exception e) {
+                log.error("Failed to save thread for question {}: {}",
+                        questionId, e.getMessage());
+                result.incrementFailure();
+                result.addError("Question " + questionId + ": " + e.getMessage());
+            }
         }
+        return written;
+    }
 
-        // 3. 获取回答的评论
-        Map<Long, List<JsonNode>> answerComments = new HashMap<>();
-        if (!answers.isEmpty()) {
-            List<Long> answerIds = answers.stream()
-                    .map(a -> a.path("answer_id").asLong())
-                    .collect(Collectors.toList());
-            
-            try {
-                StackOverflowApiClient.ApiResponse answerCommentsResponse = 
-                        apiClient.fetchAnswerComments(answerIds);
-                
-                // 按 answer_id 分组
-                for (JsonNode commentNode : answerCommentsResponse.getItems()) {
-                    long answerId = commentNode.path("post_id").asLong();
-                    answerComments.computeIfAbsent(answerId, k -> new ArrayList<>()).add(commentNode);
+    /**
+     * 已提交采集的一页
+     */
+    private record PendingPage(int page, int size, Future<List<ObjectNode>> threads) {
+    }
+
+    /**
+     * 批量采集一页问题的完整线程数据（问题 + 回答 + 评论）
+     *
+     * 按 ID 批量查询（每个请求最多 100 个 ID，分页读完）：一次取回所有问题的回答、一次取回问题评论、
+     * 再按回答 ID 取回回答评论，然后按 question_id / post_id 在本地分组。
+     * 请求数与问题数量无关，比逐个问题查询少约 100 倍。
+     * 任何一类批量请求失败都会让整页失败，不产出缺少回答或评论的线程。
+     *
+     * @return 与输入问题顺序一致的线程 JSON
+     */
+    private List<ObjectNode> collectFullThreads(List<JsonNode> questionNodes)
+            throws IOException, InterruptedException {
+        if (questionNodes.isEmpty()) {
+            return List.of();
+        }
+        List<Long> questionIds = questionNodes.stream()
+                .map(q -> q.path("question_id").asLong())
+                .collect(Collectors.toList());
+
+        // 1. 所有问题的回答，按 question_id 分组（保留 API 返回的顺序：按票数降序）
+        List<JsonNode> answers = apiClient.fetchAllAnswers(questionIds);
+        Map<Long, List<JsonNode>> answersByQuestion = groupBy(answers, "question_id");
+
+        // 2. 所有问题的评论，按 post_id 分组
+        Map<Long, List<JsonNode>> commentsByQuestion =
+                groupBy(apiClient.fetchAllQuestionComments(questionIds), "post_id");
+
+        // 3. 所有回答的评论，按 post_id（即 answer_id）分组
+        List<Long> answerIds = answers.stream()
+                .map(a -> a.path("answer_id").asLong())
+                .collect(Collectors.toList());
+        Map<Long, List<JsonNode>> commentsByAnswer = groupBy(apiClient.fetchAllAnswerComments(answerIds), "post_id");
+
+        log.debug("Fetched {} answers, {} answer ids with comments for {} questions",
+                answers.size(), commentsByAnswer.size(), questionIds.size());
+
+        // 4. 按问题组装完整的线程 JSON
+        List<ObjectNode> threads = new ArrayList<>(questionNodes.size());
+        for (JsonNode questionNode : questionNodes) {
+            long questionId = questionNode.path("question_id").asLong();
+            List<JsonNode> threadAnswers = answersByQuestion.getOrDefault(questionId, List.of());
+            Map<Long, List<JsonNode>> answerComments = new LinkedHashMap<>();
+            for (JsonNode answer : threadAnswers) {
+                long answerId = answer.path("answer_id").asLong();
+                List<JsonNode> comments = commentsByAnswer.get(answerId);
+                if (comments != null) {
+                    answerComments.put(answerId, comments);
                 }
-                
-                Thread.sleep(100);
-            } catch (Exception e) {
-                log.warn("Failed to fetch answer comments for question {}: {}", questionId, e.getMessage());
             }
+            threads.add(dataSaver.buildThreadJson(questionNode, threadAnswers,
+                    commentsByQuestion.getOrDefault(questionId, List.of()), answerComments));
         }
+        return threads;
+    }
 
-        // 4. 构建完整的线程 JSON
-        return dataSaver.buildThreadJson(questionNode, answers, questionComments, answerComments);
+    private static Map<Long, List<JsonNode>> groupBy(List<JsonNode> items, String idField) {
+        Map<Long, List<JsonNode>> grouped = new HashMap<>();
+        for (JsonNode item : items) {
+            grouped.computeIfAbsent(item.path(idField).asLong(), k -> new ArrayList<>()).add(item);
+        }
+        return grouped;
     }
 
     /**
@@ -251,6 +372,10 @@ public class DataCollectorService {
             failureCount++;
         }
 
+        public void incrementFailure(int count) {
+            failureCount += count;
+        }
+
         public void addError(String error) {
             errors.add(error);
         }
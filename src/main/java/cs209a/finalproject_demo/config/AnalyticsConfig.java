@@ -0,0 +1,45 @@
+package cs209a.finalproject_demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分析计算线程池配置
+ *
+ * 用于并行计算分析接口中相互独立的统计部分（纯内存计算，不访问数据库）。
+ * 线程数与队列长度均有上限；队列满时由调用线程直接执行，避免请求被拒绝。
+ */
+@Configuration
+public class AnalyticsConfig {
+
+    @Bean(name = "analyticsExecutor", destroyMethod = "shutdown")
+    public ExecutorService analyticsExecutor(
+            @Value("${analytics.executor.threads:0}") int threads,
+            @Value("${analytics.executor.queue-capacity:256}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "analytics-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
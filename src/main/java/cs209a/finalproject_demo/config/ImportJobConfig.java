@@ -0,0 +1,39 @@
+package cs209a.finalproject_demo.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台导入任务线程池配置
+ *
+ * 导入任务只在单个线程中执行（同一时间只运行一个导入，导入内部自带并行流水线）；
+ * 进度推送使用单独的定时线程，按固定间隔采样并通过 SSE 发送给订阅者。
+ */
+@Configuration
+public class ImportJobConfig {
+
+    @Bean(name = "importJobExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService importJobExecutor() {
+        return Executors.newSingleThreadExecutor(daemonThreads("import-job-"));
+    }
+
+    @Bean(name = "importProgressScheduler", destroyMethod = "shutdownNow")
+    public ScheduledExecutorService importProgressScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(daemonThreads("import-progress-"));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
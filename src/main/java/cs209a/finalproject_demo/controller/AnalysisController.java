@@ -7,6 +7,7 @@ import cs209a.finalproject_demo.dto.TopicCooccurrenceResponse;
 import cs209a.finalproject_demo.dto.TopicTrendResponse;
 import cs209a.finalproject_demo.service.MultithreadingInsightService;
 import cs209a.finalproject_demo.service.SolvabilityContrastService;
+import cs209a.finalproject_demo.service.SolvabilitySketchService;
 import cs209a.finalproject_demo.service.TopicCooccurrenceService;
 import cs209a.finalproject_demo.service.TopicTrendService;
 import jakarta.validation.constraints.Max;
@@ -30,15 +31,18 @@ public class AnalysisController {
     private final TopicCooccurrenceService topicCooccurrenceService;
     private final MultithreadingInsightService multithreadingInsightService;
     private final SolvabilityContrastService solvabilityContrastService;
+    private final SolvabilitySketchService solvabilitySketchService;
 
     public AnalysisController(TopicTrendService topicTrendService,
                               TopicCooccurrenceService topicCooccurrenceService,
                               MultithreadingInsightService multithreadingInsightService,
-                              SolvabilityContrastService solvabilityContrastService) {
+                              SolvabilityContrastService solvabilityContrastService,
+                              SolvabilitySketchService solvabilitySketchService) {
         this.topicTrendService = topicTrendService;
         this.topicCooccurrenceService = topicCooccurrenceService;
         this.multithreadingInsightService = multithreadingInsightService;
         this.solvabilityContrastService = solvabilityContrastService;
+        this.solvabilitySketchService = solvabilitySketchService;
     }
 
     @GetMapping("/topic-trends")
@@ -71,8 +75,12 @@ public class AnalysisController {
     @GetMapping("/solvability/contrast")
     public ApiResponse<SolvabilityContrastResponse> solvabilityContrast(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
-        SolvabilityContrastResponse response = solvabilityContrastService.analyze(from, to);
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean approximate) {
+        // approximate=true 时合并按月草图（区间按整月对齐），否则精确计算
+        SolvabilityContrastResponse response = approximate
+                ? solvabilitySketchService.analyze(from, to)
+                : solvabilityContrastService.analyze(from, to);
         return ApiResponse.of(response);
     }
 }
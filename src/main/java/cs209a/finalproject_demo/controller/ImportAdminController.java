@@ -0,0 +1,90 @@
+package cs209a.finalproject_demo.controller;
+
+import cs209a.finalproject_demo.dto.ApiResponse;
+import cs209a.finalproject_demo.dto.ImportJobResponse;
+import cs209a.finalproject_demo.service.ImportJobService;
+import cs209a.finalproject_demo.service.PerThreadImportEngine;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * 导入任务管理接口：无需重启 Web 应用即可重新导入数据，并通过 SSE 实时查看吞吐量
+ */
+@RestController
+@RequestMapping("/api/admin/imports")
+public class ImportAdminController {
+
+    private final ImportJobService importJobService;
+
+    public ImportAdminController(ImportJobService importJobService) {
+        this.importJobService = importJobService;
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ApiResponse<ImportJobResponse> start(
+            @RequestParam(defaultValue = PerThreadImportEngine.NAME) String engine,
+            @RequestParam(defaultValue = "${dataset.folder:Sample_SO_data}") String directory) {
+        return ApiResponse.of(importJobService.start(engine, directory));
+    }
+
+    @GetMapping
+    public ApiResponse<List<ImportJobResponse>> list() {
+        return ApiResponse.of(importJobService.list());
+    }
+
+    @GetMapping("/{jobId}")
+    public ApiResponse<ImportJobResponse> get(@PathVariable String jobId) {
+        return ApiResponse.of(importJobService.get(jobId));
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    public ApiResponse<ImportJobResponse> cancel(@PathVariable String jobId) {
+        return ApiResponse.of(importJobService.cancel(jobId));
+    }
+
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@PathVariable String jobId) {
+        // 不交给异常处理器：JSON 错误体与 text/event-stream 不匹配，客户端会收到 406 而不是 404
+        try {
+            return ResponseEntity.ok(importJobService.subscribe(jobId));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ApiResponse<Map<String, String>>> badRequest(IllegalArgumentException e) {
+        return error(HttpStatus.BAD_REQUEST, e);
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<ApiResponse<Map<String, String>>> conflict(IllegalStateException e) {
+        return error(HttpStatus.CONFLICT, e);
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<ApiResponse<Map<String, String>>> notFound(NoSuchElementException e) {
+        return error(HttpStatus.NOT_FOUND, e);
+    }
+
+    private static ResponseEntity<ApiResponse<Map<String, String>>> error(HttpStatus status, Exception e) {
+        String message = Objects.toString(e.getMessage(), status.getReasonPhrase());
+        return ResponseEntity.status(status).body(ApiResponse.of(Map.of("error", message)));
+    }
+}
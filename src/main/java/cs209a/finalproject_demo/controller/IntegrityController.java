@@ -0,0 +1,53 @@
+package cs209a.finalproject_demo.controller;
+
+import cs209a.finalproject_demo.dto.ApiResponse;
+import cs209a.finalproject_demo.dto.IntegrityReport;
+import cs209a.finalproject_demo.service.DataIntegrityValidator;
+import cs209a.finalproject_demo.service.ImportJobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 数据完整性校验接口：source=database 校验数据库，source=files 校验数据目录中的 JSON 文件
+ */
+@RestController
+@RequestMapping("/api/admin/integrity")
+public class IntegrityController {
+
+    private final DataIntegrityValidator integrityValidator;
+    private final ImportJobService importJobService;
+
+    public IntegrityController(DataIntegrityValidator integrityValidator, ImportJobService importJobService) {
+        this.integrityValidator = integrityValidator;
+        this.importJobService = importJobService;
+    }
+
+    @GetMapping
+    public ApiResponse<IntegrityReport> validate(
+            @RequestParam(defaultValue = "database") String source,
+            @RequestParam(defaultValue = "${dataset.folder:Sample_SO_data}") String directory)
+            throws SQLException, IOException, InterruptedException {
+        IntegrityReport report = switch (source.toLowerCase()) {
+            case "database" -> integrityValidator.validateDatabase();
+            case "files" -> integrityValidator.validateFiles(importJobService.resolveDirectory(directory));
+            default -> throw new IllegalArgumentException("Unknown source '" + source + "', expected database or files");
+        };
+        return ApiResponse.of(report);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ApiResponse<Map<String, String>>> badRequest(IllegalArgumentException e) {
+        String message = Objects.toString(e.getMessage(), HttpStatus.BAD_REQUEST.getReasonPhrase());
+        return ResponseEntity.badRequest().body(ApiResponse.of(Map.of("error", message)));
+    }
+}
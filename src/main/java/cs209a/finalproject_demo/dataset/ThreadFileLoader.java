@@ -5,145 +5,452 @@ import cs209a.finalproject_demo.model.Author;
 import cs209a.finalproject_demo.model.Comment;
 import cs209a.finalproject_demo.model.Question;
 import cs209a.finalproject_demo.model.QuestionThread;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+/**
+ * 数据文件读取与解析
+ *
+ * 支持的数据源：
+ * 1. *.json：每个文件一个 thread
+ * 2. *.ndjson / *.jsonl：每行一个 thread（newline-delimited JSON）
+ * 3. 以上格式的 gzip 压缩版本（*.json.gz / *.ndjson.gz / *.jsonl.gz）
+ * 4. *.zip：逐个条目读取，.json 条目为一个 thread，.ndjson / .jsonl 条目每行一个 thread
+ *
+ * 归档格式通过 {@link #readRecords} 顺序读取一遍，按记录回调原始字节，解析交给调用方（可多线程）。
+ *
+ * 解析直接从字节流绑定到中间结构再转换为模型记录，不构建 JsonNode 树，也不先解码成 String。
+ */
 @Component
 public class ThreadFileLoader {
 
     private static final Logger log = LoggerFactory.getLogger(ThreadFileLoader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    // ObjectReader 不可变、线程安全，所有解析线程共用，避免每次解析重新查找反序列化器
+    private final ObjectReader threadReader = new ObjectMapper().readerFor(ThreadJson.class);
+
+    /**
+     * 归档中的一条记录（原始字节）
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        /**
+         * @param recordName 记录在数据源内的名称：zip 条目名、行号，或二者组合（条目名:行号）
+         */
+        void accept(String recordName, byte[] content) throws IOException, InterruptedException;
+    }
+
+    /**
+     * 是否为可导入的数据源
+     */
+    public static boolean isSupportedSource(Path path) {
+        if (path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
+            return true;
+        }
+        String name = baseName(path);
+        return name.endsWith(".json") || isDelimited(name);
+    }
+
+    /**
+     * 是否需要通过 {@link #readRecords} 顺序读取（除单个未压缩 JSON 文件外的所有格式）
+     */
+    public static boolean isArchive(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return isSupportedSource(path) && !name.endsWith(".json");
+    }
 
     public Optional<QuestionThread> load(Path filePath) {
+        byte[] content;
         try {
-            String content = Files.readString(filePath);
-            JsonNode root = objectMapper.readTree(content);
-            Question question = mapQuestion(root.path("question"));
-            if (question == null) {
-                return Optional.empty();
-            }
-            List<Answer> answers = mapAnswers(root.path("answers"));
-            List<Comment> questionComments = mapComments(root.path("question_comments"), question.id(), "question");
-            Map<Long, List<Comment>> answerComments = mapAnswerComments(root.path("answer_comments"));
-            return Optional.of(new QuestionThread(question, answers, questionComments, answerComments));
+            content = Files.readAllBytes(filePath);
+        } catch (IOException e) {
+            log.warn("Failed to read {}: {}", filePath, e.getMessage());
+            return Optional.empty();
+        }
+        return load(filePath.toString(), content);
+    }
+
+    /**
+     * 解析已读入内存的一条记录（调用方已读取内容，例如需要先计算内容哈希，或来自归档）
+     * @param sourceName 仅用于日志
+     */
+    public Optional<QuestionThread> load(String sourceName, byte[] content) {
+        try {
+            return toThread(threadReader.readValue(content));
+        } catch (IOException e) {
+            log.warn("Failed to parse {}: {}", sourceName, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 解析内存中的 JSON 树（例如采集器直接产出的 thread），不经过序列化与文件
+     * @param sourceName 仅用于日志
+     */
+    public Optional<QuestionThread> load(String sourceName, JsonNode tree) {
+        try {
+            return toThread(threadReader.readValue(tree));
         } catch (IOException e) {
-            log.warn("Failed to parse {}: {}", filePath, e.getMessage());
+            log.warn("Failed to parse {}: {}", sourceName, e.getMessage());
             return Optional.empty();
         }
     }
 
-    private Question mapQuestion(JsonNode node) {
-        if (node.isMissingNode()) {
-            return null;
+    private Optional<QuestionThread> toThread(ThreadJson json) {
+        if (json == null || json.question == null) {
+            return Optional.empty();
+        }
+        Question question = mapQuestion(json.question);
+        List<Answer> answers = mapAnswers(json.answers);
+        List<Comment> questionComments = mapComments(json.questionComments, question.id(), "question");
+        Map<Long, List<Comment>> answerComments = mapAnswerComments(json.answerComments);
+        return Optional.of(new QuestionThread(question, answers, questionComments, answerComments));
+    }
+
+    /**
+     * 顺序读取数据源中的每条记录（不解析），整个数据源只打开、读取一次
+     */
+    public void readRecords(Path source, RecordConsumer consumer) throws IOException, InterruptedException {
+        String name = source.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".zip")) {
+            readZip(source, consumer);
+            return;
+        }
+        boolean gzip = name.endsWith(".gz");
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(source), BUFFER_SIZE);
+             InputStream in = gzip ? new GZIPInputStream(raw, BUFFER_SIZE) : raw) {
+            if (isDelimited(baseName(source))) {
+                readLines(in, "", consumer);
+            } else {
+                consumer.accept("", in.readAllBytes());
+            }
+        }
+    }
+
+    private void readZip(Path source, RecordConsumer consumer) throws IOException, InterruptedException {
+        try (ZipInputStream zip = new ZipInputStream(
+                new BufferedInputStream(Files.newInputStream(source), BUFFER_SIZE))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String entryName = entry.getName();
+                String lowerName = entryName.toLowerCase(Locale.ROOT);
+                if (isDelimited(lowerName)) {
+                    readLines(zip, entryName + ":", consumer);
+                } else if (lowerName.endsWith(".json")) {
+                    // ZipInputStream 在当前条目结束处返回 EOF
+                    consumer.accept(entryName, zip.readAllBytes());
+                } else {
+                    log.debug("Skipping unsupported zip entry {} in {}", entryName, source.getFileName());
+                }
+            }
+        }
+    }
+
+    /**
+     * 按换行拆分记录（在字节层面拆分，不做字符解码）；记录名为前缀 + 物理行号，空行跳过但计入行号
+     */
+    private void readLines(InputStream in, String namePrefix, RecordConsumer consumer)
+            throws IOException, InterruptedException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long lineNumber = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    line.write(buffer, start, i - start);
+                    lineNumber++;
+                    emitLine(line, namePrefix + lineNumber, consumer);
+                    line.reset();
+                    start = i + 1;
+                }
+            }
+            line.write(buffer, start, read - start);
+        }
+        if (line.size() > 0) {
+            lineNumber++;
+            emitLine(line, namePrefix + lineNumber, consumer);
+        }
+    }
+
+    private void emitLine(ByteArrayOutputStream line, String recordName, RecordConsumer consumer)
+            throws IOException, InterruptedException {
+        byte[] bytes = line.toByteArray();
+        int end = bytes.length;
+        while (end > 0 && isWhitespace(bytes[end - 1])) {
+            end--;
+        }
+        int begin = 0;
+        while (begin < end && isWhitespace(bytes[begin])) {
+            begin++;
+        }
+        if (begin == end) {
+            return;
+        }
+        consumer.accept(recordName, begin == 0 && end == bytes.length ? bytes : Arrays.copyOfRange(bytes, begin, end));
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static boolean isDelimited(String lowerName) {
+        return lowerName.endsWith(".ndjson") || lowerName.endsWith(".jsonl");
+    }
+
+    /**
+     * 小写文件名，去掉 .gz 后缀
+     */
+    private static String baseName(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    private Question mapQuestion(QuestionJson json) {
+        List<String> tags = new ArrayList<>(json.tags != null ? json.tags.size() : 0);
+        if (json.tags != null) {
+            json.tags.forEach(tag -> tags.add(tag == null ? "" : tag.toLowerCase(Locale.ROOT)));
         }
-        Author owner = mapAuthor(node.path("owner"));
-        List<String> tags = new ArrayList<>();
-        node.path("tags").forEach(tag -> tags.add(tag.asText("").toLowerCase(Locale.ROOT)));
         return new Question(
-                node.path("question_id").asLong(),
-                node.path("title").asText(""),
-                node.path("body").asText(""),
+                orZero(json.questionId),
+                orEmpty(json.title),
+                orEmpty(json.body),
                 Collections.unmodifiableList(tags),
-                owner,
-                node.path("is_answered").asBoolean(false),
-                node.path("answer_count").asInt(0),
-                node.path("score").asInt(0),
-                node.path("creation_date").asLong(0),
-                node.path("last_activity_date").asLong(0),
-                node.hasNonNull("accepted_answer_id") ? node.path("accepted_answer_id").asInt() : null,
-                node.path("view_count").asInt(0),
-                node.path("link").asText(null),
-                node.hasNonNull("closed_date") ? node.path("closed_date").asLong() : null,
-                node.path("closed_reason").asText(null),
-                node.path("content_license").asText(null)
+                mapAuthor(json.owner),
+                json.isAnswered != null && json.isAnswered,
+                orZero(json.answerCount),
+                orZero(json.score),
+                orZero(json.creationDate),
+                orZero(json.lastActivityDate),
+                json.acceptedAnswerId,
+                orZero(json.viewCount),
+                json.link,
+                json.closedDate,
+                json.closedReason,
+                json.contentLicense
         );
     }
 
-    private List<Answer> mapAnswers(JsonNode node) {
-        if (!node.isArray()) {
+    private List<Answer> mapAnswers(List<AnswerJson> json) {
+        if (json == null) {
             return List.of();
         }
-        List<Answer> answers = new ArrayList<>();
-        node.forEach(answerNode -> {
-            Author owner = mapAuthor(answerNode.path("owner"));
+        List<Answer> answers = new ArrayList<>(json.size());
+        for (AnswerJson answer : json) {
+            if (answer == null) {
+                continue;
+            }
             answers.add(new Answer(
-                    answerNode.path("answer_id").asLong(),
-                    answerNode.path("question_id").asLong(),
-                    answerNode.path("body").asText(""),
-                    owner,
-                    answerNode.path("score").asInt(0),
-                    answerNode.path("is_accepted").asBoolean(false),
-                    answerNode.path("creation_date").asLong(0),
-                    answerNode.hasNonNull("last_activity_date") ? answerNode.path("last_activity_date").asLong() : null,
-                    answerNode.path("content_license").asText(null)
+                    orZero(answer.answerId),
+                    orZero(answer.questionId),
+                    orEmpty(answer.body),
+                    mapAuthor(answer.owner),
+                    orZero(answer.score),
+                    answer.isAccepted != null && answer.isAccepted,
+                    orZero(answer.creationDate),
+                    answer.lastActivityDate,
+                    answer.contentLicense
             ));
-        });
+        }
         return answers;
     }
 
-    private List<Comment> mapComments(JsonNode node, long postId, String postType) {
-        if (!node.isArray()) {
+    private List<Comment> mapComments(List<CommentJson> json, long postId, String postType) {
+        if (json == null) {
             return List.of();
         }
-        List<Comment> comments = new ArrayList<>();
-        node.forEach(commentNode -> {
-            Author owner = mapAuthor(commentNode.path("owner"));
+        List<Comment> comments = new ArrayList<>(json.size());
+        for (CommentJson comment : json) {
+            if (comment == null) {
+                continue;
+            }
             comments.add(new Comment(
-                    commentNode.path("comment_id").asLong(),
+                    orZero(comment.commentId),
                     postId,
                     postType,
-                    owner,
-                    commentNode.path("score").asInt(0),
-                    commentNode.path("creation_date").asLong(0),
-                    commentNode.path("body").asText(""),
-                    commentNode.path("content_license").asText(null)
+                    mapAuthor(comment.owner),
+                    orZero(comment.score),
+                    orZero(comment.creationDate),
+                    orEmpty(comment.body),
+                    comment.contentLicense
             ));
-        });
+        }
         return comments;
     }
 
-    private Map<Long, List<Comment>> mapAnswerComments(JsonNode node) {
-        if (!node.isObject()) {
+    private Map<Long, List<Comment>> mapAnswerComments(Map<String, List<CommentJson>> json) {
+        if (json == null) {
             return Map.of();
         }
         Map<Long, List<Comment>> comments = new HashMap<>();
-        node.fieldNames().forEachRemaining(answerIdStr -> {
+        json.forEach((answerIdStr, commentArray) -> {
             long answerId = Long.parseLong(answerIdStr);
-            JsonNode commentArray = node.path(answerIdStr);
             comments.put(answerId, mapComments(commentArray, answerId, "answer"));
         });
         return comments;
     }
 
-    private Author mapAuthor(JsonNode node) {
-        if (node.isMissingNode()) {
+    private Author mapAuthor(AuthorJson json) {
+        if (json == null) {
             return new Author(0L, null, "anonymous", 0, "unknown", null, null);
         }
         return new Author(
-                node.path("account_id").asLong(0),
-                node.hasNonNull("user_id") ? node.path("user_id").asLong() : null,
-                node.path("display_name").asText(null),
-                node.path("reputation").asInt(0),
-                node.path("user_type").asText("unknown"),
-                node.path("profile_image").asText(null),
-                node.path("link").asText(null)
+                orZero(json.accountId),
+                json.userId,
+                json.displayName,
+                orZero(json.reputation),
+                json.userType != null ? json.userType : "unknown",
+                json.profileImage,
+                json.link
         );
     }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    // 以下为 JSON 绑定用的中间结构，只在解析时短暂存在；字符串直接复用到模型记录中，不会重复拷贝
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static final class ThreadJson {
+        @JsonProperty("question")
+        QuestionJson question;
+        @JsonProperty("answers")
+        List<AnswerJson> answers;
+        @JsonProperty("question_comments")
+        List<CommentJson> questionComments;
+        @JsonProperty("answer_comments")
+        Map<String, List<CommentJson>> answerComments;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static final class QuestionJson {
+        @JsonProperty("question_id")
+        Long questionId;
+        @JsonProperty("title")
+        String title;
+        @JsonProperty("body")
+        String body;
+        @JsonProperty("tags")
+        List<String> tags;
+        @JsonProperty("owner")
+        AuthorJson owner;
+        @JsonProperty("is_answered")
+        Boolean isAnswered;
+        @JsonProperty("answer_count")
+        Integer answerCount;
+        @JsonProperty("score")
+        Integer score;
+        @JsonProperty("creation_date")
+        Long creationDate;
+        @JsonProperty("last_activity_date")
+        Long lastActivityDate;
+        @JsonProperty("accepted_answer_id")
+        Integer acceptedAnswerId;
+        @JsonProperty("view_count")
+        Integer viewCount;
+        @JsonProperty("link")
+        String link;
+        @JsonProperty("closed_date")
+        Long closedDate;
+        @JsonProperty("closed_reason")
+        String closedReason;
+        @JsonProperty("content_license")
+        String contentLicense;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static final class AnswerJson {
+        @JsonProperty("answer_id")
+        Long answerId;
+        @JsonProperty("question_id")
+        Long questionId;
+        @JsonProperty("body")
+        String body;
+        @JsonProperty("owner")
+        AuthorJson owner;
+        @JsonProperty("score")
+        Integer score;
+        @JsonProperty("is_accepted")
+        Boolean isAccepted;
+        @JsonProperty("creation_date")
+        Long creationDate;
+        @JsonProperty("last_activity_date")
+        Long lastActivityDate;
+        @JsonProperty("content_license")
+        String contentLicense;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static final class CommentJson {
+        @JsonProperty("comment_id")
+        Long commentId;
+        @JsonProperty("owner")
+        AuthorJson owner;
+        @JsonProperty("score")
+        Integer score;
+        @JsonProperty("creation_date")
+        Long creationDate;
+        @JsonProperty("body")
+        String body;
+        @JsonProperty("content_license")
+        String contentLicense;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static final class AuthorJson {
+        @JsonProperty("account_id")
+        Long accountId;
+        @JsonProperty("user_id")
+        Long userId;
+        @JsonProperty("display_name")
+        String displayName;
+        @JsonProperty("reputation")
+        Integer reputation;
+        @JsonProperty("user_type")
+        String userType;
+        @JsonProperty("profile_image")
+        String profileImage;
+        @JsonProperty("link")
+        String link;
+    }
 }
 
 
@@ -0,0 +1,28 @@
+package cs209a.finalproject_demo.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+public record ImportJobResponse(
+        String job_id,
+        String engine,
+        String directory,
+        String status,                       // QUEUED / RUNNING / SUCCEEDED / FAILED / CANCELLED
+        Instant submitted_at,
+        Instant started_at,
+        Instant finished_at,
+        long processed,                      // 已处理的文件/归档记录数（含失败、跳过与未变化）
+        Long expected,                       // 待处理总数，包含归档时未知
+        int success,
+        int failed,
+        int skipped,
+        int unchanged,
+        double threads_per_second,           // 最近一个采样区间内的成功导入速度
+        Map<String, Long> rows,              // 各表已提交的行数
+        Map<String, Double> rows_per_second, // 最近一个采样区间内各表的写入速度
+        long batch_size_rows,                // 当前自适应批次大小（行数）
+        Long eta_seconds,                    // 预计剩余时间，总数未知或尚无速度时为空
+        int error_count,
+        String error                         // 任务本身失败时的原因
+) {
+}
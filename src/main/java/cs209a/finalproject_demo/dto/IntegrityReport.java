@@ -0,0 +1,23 @@
+package cs209a.finalproject_demo.dto;
+
+import java.util.List;
+
+public record IntegrityReport(
+        String source,              // database / files
+        long threads,
+        long answers,
+        long comments,
+        int shards,                 // 并行扫描的分片数
+        long duration_ms,
+        boolean passed,             // 所有检查均无违规
+        List<CheckResult> checks
+) {
+
+    public record CheckResult(
+            String check,
+            String description,
+            long violations,
+            List<Long> sample_ids   // 部分违规的问题 ID（孤立评论为评论 ID）
+    ) {
+    }
+}
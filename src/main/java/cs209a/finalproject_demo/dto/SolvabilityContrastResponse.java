@@ -1,5 +1,6 @@
 package cs209a.finalproject_demo.dto;
 
+import java.time.LocalDate;
 import java.util.List;
 
 public record SolvabilityContrastResponse(
@@ -16,14 +17,27 @@ public record SolvabilityContrastResponse(
         BoxPlotData code_ratio_boxplot_data,
         BoxPlotData view_count_boxplot_data,
         DistributionData title_words_distribution,
-        DistributionData view_count_distribution
+        DistributionData view_count_distribution,
+        SketchApproximation approximation  // 仅近似（草图合并）模式下非空
 ) {
 
     public record FeatureComparison(
             String feature_name,
             double solvable_group,
             double hard_group,
-            String unit
+            String unit,
+            SignificanceTest significance  // 近似（草图）模式下为空
+    ) {
+    }
+    
+    public record SignificanceTest(
+            int solvable_count,
+            int hard_count,
+            double mann_whitney_u,        // 易解决组的 U 统计量
+            double mann_whitney_z,        // 含并列与连续性校正的 z 值
+            double mann_whitney_p_value,  // 双侧 p 值（正态近似）
+            double ks_statistic,          // 两组经验分布函数的最大差值 D
+            double ks_p_value             // 双侧 p 值（渐近分布）
     ) {
     }
     
@@ -65,24 +79,24 @@ public record SolvabilityContrastResponse(
             int sample_count         // 样本数量
     ) {
     }
+    
+    public record SketchApproximation(
+            LocalDate covered_from,   // 实际覆盖的起始日期（按整月对齐）
+            LocalDate covered_to,     // 实际覆盖的结束日期（按整月对齐）
+            int merged_sketches,      // 合并的按月草图数量
+            int sketch_k,             // KLL 草图参数 k
+            List<QuantileError> quantile_errors
+    ) {
+    }
+    
+    public record QuantileError(
+            String metric,
+            String group,
+            long sample_count,
+            int retained_items,           // 草图保留的样本数
+            double normalized_rank_error, // 归一化秩误差上界（99% 置信度），0 表示精确
+            double median_lower,          // 中位数的置信区间下界
+            double median_upper           // 中位数的置信区间上界
+    ) {
+    }
 }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
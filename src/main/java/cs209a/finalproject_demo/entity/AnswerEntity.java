@@ -12,7 +12,9 @@ import java.util.List;
 @Table(name = "answers", indexes = {
     @Index(name = "idx_answer_question_id", columnList = "question_id"),
     @Index(name = "idx_answer_accepted", columnList = "accepted"),
-    @Index(name = "idx_answer_score", columnList = "score")
+    @Index(name = "idx_answer_score", columnList = "score"),
+    @Index(name = "idx_answer_question_answer", columnList = "question_id, answer_id"),
+    @Index(name = "idx_answer_question_score", columnList = "question_id, score")
 })
 public class AnswerEntity {
     @Id
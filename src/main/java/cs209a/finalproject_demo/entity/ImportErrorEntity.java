@@ -0,0 +1,131 @@
+package cs209a.finalproject_demo.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * 导入错误台账实体：每次被拒绝的数据源一行
+ * source_path 与导入清单的键一致（文件路径，或“归档路径!记录名”），quarantine_path 为隔离目录中的副本
+ */
+@Entity
+@Table(name = "import_errors", indexes = {
+    @Index(name = "idx_import_errors_source_path", columnList = "source_path"),
+    @Index(name = "idx_import_errors_quarantine_path", columnList = "quarantine_path")
+})
+public class ImportErrorEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "source_path", nullable = false, length = 1000)
+    private String sourcePath;
+
+    @Column(name = "question_id")
+    private Long questionId;
+
+    @Column(name = "stage", nullable = false, length = 20)
+    private String stage;
+
+    @Column(name = "exception_class", length = 300)
+    private String exceptionClass;
+
+    @Column(name = "message", columnDefinition = "TEXT")
+    private String message;
+
+    @Column(name = "quarantine_path", length = 1000)
+    private String quarantinePath;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+
+    @Column(name = "resolved_at")
+    private Instant resolvedAt;
+
+    // Constructors
+    public ImportErrorEntity() {
+    }
+
+    public ImportErrorEntity(String sourcePath, Long questionId, String stage, String exceptionClass,
+                             String message, String quarantinePath, Instant occurredAt) {
+        this.sourcePath = sourcePath;
+        this.questionId = questionId;
+        this.stage = stage;
+        this.exceptionClass = exceptionClass;
+        this.message = message;
+        this.quarantinePath = quarantinePath;
+        this.occurredAt = occurredAt;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    public void setSourcePath(String sourcePath) {
+        this.sourcePath = sourcePath;
+    }
+
+    public Long getQuestionId() {
+        return questionId;
+    }
+
+    public void setQuestionId(Long questionId) {
+        this.questionId = questionId;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public String getExceptionClass() {
+        return exceptionClass;
+    }
+
+    public void setExceptionClass(String exceptionClass) {
+        this.exceptionClass = exceptionClass;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getQuarantinePath() {
+        return quarantinePath;
+    }
+
+    public void setQuarantinePath(String quarantinePath) {
+        this.quarantinePath = quarantinePath;
+    }
+
+    public Instant getOccurredAt() {
+        return occurredAt;
+    }
+
+    public void setOccurredAt(Instant occurredAt) {
+        this.occurredAt = occurredAt;
+    }
+
+    public Instant getResolvedAt() {
+        return resolvedAt;
+    }
+
+    public void setResolvedAt(Instant resolvedAt) {
+        this.resolvedAt = resolvedAt;
+    }
+}
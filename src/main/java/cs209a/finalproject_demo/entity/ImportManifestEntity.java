@@ -0,0 +1,124 @@
+package cs209a.finalproject_demo.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * 导入清单实体：每个数据文件一行
+ * status 为 IMPORTED 且大小/修改时间或内容哈希未变化的文件在重复导入时被跳过
+ */
+@Entity
+@Table(name = "import_manifest", indexes = {
+    @Index(name = "idx_import_manifest_status", columnList = "status")
+})
+public class ImportManifestEntity {
+
+    public static final String STATUS_IMPORTED = "IMPORTED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @Column(name = "file_path", length = 1000)
+    private String filePath;
+
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    @Column(name = "modified_at", nullable = false)
+    private Instant modifiedAt;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "question_id")
+    private Long questionId;
+
+    @Column(name = "imported_at", nullable = false)
+    private Instant importedAt;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    // Constructors
+    public ImportManifestEntity() {
+    }
+
+    public ImportManifestEntity(String filePath, Long fileSize, Instant modifiedAt, String contentHash,
+                                String status, Long questionId, Instant importedAt, String errorMessage) {
+        this.filePath = filePath;
+        this.fileSize = fileSize;
+        this.modifiedAt = modifiedAt;
+        this.contentHash = contentHash;
+        this.status = status;
+        this.questionId = questionId;
+        this.importedAt = importedAt;
+        this.errorMessage = errorMessage;
+    }
+
+    // Getters and Setters
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public Instant getModifiedAt() {
+        return modifiedAt;
+    }
+
+    public void setModifiedAt(Instant modifiedAt) {
+        this.modifiedAt = modifiedAt;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getQuestionId() {
+        return questionId;
+    }
+
+    public void setQuestionId(Long questionId) {
+        this.questionId = questionId;
+    }
+
+    public Instant getImportedAt() {
+        return importedAt;
+    }
+
+    public void setImportedAt(Instant importedAt) {
+        this.importedAt = importedAt;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
@@ -46,6 +46,10 @@ public class QuestionEntity {
     @Column(name = "view_count")
     private Integer viewCount;
 
+    // 问题评论数（冗余字段，导入时维护）
+    @Column(name = "comment_count", nullable = false)
+    private Integer commentCount = 0;
+
     @Column(name = "link", length = 500)
     private String link;
 
@@ -176,6 +180,14 @@ public class QuestionEntity {
         this.viewCount = viewCount;
     }
 
+    public Integer getCommentCount() {
+        return commentCount;
+    }
+
+    public void setCommentCount(Integer commentCount) {
+        this.commentCount = commentCount;
+    }
+
     public String getLink() {
         return link;
     }
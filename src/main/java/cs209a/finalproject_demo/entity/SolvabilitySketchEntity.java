@@ -0,0 +1,98 @@
+package cs209a.finalproject_demo.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * 可解性分析按月草图实体
+ * payload 为该月该组的可合并统计（JSON）
+ */
+@Entity
+@Table(name = "solvability_month_sketches", indexes = {
+    @Index(name = "idx_sketch_bucket_month", columnList = "bucket_month")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_sketch_month_group", columnNames = {"bucket_month", "question_group"})
+})
+public class SolvabilitySketchEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bucket_month", nullable = false)
+    private LocalDate bucketMonth;
+
+    @Column(name = "question_group", nullable = false, length = 20)
+    private String questionGroup;
+
+    @Column(name = "question_count", nullable = false)
+    private Integer questionCount;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "built_at", nullable = false)
+    private Instant builtAt;
+
+    // Constructors
+    public SolvabilitySketchEntity() {
+    }
+
+    public SolvabilitySketchEntity(LocalDate bucketMonth, String questionGroup, Integer questionCount,
+                                   String payload, Instant builtAt) {
+        this.bucketMonth = bucketMonth;
+        this.questionGroup = questionGroup;
+        this.questionCount = questionCount;
+        this.payload = payload;
+        this.builtAt = builtAt;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDate getBucketMonth() {
+        return bucketMonth;
+    }
+
+    public void setBucketMonth(LocalDate bucketMonth) {
+        this.bucketMonth = bucketMonth;
+    }
+
+    public String getQuestionGroup() {
+        return questionGroup;
+    }
+
+    public void setQuestionGroup(String questionGroup) {
+        this.questionGroup = questionGroup;
+    }
+
+    public Integer getQuestionCount() {
+        return questionCount;
+    }
+
+    public void setQuestionCount(Integer questionCount) {
+        this.questionCount = questionCount;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Instant getBuiltAt() {
+        return builtAt;
+    }
+
+    public void setBuiltAt(Instant builtAt) {
+        this.builtAt = builtAt;
+    }
+}
@@ -2,9 +2,12 @@ package cs209a.finalproject_demo.repository;
 
 import cs209a.finalproject_demo.entity.AnswerCommentEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,5 +31,15 @@ public interface AnswerCommentRepository extends JpaRepository<AnswerCommentEnti
            "LEFT JOIN FETCH ac.owner " +
            "WHERE ac.answer.answerId IN :answerIds")
     List<AnswerCommentEntity> findByAnswerAnswerIdIn(List<Long> answerIds);
-}
 
+    /**
+     * 删除指定问题的回答下不在保留列表中的回答评论（重新导入时以新数据为准）
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AnswerCommentEntity ac " +
+           "WHERE ac.answer.answerId IN " +
+           "(SELECT a.answerId FROM AnswerEntity a WHERE a.question.questionId IN :questionIds) " +
+           "AND ac.commentId NOT IN :keepIds")
+    int deleteByQuestionIdsExcept(Collection<Long> questionIds, Collection<Long> keepIds);
+}
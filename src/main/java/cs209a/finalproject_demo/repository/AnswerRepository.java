@@ -2,8 +2,12 @@ package cs209a.finalproject_demo.repository;
 
 import cs209a.finalproject_demo.entity.AnswerEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,34 +16,12 @@ public interface AnswerRepository extends JpaRepository<AnswerEntity, Long> {
     Optional<AnswerEntity> findByAnswerId(Long answerId);
 
     List<AnswerEntity> findByQuestionQuestionId(Long questionId);
-}
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
 
+    /**
+     * 删除指定问题下不在保留列表中的回答（重新导入时以新数据为准，回答评论由外键级联删除）
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AnswerEntity a WHERE a.question.questionId IN :questionIds AND a.answerId NOT IN :keepIds")
+    int deleteByQuestionIdsExcept(Collection<Long> questionIds, Collection<Long> keepIds);
+}
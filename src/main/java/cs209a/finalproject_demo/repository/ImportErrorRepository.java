@@ -0,0 +1,42 @@
+package cs209a.finalproject_demo.repository;
+
+import cs209a.finalproject_demo.entity.ImportErrorEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface ImportErrorRepository extends JpaRepository<ImportErrorEntity, Long> {
+    /**
+     * 未解决的错误条数
+     */
+    long countByResolvedAtIsNull();
+
+    /**
+     * 为尚未隔离的错误记录补上隔离副本路径（归档记录在导入结束后统一提取）
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE ImportErrorEntity e SET e.quarantinePath = :quarantinePath
+            WHERE e.sourcePath = :sourcePath AND e.quarantinePath IS NULL
+            """)
+    int setQuarantinePath(@Param("sourcePath") String sourcePath,
+                          @Param("quarantinePath") String quarantinePath);
+
+    /**
+     * 隔离副本重放成功：该副本对应的所有未解决错误标记为已解决
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE ImportErrorEntity e SET e.resolvedAt = :resolvedAt
+            WHERE e.resolvedAt IS NULL AND (e.quarantinePath = :path OR e.sourcePath = :path)
+            """)
+    int markResolved(@Param("path") String path, @Param("resolvedAt") Instant resolvedAt);
+}
@@ -0,0 +1,15 @@
+package cs209a.finalproject_demo.repository;
+
+import cs209a.finalproject_demo.entity.ImportManifestEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ImportManifestRepository extends JpaRepository<ImportManifestEntity, String> {
+    /**
+     * 查找指定状态的清单记录
+     */
+    List<ImportManifestEntity> findByStatus(String status);
+}
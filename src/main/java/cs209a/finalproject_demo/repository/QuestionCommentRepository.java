@@ -2,9 +2,12 @@ package cs209a.finalproject_demo.repository;
 
 import cs209a.finalproject_demo.entity.QuestionCommentEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,5 +31,13 @@ public interface QuestionCommentRepository extends JpaRepository<QuestionComment
            "LEFT JOIN FETCH qc.owner " +
            "WHERE qc.question.questionId IN :questionIds")
     List<QuestionCommentEntity> findByQuestionQuestionIdIn(List<Long> questionIds);
-}
 
+    /**
+     * 删除指定问题下不在保留列表中的问题评论（重新导入时以新数据为准）
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM QuestionCommentEntity qc " +
+           "WHERE qc.question.questionId IN :questionIds AND qc.commentId NOT IN :keepIds")
+    int deleteByQuestionIdsExcept(Collection<Long> questionIds, Collection<Long> keepIds);
+}
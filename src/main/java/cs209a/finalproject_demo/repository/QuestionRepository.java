@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,6 +14,11 @@ import java.util.Optional;
 public interface QuestionRepository extends JpaRepository<QuestionEntity, Long> {
     Optional<QuestionEntity> findByQuestionId(Long questionId);
 
+    /**
+     * 是否有任一问题已在库中（重新导入时据此决定是否需要清理已删除的回答与评论）
+     */
+    boolean existsByQuestionIdIn(Collection<Long> questionIds);
+
     @Query("SELECT q FROM QuestionEntity q WHERE q.creationDate BETWEEN :fromDate AND :toDate")
     List<QuestionEntity> findByCreationDateBetween(Instant fromDate, Instant toDate);
 
@@ -22,6 +28,12 @@ public interface QuestionRepository extends JpaRepository<QuestionEntity, Long>
     @Query("SELECT COUNT(q) FROM QuestionEntity q")
     long countAll();
 
+    /**
+     * 库中问题的最大最后活动时间（增量同步的起点）
+     */
+    @Query("SELECT MAX(q.lastActivityDate) FROM QuestionEntity q")
+    Optional<Instant> findMaxLastActivityDate();
+
     /**
      * 使用JOIN FETCH加载问题和答案，避免N+1查询问题
      * 注意：不能同时fetch多个List集合（MultipleBagFetchException）
@@ -55,30 +67,47 @@ public interface QuestionRepository extends JpaRepository<QuestionEntity, Long>
     List<QuestionEntity> findPotentialMultithreadingQuestions();
     
     /**
-     * 查找可解决的问题（初步筛选）
-     * 仅按是否有被接受答案且未关闭进行粗筛，
-     * 具体时间间隔等规则在服务层 refineSolvableQuestions 中处理。
-     * 同时加载答案和所有者信息，避免N+1查询
+     * 查找可解决问题的ID（分类规则完全在数据库中执行）
+     * 规则：问题未关闭，有被接受答案，且被接受答案创建时间距问题创建时间小于2小时。
+     * 时间窗口 [fromDate, toDate) 同样下推到SQL。
+     * EXISTS 子查询由 answers(question_id, answer_id) 索引支撑。
      */
-    @Query("SELECT DISTINCT q FROM QuestionEntity q " +
-           "LEFT JOIN FETCH q.answers a " +
-           "LEFT JOIN FETCH q.owner " +
-           "WHERE q.acceptedAnswerId IS NOT NULL " +
-           "  AND q.closedDate IS NULL")
-    List<QuestionEntity> findSolvableQuestions();
+    @Query(value = "SELECT q.question_id FROM questions q " +
+           "WHERE q.closed_date IS NULL " +
+           "  AND q.accepted_answer_id IS NOT NULL " +
+           "  AND q.creation_date >= :fromDate AND q.creation_date < :toDate " +
+           "  AND EXISTS (SELECT 1 FROM answers a " +
+           "              WHERE a.question_id = q.question_id " +
+           "                AND a.answer_id = q.accepted_answer_id " +
+           "                AND a.creation_date < q.creation_date + INTERVAL '2 hours')",
+           nativeQuery = true)
+    List<Long> findSolvableQuestionIds(Instant fromDate, Instant toDate);
     
     /**
-     * 查找难解决的问题（初步筛选）
-     * 仅按“无被接受答案且未关闭”进行粗筛，
-     * 具体高分答案与长期无人回答规则在服务层 refineHardQuestions 中处理。
-     * 同时加载答案和所有者信息，避免N+1查询
+     * 查找难解决问题的ID（分类规则完全在数据库中执行）
+     * 规则：问题未关闭且无被接受答案，并满足：
+     *  条件A：存在得分 > 6 的答案（由 answers(question_id, score) 索引支撑）；
+     *  或 条件B：没有任何答案，且创建时间早于 unansweredBefore（长期无人回答）。
+     * 时间窗口 [fromDate, toDate) 同样下推到SQL。
      */
-    @Query("SELECT DISTINCT q FROM QuestionEntity q " +
-           "LEFT JOIN FETCH q.answers a " +
+    @Query(value = "SELECT q.question_id FROM questions q " +
+           "WHERE q.closed_date IS NULL " +
+           "  AND q.accepted_answer_id IS NULL " +
+           "  AND q.creation_date >= :fromDate AND q.creation_date < :toDate " +
+           "  AND (EXISTS (SELECT 1 FROM answers a " +
+           "               WHERE a.question_id = q.question_id AND a.score > 6) " +
+           "       OR (NOT EXISTS (SELECT 1 FROM answers a WHERE a.question_id = q.question_id) " +
+           "           AND q.creation_date < :unansweredBefore))",
+           nativeQuery = true)
+    List<Long> findHardToSolveQuestionIds(Instant fromDate, Instant toDate, Instant unansweredBefore);
+    
+    /**
+     * 按ID批量加载问题，同时加载所有者信息（可解性分析不需要答案）
+     */
+    @Query("SELECT q FROM QuestionEntity q " +
            "LEFT JOIN FETCH q.owner " +
-           "WHERE q.acceptedAnswerId IS NULL " +
-           "  AND q.closedDate IS NULL")
-    List<QuestionEntity> findHardToSolveQuestions();
+           "WHERE q.questionId IN :questionIds")
+    List<QuestionEntity> findWithOwnerByQuestionIdIn(List<Long> questionIds);
 }
 
 
@@ -0,0 +1,16 @@
+package cs209a.finalproject_demo.repository;
+
+import cs209a.finalproject_demo.entity.SolvabilitySketchEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SolvabilitySketchRepository extends JpaRepository<SolvabilitySketchEntity, Long> {
+    /**
+     * 查找指定月份区间（含端点，均为月初日期）内的所有草图
+     */
+    List<SolvabilitySketchEntity> findByBucketMonthBetweenOrderByBucketMonthAsc(LocalDate fromMonth, LocalDate toMonth);
+}
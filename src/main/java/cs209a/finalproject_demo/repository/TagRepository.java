@@ -2,26 +2,31 @@ package cs209a.finalproject_demo.repository;
 
 import cs209a.finalproject_demo.entity.TagEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TagRepository extends JpaRepository<TagEntity, Long> {
     Optional<TagEntity> findByName(String name);
-}
-
-
-
-
-
-
-
-
-
-
-
-
-
-
 
+    List<TagEntity> findByNameIn(Collection<String> names);
+
+    /**
+     * 批量插入尚不存在的标签，一次往返完成
+     * @param namesJson 标签名 JSON 数组
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO tags (name)
+            SELECT DISTINCT name FROM jsonb_array_elements_text(CAST(:names AS jsonb)) AS t(name)
+            ORDER BY name
+            ON CONFLICT (name) DO NOTHING
+            """, nativeQuery = true)
+    int insertMissing(@Param("names") String namesJson);
+}
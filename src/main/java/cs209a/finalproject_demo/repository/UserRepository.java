@@ -2,41 +2,33 @@ package cs209a.finalproject_demo.repository;
 
 import cs209a.finalproject_demo.entity.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
     Optional<UserEntity> findByAccountId(Long accountId);
-}
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
 
+    List<UserEntity> findByAccountIdIn(Collection<Long> accountIds);
+
+    /**
+     * 批量插入尚不存在的用户（已存在的 account_id 保持不变），一次往返完成
+     * @param rowsJson 用户 JSON 数组，字段名与列名一致
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO users (account_id, user_id, display_name, reputation, user_type, profile_image, link)
+            SELECT account_id, user_id, display_name, reputation, user_type, profile_image, link
+            FROM jsonb_to_recordset(CAST(:rows AS jsonb)) AS r(account_id BIGINT, user_id BIGINT,
+                 display_name TEXT, reputation INTEGER, user_type TEXT, profile_image TEXT, link TEXT)
+            ORDER BY account_id
+            ON CONFLICT (account_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertMissing(@Param("rows") String rowsJson);
+}
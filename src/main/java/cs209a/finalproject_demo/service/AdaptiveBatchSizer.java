@@ -0,0 +1,147 @@
+package cs209a.finalproject_demo.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+
+/**
+ * 自适应批次大小控制器（线程安全）
+ *
+ * thread 的大小差异很大（几个回答 vs 数百条评论），固定的 thread 数要么让数据库吃不满，要么让堆内存尖峰。
+ * 这里按行数（问题 + 标签 + 回答 + 评论）和估算字节数（源 JSON 大小）切分批次：
+ * 1. 每批写入后按实测的每行耗时（指数加权平均）调整行数预算，使单批提交耗时趋近目标值，每次最多放大/缩小一倍
+ * 2. 老年代在上次 GC 后的占用超过高水位时，行数与字节预算同时减半
+ * 3. 字节预算限制单批内存占用，与行数预算先到先切
+ *
+ * 当前行数预算即“批次大小”指标，随导入报告与进度日志输出。
+ */
+final class AdaptiveBatchSizer {
+
+    private static final double EWMA_WEIGHT = 0.3;
+
+    private final long targetNanos;
+    private final long minRows;
+    private final long maxRows;
+    private final long maxBytes;
+    private final double heapHighWatermark;
+    private final List<MemoryPoolMXBean> heapPools;
+
+    private volatile long rowBudget;
+    private volatile long byteBudget;
+    private double nanosPerRow = -1;
+    private long batches;
+    private long totalRows;
+    private long smallestBudget;
+    private long largestBudget;
+    private long heapBackoffs;
+
+    /**
+     * @param initialRows 初始行数预算
+     * @param minRows 行数预算下限
+     * @param maxRows 行数预算上限
+     * @param maxBytes 单批源数据字节数上限
+     * @param targetCommitMillis 目标单批提交耗时
+     * @param heapHighWatermark 老年代占用比例高水位（0-1）
+     */
+    AdaptiveBatchSizer(long initialRows, long minRows, long maxRows, long maxBytes,
+                       long targetCommitMillis, double heapHighWatermark) {
+        this.minRows = Math.max(1, minRows);
+        this.maxRows = Math.max(this.minRows, maxRows);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.targetNanos = Math.max(1, targetCommitMillis) * 1_000_000L;
+        this.heapHighWatermark = heapHighWatermark;
+        this.heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null)
+                // 新生代回收后 Survivor 常接近满，不代表内存压力
+                .filter(pool -> !pool.getName().contains("Eden") && !pool.getName().contains("Survivor"))
+                .toList();
+        this.rowBudget = clamp(initialRows);
+        this.byteBudget = this.maxBytes;
+        this.smallestBudget = rowBudget;
+        this.largestBudget = rowBudget;
+    }
+
+    /**
+     * 映射阶段判断当前批次是否已满（至少包含一个 thread）
+     */
+    boolean isFull(int threads, long rows, long bytes) {
+        return threads > 0 && (rows >= rowBudget || bytes >= byteBudget);
+    }
+
+    /**
+     * 写入阶段在每批提交后反馈实际行数、字节数与耗时
+     */
+    synchronized void recordWrite(long rows, long bytes, long nanos) {
+        batches++;
+        totalRows += rows;
+        if (rows <= 0) {
+            return;
+        }
+        double observed = (double) nanos / rows;
+        nanosPerRow = nanosPerRow < 0 ? observed : EWMA_WEIGHT * observed + (1 - EWMA_WEIGHT) * nanosPerRow;
+
+        long next = clamp(Math.round(targetNanos / nanosPerRow));
+        next = Math.min(next, rowBudget * 2);
+        next = Math.max(next, rowBudget / 2);
+        long nextBytes = Math.min(maxBytes, Math.max(byteBudget, byteBudget * 2));
+
+        if (heapOccupancy() > heapHighWatermark) {
+            heapBackoffs++;
+            next = clamp(Math.min(next, rowBudget) / 2);
+            nextBytes = Math.max(1, Math.min(byteBudget, bytes) / 2);
+        }
+        rowBudget = clamp(next);
+        byteBudget = nextBytes;
+        smallestBudget = Math.min(smallestBudget, rowBudget);
+        largestBudget = Math.max(largestBudget, rowBudget);
+    }
+
+    /**
+     * 当前行数预算（批次大小指标）
+     */
+    long getRowBudget() {
+        return rowBudget;
+    }
+
+    long getByteBudget() {
+        return byteBudget;
+    }
+
+    synchronized long getBatches() {
+        return batches;
+    }
+
+    /**
+     * 已写入批次的平均行数
+     */
+    synchronized double getAverageRows() {
+        return batches > 0 ? (double) totalRows / batches : 0.0;
+    }
+
+    /**
+     * 老年代上次 GC 后的占用比例；反映存活数据而不是尚未回收的垃圾
+     */
+    double heapOccupancy() {
+        double occupancy = 0.0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            long max = usage.getMax() > 0 ? usage.getMax() : Runtime.getRuntime().maxMemory();
+            occupancy = Math.max(occupancy, (double) usage.getUsed() / max);
+        }
+        return occupancy;
+    }
+
+    private long clamp(long rows) {
+        return Math.max(minRows, Math.min(maxRows, rows));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("batch size %d rows (range %d-%d, avg %.0f over %d batches, byte budget %d KB, "
+                        + "%.3f ms/row, %d heap backoff(s))",
+                rowBudget, smallestBudget, largestBudget, getAverageRows(), batches, byteBudget / 1024,
+                nanosPerRow > 0 ? nanosPerRow / 1e6 : 0.0, heapBackoffs);
+    }
+}
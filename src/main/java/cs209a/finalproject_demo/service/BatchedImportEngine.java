@@ -0,0 +1,30 @@
+package cs209a.finalproject_demo.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 批量导入引擎：流水线并行解析，每批在一个事务中按批解析用户/标签（插入缺失的行并一次查询取回）后 saveAll
+ */
+@Component
+public class BatchedImportEngine implements ImportEngine {
+
+    public static final String NAME = "batched";
+
+    private final DataImportServiceOptimized importService;
+
+    public BatchedImportEngine(DataImportServiceOptimized importService) {
+        this.importService = importService;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ImportResult importFromDirectory(String directoryPath, ImportResult result) {
+        importService.importFromDirectory(directoryPath, DataImportServiceOptimized.Sink.JPA, result);
+        result.finish();
+        return result;
+    }
+}
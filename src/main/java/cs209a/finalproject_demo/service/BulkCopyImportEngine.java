@@ -0,0 +1,30 @@
+package cs209a.finalproject_demo.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 批量 COPY 导入引擎：流水线并行解析，PostgreSQL COPY 写入暂存表后合并，适合全量重新导入
+ */
+@Component
+public class BulkCopyImportEngine implements ImportEngine {
+
+    public static final String NAME = "bulk";
+
+    private final DataImportServiceOptimized importService;
+
+    public BulkCopyImportEngine(DataImportServiceOptimized importService) {
+        this.importService = importService;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ImportResult importFromDirectory(String directoryPath, ImportResult result) {
+        importService.importFromDirectory(directoryPath, DataImportServiceOptimized.Sink.COPY, result);
+        result.finish();
+        return result;
+    }
+}
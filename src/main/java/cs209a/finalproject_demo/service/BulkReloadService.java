@@ -0,0 +1,347 @@
+package cs209a.finalproject_demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量重载模式：导入期间暂时删除二级索引与外键，导入后并行重建
+ *
+ * 1. 导入前：从系统目录读取业务表上的非唯一索引与外键定义，写入 import_deferred_ddl 后删除（同一事务）；
+ *    主键与唯一索引保留，ON CONFLICT 合并依赖它们
+ * 2. 导入：每行只维护主键/唯一索引，不再逐行检查外键
+ * 3. 导入后：多个连接并行重建索引；外键先以 NOT VALID 方式加回（只加锁，不扫描），再逐个 VALIDATE
+ *
+ * 无论导入成功与否都会执行第 3 步；进程崩溃时定义仍保存在 import_deferred_ddl 中，
+ * 下次导入开始前会先恢复。校验失败的外键保持 NOT VALID 并留在表中，修复数据后再次运行即可重试。
+ */
+@Service
+public class BulkReloadService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkReloadService.class);
+
+    static final String TYPE_INDEX = "INDEX";
+    static final String TYPE_FOREIGN_KEY = "FOREIGN_KEY";
+
+    // 导入写入的业务表
+    private static final String[] IMPORT_TABLES = {
+            "users", "tags", "questions", "question_tags", "answers", "question_comments", "answer_comments"
+    };
+
+    private static final String FIND_SECONDARY_INDEXES = """
+            SELECT t.relname, i.relname, pg_get_indexdef(i.oid)
+            FROM pg_index x
+            JOIN pg_class i ON i.oid = x.indexrelid
+            JOIN pg_class t ON t.oid = x.indrelid
+            JOIN pg_namespace n ON n.oid = t.relnamespace
+            WHERE n.nspname = current_schema()
+              AND t.relname = ANY (?)
+              AND NOT x.indisprimary
+              AND NOT x.indisunique
+            ORDER BY t.relname, i.relname
+            """;
+
+    private static final String FIND_FOREIGN_KEYS = """
+            SELECT t.relname, c.conname, pg_get_constraintdef(c.oid)
+            FROM pg_constraint c
+            JOIN pg_class t ON t.oid = c.conrelid
+            JOIN pg_namespace n ON n.oid = t.relnamespace
+            WHERE n.nspname = current_schema()
+              AND c.contype = 'f'
+              AND t.relname = ANY (?)
+            ORDER BY t.relname, c.conname
+            """;
+
+    private static final String SAVE_DEFINITION = """
+            INSERT INTO import_deferred_ddl (object_type, table_name, object_name, definition, deferred_at)
+            VALUES (?, ?, ?, ?, LOCALTIMESTAMP)
+            ON CONFLICT (object_type, table_name, object_name) DO NOTHING
+            """;
+
+    private static final String CONSTRAINT_EXISTS = """
+            SELECT 1 FROM pg_constraint c
+            JOIN pg_class t ON t.oid = c.conrelid
+            JOIN pg_namespace n ON n.oid = t.relnamespace
+            WHERE n.nspname = current_schema() AND t.relname = ? AND c.conname = ?
+            """;
+
+    private final DataSource dataSource;
+    private final int rebuildThreads;
+
+    public BulkReloadService(DataSource dataSource,
+                             @Value("${import.bulk-reload.rebuild-threads:0}") int rebuildThreads) {
+        this.dataSource = dataSource;
+        this.rebuildThreads = rebuildThreads > 0 ? rebuildThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 以批量重载模式运行一次导入：删除二级索引与外键 → 导入 → 重建（导入失败也会重建）
+     *
+     * 导入失败时抛出导入的异常，重建失败作为 suppressed 附在其上；只有导入成功时才抛出重建的异常。
+     */
+    public ImportResult reload(ImportEngine engine, String directoryPath) throws SQLException {
+        deferSecondaryObjects();
+        ImportResult result;
+        try {
+            result = engine.importFromDirectory(directoryPath);
+        } catch (Throwable importFailure) {
+            try {
+                restore();
+            } catch (SQLException | RuntimeException restoreFailure) {
+                importFailure.addSuppressed(restoreFailure);
+            }
+            throw importFailure;
+        }
+        restore();
+        return result;
+    }
+
+    /**
+     * 上次重载未完成恢复时（例如进程崩溃），先恢复正常 schema
+     */
+    public void restoreIfPending() throws SQLException {
+        if (!loadDeferred().isEmpty()) {
+            log.warn("Found secondary indexes/foreign keys left over from an interrupted bulk reload, restoring first");
+            restore();
+        }
+    }
+
+    /**
+     * 记录并删除业务表上的非唯一索引与外键（同一事务，要么全部删除要么都不删）
+     */
+    public void deferSecondaryObjects() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                List<DeferredObject> foreignKeys = findObjects(connection, FIND_FOREIGN_KEYS, TYPE_FOREIGN_KEY);
+                List<DeferredObject> indexes = findObjects(connection, FIND_SECONDARY_INDEXES, TYPE_INDEX);
+
+                try (PreparedStatement save = connection.prepareStatement(SAVE_DEFINITION)) {
+                    for (DeferredObject object : concat(foreignKeys, indexes)) {
+                        save.setString(1, object.type());
+                        save.setString(2, object.table());
+                        save.setString(3, object.name());
+                        save.setString(4, object.definition());
+                        save.addBatch();
+                    }
+                    save.executeBatch();
+                }
+                try (Statement statement = connection.createStatement()) {
+                    // 先删外键再删索引
+                    for (DeferredObject foreignKey : foreignKeys) {
+                        statement.execute("ALTER TABLE " + quote(foreignKey.table())
+                                + " DROP CONSTRAINT " + quote(foreignKey.name()));
+                    }
+                    for (DeferredObject index : indexes) {
+                        statement.execute("DROP INDEX " + quote(index.name()));
+                    }
+                }
+                connection.commit();
+                log.info("Bulk reload: dropped {} foreign keys and {} secondary indexes", foreignKeys.size(), indexes.size());
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * 重建 import_deferred_ddl 中记录的索引与外键；每个对象成功后删除其记录
+     * @throws IllegalStateException 有对象未能恢复时（其记录保留，可再次调用重试）
+     */
+    public void restore() throws SQLException {
+        List<DeferredObject> deferred = loadDeferred();
+        if (deferred.isEmpty()) {
+            return;
+        }
+        List<DeferredObject> indexes = deferred.stream().filter(o -> TYPE_INDEX.equals(o.type())).toList();
+        List<DeferredObject> foreignKeys = deferred.stream().filter(o -> TYPE_FOREIGN_KEY.equals(o.type())).toList();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        long startTime = System.currentTimeMillis();
+        runParallel(indexes, this::rebuildIndex, failures);
+        log.info("Bulk reload: rebuilt {} indexes in {} ms ({} thread(s))",
+                indexes.size(), System.currentTimeMillis() - startTime, rebuildThreads);
+
+        // 外键先全部以 NOT VALID 加回（很快，只需要短暂加锁），再并行校验已有数据
+        List<DeferredObject> added = new ArrayList<>();
+        for (DeferredObject foreignKey : foreignKeys) {
+            try {
+                addForeignKeyNotValid(foreignKey);
+                added.add(foreignKey);
+            } catch (SQLException e) {
+                failures.add(foreignKey.name() + ": " + e.getMessage());
+                log.error("Failed to add foreign key {}: {}", foreignKey.name(), e.getMessage());
+            }
+        }
+        long validateStart = System.currentTimeMillis();
+        runParallel(added, this::validateForeignKey, failures);
+        log.info("Bulk reload: validated {} foreign keys in {} ms", added.size(), System.currentTimeMillis() - validateStart);
+
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Bulk reload could not restore " + failures.size()
+                    + " schema object(s), definitions kept in import_deferred_ddl: " + failures);
+        }
+    }
+
+    private void rebuildIndex(DeferredObject index) throws SQLException {
+        // pg_get_indexdef 返回 CREATE INDEX ...；加上 IF NOT EXISTS 使重试幂等
+        String ddl = index.definition().replaceFirst("^CREATE INDEX ", "CREATE INDEX IF NOT EXISTS ");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            long begin = System.currentTimeMillis();
+            statement.execute(ddl);
+            forget(connection, index);
+            log.debug("Rebuilt index {} on {} in {} ms", index.name(), index.table(), System.currentTimeMillis() - begin);
+        }
+    }
+
+    private void addForeignKeyNotValid(DeferredObject foreignKey) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (constraintExists(connection, foreignKey)) {
+                return;
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE " + quote(foreignKey.table()) + " ADD CONSTRAINT "
+                        + quote(foreignKey.name()) + " " + foreignKey.definition() + " NOT VALID");
+            }
+        }
+    }
+
+    private void validateForeignKey(DeferredObject foreignKey) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE " + quote(foreignKey.table())
+                    + " VALIDATE CONSTRAINT " + quote(foreignKey.name()));
+            forget(connection, foreignKey);
+        }
+    }
+
+    /**
+     * 在固定大小的线程池中执行，每个任务使用独立连接；失败记录到 failures，不影响其他任务
+     */
+    private void runParallel(List<DeferredObject> objects, ObjectTask task, List<String> failures) {
+        if (objects.isEmpty()) {
+            return;
+        }
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(rebuildThreads, objects.size()), runnable -> {
+            Thread thread = new Thread(runnable, "bulk-reload-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(objects.size());
+            for (DeferredObject object : objects) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        task.run(object);
+                    } catch (SQLException e) {
+                        failures.add(object.name() + ": " + e.getMessage());
+                        log.error("Failed to restore {} {} on {}: {}",
+                                object.type(), object.name(), object.table(), e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.add("interrupted");
+        } catch (ExecutionException e) {
+            failures.add(e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<DeferredObject> findObjects(Connection connection, String sql, String type) throws SQLException {
+        List<DeferredObject> objects = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            Array tables = connection.createArrayOf("text", IMPORT_TABLES);
+            statement.setArray(1, tables);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    objects.add(new DeferredObject(type, rs.getString(1), rs.getString(2), rs.getString(3)));
+                }
+            }
+        }
+        return objects;
+    }
+
+    private List<DeferredObject> loadDeferred() throws SQLException {
+        List<DeferredObject> objects = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT object_type, table_name, object_name, definition FROM import_deferred_ddl "
+                             + "ORDER BY object_type, table_name, object_name")) {
+            while (rs.next()) {
+                objects.add(new DeferredObject(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+            }
+        }
+        return objects;
+    }
+
+    private boolean constraintExists(Connection connection, DeferredObject foreignKey) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(CONSTRAINT_EXISTS)) {
+            statement.setString(1, foreignKey.table());
+            statement.setString(2, foreignKey.name());
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private void forget(Connection connection, DeferredObject object) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "DELETE FROM import_deferred_ddl WHERE object_type = ? AND table_name = ? AND object_name = ?")) {
+            statement.setString(1, object.type());
+            statement.setString(2, object.table());
+            statement.setString(3, object.name());
+            statement.executeUpdate();
+        }
+    }
+
+    private static List<DeferredObject> concat(List<DeferredObject> first, List<DeferredObject> second) {
+        List<DeferredObject> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    @FunctionalInterface
+    private interface ObjectTask {
+        void run(DeferredObject object) throws SQLException;
+    }
+
+    /**
+     * 被暂时删除的索引或外键；definition 为索引的 CREATE INDEX 语句或外键的约束定义
+     */
+    private record DeferredObject(String type, String table, String name, String definition) {
+    }
+}
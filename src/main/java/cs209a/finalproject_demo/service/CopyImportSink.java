@@ -0,0 +1,427 @@
+package cs209a.finalproject_demo.service;
+
+import cs209a.finalproject_demo.model.Answer;
+import cs209a.finalproject_demo.model.Author;
+import cs209a.finalproject_demo.model.Comment;
+import cs209a.finalproject_demo.model.Question;
+import cs209a.finalproject_demo.model.QuestionThread;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于 PostgreSQL COPY 的批量导入写入端
+ *
+ * 直接以模型记录（QuestionThread）为输入，不经过 JPA 实体：
+ * 1. 每批数据按表拼成 COPY 文本格式，通过 CopyManager 流入临时暂存表
+ * 2. 再用 INSERT ... SELECT ... ON CONFLICT 合并到正式表（按外键依赖顺序）
+ * 3. 整批在一个事务中完成，暂存表在提交时自动清空（ON COMMIT DELETE ROWS）
+ *
+ * 导入清单（import_manifest）的 IMPORTED 记录也在同一事务中合并，批次提交即代表这些文件已导入。
+ *
+ * 合并语义与 JPA 的 merge 一致：问题/回答/评论/用户已存在时更新，标签已存在时跳过；
+ * 问题标签关联整体替换（先删除本批问题的全部关联再插入），重新导入的问题去掉的标签不会残留。
+ * 本批包含库中已有的问题时，合并前先删除这些问题下不在本批数据中的回答与评论（上游已删除），与 JPA 写入端一致。
+ * 时间列在暂存表中为 timestamptz，合并时转换为正式表的 timestamp，转换规则与 Hibernate 写入 Instant 相同。
+ */
+@Component
+public class CopyImportSink {
+
+    private static final Logger log = LoggerFactory.getLogger(CopyImportSink.class);
+
+    private static final String CREATE_STAGING_TABLES = """
+            CREATE TEMP TABLE IF NOT EXISTS stage_users (
+                account_id BIGINT, user_id BIGINT, display_name TEXT, reputation INTEGER,
+                user_type TEXT, profile_image TEXT, link TEXT
+            ) ON COMMIT DELETE ROWS;
+            CREATE TEMP TABLE IF NOT EXISTS stage_tags (
+                name TEXT
+            ) ON COMMIT DELETE ROWS;
+            CREATE TEMP TABLE IF NOT EXISTS stage_questions (
+                question_id BIGINT, title TEXT, body TEXT, answered BOOLEAN, answer_count INTEGER,
+                score INTEGER, creation_date TIMESTAMPTZ, last_activity_date TIMESTAMPTZ,
+                accepted_answer_id BIGINT, view_count INTEGER, owner_account_id BIGINT, link TEXT,
+                closed_date TIMESTAMPTZ, closed_reason TEXT, content_license TEXT, comment_count INTEGER
+            ) ON COMMIT DELETE ROWS;
+            CREATE TEMP TABLE IF NOT EXISTS stage_question_tags (
+                question_id BIGINT, tag_name TEXT
+            ) ON COMMIT DELETE ROWS;
+            CREATE TEMP TABLE IF NOT EXISTS stage_answers (
+                answer_id BIGINT, question_id BIGINT, body TEXT, score INTEGER, accepted BOOLEAN,
+                creation_date TIMESTAMPTZ, last_activity_date TIMESTAMPTZ, owner_account_id BIGINT,
+                content_license TEXT
+            ) ON COMMIT DELETE ROWS;
+            CREATE TEMP TABLE IF NOT EXISTS stage_question_comments (
+                comment_id BIGINT, question_id BIGINT, body TEXT, score INTEGER,
+                creation_date TIMESTAMPTZ, owner_account_id BIGINT, content_license TEXT
+            ) ON COMMIT DELETE ROWS;
+            CREATE TEMP TABLE IF NOT EXISTS stage_answer_comments (
+                comment_id BIGINT, answer_id BIGINT, body TEXT, score INTEGER,
+                creation_date TIMESTAMPTZ, owner_account_id BIGINT, content_license TEXT
+            ) ON COMMIT DELETE ROWS;
+            CREATE TEMP TABLE IF NOT EXISTS stage_import_manifest (
+                file_path TEXT, file_size BIGINT, modified_at TIMESTAMPTZ, content_hash TEXT, question_id BIGINT
+            ) ON COMMIT DELETE ROWS;
+            """;
+
+    // 本批是否包含库中已有的问题（合并前检查）；只含新问题时（全量导入、批量重载）跳过清理
+    private static final String HAS_EXISTING_QUESTIONS = """
+            SELECT EXISTS (SELECT 1 FROM questions q JOIN stage_questions s ON s.question_id = q.question_id)
+            """;
+
+    // 重新导入已有问题时以本批数据为准：删除这些问题下上游已不存在的回答与评论（先删评论，回答评论按回答所属问题定位）
+    private static final List<String> PRUNE_STATEMENTS = List.of(
+            """
+            DELETE FROM answer_comments ac
+            USING answers a, stage_questions s
+            WHERE ac.answer_id = a.answer_id AND a.question_id = s.question_id
+              AND NOT EXISTS (SELECT 1 FROM stage_answer_comments sc WHERE sc.comment_id = ac.comment_id)
+            """,
+            """
+            DELETE FROM question_comments qc
+            USING stage_questions s
+            WHERE qc.question_id = s.question_id
+              AND NOT EXISTS (SELECT 1 FROM stage_question_comments sc WHERE sc.comment_id = qc.comment_id)
+            """,
+            """
+            DELETE FROM answers a
+            USING stage_questions s
+            WHERE a.question_id = s.question_id
+              AND NOT EXISTS (SELECT 1 FROM stage_answers sa WHERE sa.answer_id = a.answer_id)
+            """
+    );
+
+    // 按外键依赖顺序合并；DISTINCT ON 去掉同一批次内的重复键，避免 ON CONFLICT 重复更新同一行
+    private static final List<String> MERGE_STATEMENTS = List.of(
+            """
+            INSERT INTO users (account_id, user_id, display_name, reputation, user_type, profile_image, link)
+            SELECT DISTINCT ON (account_id) account_id, user_id, display_name, reputation, user_type, profile_image, link
+            FROM stage_users ORDER BY account_id
+            ON CONFLICT (account_id) DO UPDATE SET
+                user_id = EXCLUDED.user_id, display_name = EXCLUDED.display_name,
+                reputation = EXCLUDED.reputation, user_type = EXCLUDED.user_type,
+                profile_image = EXCLUDED.profile_image, link = EXCLUDED.link
+            """,
+            """
+            INSERT INTO tags (name)
+            SELECT DISTINCT name FROM stage_tags ORDER BY name
+            ON CONFLICT (name) DO NOTHING
+            """,
+            """
+            INSERT INTO questions (question_id, title, body, answered, answer_count, score, creation_date,
+                                   last_activity_date, accepted_answer_id, view_count, owner_account_id, link,
+                                   closed_date, closed_reason, content_license, comment_count)
+            SELECT DISTINCT ON (question_id) question_id, title, body, answered, answer_count, score, creation_date,
+                   last_activity_date, accepted_answer_id, view_count, owner_account_id, link,
+                   closed_date, closed_reason, content_license, comment_count
+            FROM stage_questions ORDER BY question_id
+            ON CONFLICT (question_id) DO UPDATE SET
+                title = EXCLUDED.title, body = EXCLUDED.body, answered = EXCLUDED.answered,
+                answer_count = EXCLUDED.answer_count, score = EXCLUDED.score,
+                creation_date = EXCLUDED.creation_date, last_activity_date = EXCLUDED.last_activity_date,
+                accepted_answer_id = EXCLUDED.accepted_answer_id, view_count = EXCLUDED.view_count,
+                owner_account_id = EXCLUDED.owner_account_id, link = EXCLUDED.link,
+                closed_date = EXCLUDED.closed_date, closed_reason = EXCLUDED.closed_reason,
+                content_license = EXCLUDED.content_license, comment_count = EXCLUDED.comment_count
+            """,
+            """
+            DELETE FROM question_tags
+            WHERE question_id IN (SELECT question_id FROM stage_questions)
+            """,
+            """
+            INSERT INTO question_tags (question_id, tag_name)
+            SELECT DISTINCT question_id, tag_name FROM stage_question_tags
+            ON CONFLICT (question_id, tag_name) DO NOTHING
+            """,
+            """
+            INSERT INTO answers (answer_id, question_id, body, score, accepted, creation_date,
+                                 last_activity_date, owner_account_id, content_license)
+            SELECT DISTINCT ON (answer_id) answer_id, question_id, body, score, accepted, creation_date,
+                   last_activity_date, owner_account_id, content_license
+            FROM stage_answers ORDER BY answer_id
+            ON CONFLICT (answer_id) DO UPDATE SET
+                question_id = EXCLUDED.question_id, body = EXCLUDED.body, score = EXCLUDED.score,
+                accepted = EXCLUDED.accepted, creation_date = EXCLUDED.creation_date,
+                last_activity_date = EXCLUDED.last_activity_date,
+                owner_account_id = EXCLUDED.owner_account_id, content_license = EXCLUDED.content_license
+            """,
+            """
+            INSERT INTO question_comments (comment_id, question_id, body, score, creation_date,
+                                           owner_account_id, content_license)
+            SELECT DISTINCT ON (comment_id) comment_id, question_id, body, score, creation_date,
+                   owner_account_id, content_license
+            FROM stage_question_comments ORDER BY comment_id
+            ON CONFLICT (comment_id) DO UPDATE SET
+                question_id = EXCLUDED.question_id, body = EXCLUDED.body, score = EXCLUDED.score,
+                creation_date = EXCLUDED.creation_date, owner_account_id = EXCLUDED.owner_account_id,
+                content_license = EXCLUDED.content_license
+            """,
+            """
+            INSERT INTO answer_comments (comment_id, answer_id, body, score, creation_date,
+                                         owner_account_id, content_license)
+            SELECT DISTINCT ON (comment_id) comment_id, answer_id, body, score, creation_date,
+                   owner_account_id, content_license
+            FROM stage_answer_comments ORDER BY comment_id
+            ON CONFLICT (comment_id) DO UPDATE SET
+                answer_id = EXCLUDED.answer_id, body = EXCLUDED.body, score = EXCLUDED.score,
+                creation_date = EXCLUDED.creation_date, owner_account_id = EXCLUDED.owner_account_id,
+                content_license = EXCLUDED.content_license
+            """,
+            """
+            INSERT INTO import_manifest (file_path, file_size, modified_at, content_hash, status,
+                                         question_id, imported_at, error_message)
+            SELECT DISTINCT ON (file_path) file_path, file_size, modified_at, content_hash, 'IMPORTED',
+                   question_id, LOCALTIMESTAMP, NULL
+            FROM stage_import_manifest ORDER BY file_path
+            ON CONFLICT (file_path) DO UPDATE SET
+                file_size = EXCLUDED.file_size, modified_at = EXCLUDED.modified_at,
+                content_hash = EXCLUDED.content_hash, status = EXCLUDED.status,
+                question_id = EXCLUDED.question_id, imported_at = EXCLUDED.imported_at,
+                error_message = NULL
+            """
+    );
+
+    private final DataSource dataSource;
+
+    public CopyImportSink(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 在一个事务中将一批文件的 threads 与对应的清单记录写入数据库
+     */
+    void write(List<ImportedFile> files) throws SQLException, IOException {
+        StagedRows rows = new StagedRows();
+        for (ImportedFile file : files) {
+            rows.add(file.thread());
+            rows.addManifest(file);
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_STAGING_TABLES);
+                }
+
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                copy(copyManager, "stage_users", rows.users);
+                copy(copyManager, "stage_tags", rows.tags);
+                copy(copyManager, "stage_questions", rows.questions);
+                copy(copyManager, "stage_question_tags", rows.questionTags);
+                copy(copyManager, "stage_answers", rows.answers);
+                copy(copyManager, "stage_question_comments", rows.questionComments);
+                copy(copyManager, "stage_answer_comments", rows.answerComments);
+                copy(copyManager, "stage_import_manifest", rows.manifest);
+
+                try (Statement statement = connection.createStatement()) {
+                    if (hasExistingQuestions(statement)) {
+                        for (String prune : PRUNE_STATEMENTS) {
+                            statement.executeUpdate(prune);
+                        }
+                    }
+                    for (String merge : MERGE_STATEMENTS) {
+                        statement.executeUpdate(merge);
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        log.debug("COPY imported {} threads ({} answers, {} question comments, {} answer comments)",
+                files.size(), rows.answerCount, rows.questionCommentCount, rows.answerCommentCount);
+    }
+
+    private boolean hasExistingQuestions(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(HAS_EXISTING_QUESTIONS)) {
+            return resultSet.next() && resultSet.getBoolean(1);
+        }
+    }
+
+    private void copy(CopyManager copyManager, String table, StringBuilder rows) throws SQLException, IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        copyManager.copyIn("COPY " + table + " FROM STDIN", new StringReader(rows.toString()));
+    }
+
+    /**
+     * 一批数据按表拼接的 COPY 文本（制表符分隔，\N 表示 NULL）
+     */
+    private static final class StagedRows {
+        private final StringBuilder users = new StringBuilder();
+        private final StringBuilder tags = new StringBuilder();
+        private final StringBuilder questions = new StringBuilder();
+        private final StringBuilder questionTags = new StringBuilder();
+        private final StringBuilder answers = new StringBuilder();
+        private final StringBuilder questionComments = new StringBuilder();
+        private final StringBuilder answerComments = new StringBuilder();
+        private final StringBuilder manifest = new StringBuilder();
+        private final Set<Long> stagedUsers = new HashSet<>();
+        private final Set<String> stagedTags = new HashSet<>();
+        private int answerCount;
+        private int questionCommentCount;
+        private int answerCommentCount;
+
+        void add(QuestionThread thread) {
+            Question question = thread.question();
+            addUser(question.owner());
+
+            row(questions,
+                    question.id(),
+                    question.title(),
+                    question.body(),
+                    question.answered(),
+                    question.answerCount(),
+                    question.score(),
+                    Instant.ofEpochSecond(question.creationDateEpoch()),
+                    Instant.ofEpochSecond(question.lastActivityDateEpoch()),
+                    question.acceptedAnswerId() != null ? question.acceptedAnswerId().longValue() : null,
+                    question.viewCount(),
+                    question.owner().accountId(),
+                    question.link(),
+                    question.closedDateEpoch() == null ? null : Instant.ofEpochSecond(question.closedDateEpoch()),
+                    question.closedReason(),
+                    question.contentLicense(),
+                    thread.questionComments().size());
+
+            for (String tagName : question.tags()) {
+                String normalizedName = tagName.toLowerCase();
+                if (stagedTags.add(normalizedName)) {
+                    row(tags, normalizedName);
+                }
+                row(questionTags, question.id(), normalizedName);
+            }
+
+            Set<Long> answerIds = new HashSet<>();
+            for (Answer answer : thread.answers()) {
+                addUser(answer.owner());
+                answerIds.add(answer.id());
+                row(answers,
+                        answer.id(),
+                        question.id(),
+                        answer.body(),
+                        answer.score(),
+                        answer.accepted(),
+                        Instant.ofEpochSecond(answer.creationDateEpoch()),
+                        answer.lastActivityDateEpoch() != null
+                                ? Instant.ofEpochSecond(answer.lastActivityDateEpoch()) : null,
+                        answer.owner().accountId(),
+                        answer.contentLicense());
+                answerCount++;
+            }
+
+            for (Comment comment : thread.questionComments()) {
+                addUser(comment.owner());
+                row(questionComments,
+                        comment.id(),
+                        question.id(),
+                        comment.text(),
+                        comment.score(),
+                        Instant.ofEpochSecond(comment.creationDateEpoch()),
+                        comment.owner().accountId(),
+                        comment.contentLicense());
+                questionCommentCount++;
+            }
+
+            // 与其他导入方式一致：只导入本 thread 中存在的回答下的评论
+            for (Map.Entry<Long, List<Comment>> entry : thread.answerComments().entrySet()) {
+                if (!answerIds.contains(entry.getKey())) {
+                    continue;
+                }
+                for (Comment comment : entry.getValue()) {
+                    addUser(comment.owner());
+                    row(answerComments,
+                            comment.id(),
+                            entry.getKey(),
+                            comment.text(),
+                            comment.score(),
+                            Instant.ofEpochSecond(comment.creationDateEpoch()),
+                            comment.owner().accountId(),
+                            comment.contentLicense());
+                    answerCommentCount++;
+                }
+            }
+        }
+
+        void addManifest(ImportedFile file) {
+            row(manifest, file.manifestKey(), file.size(), file.modifiedAt(), file.contentHash(), file.questionId());
+        }
+
+        private void addUser(Author author) {
+            if (!stagedUsers.add(author.accountId())) {
+                return;
+            }
+            row(users,
+                    author.accountId(),
+                    author.userId(),
+                    author.displayName(),
+                    author.reputation(),
+                    author.userType(),
+                    author.profileImage(),
+                    author.link());
+        }
+
+        private static void row(StringBuilder target, Object... values) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    target.append('\t');
+                }
+                appendValue(target, values[i]);
+            }
+            target.append('\n');
+        }
+
+        private static void appendValue(StringBuilder target, Object value) {
+            if (value == null) {
+                target.append("\\N");
+                return;
+            }
+            if (value instanceof String text) {
+                appendEscaped(target, text);
+                return;
+            }
+            // Instant.toString() 为 ISO-8601（UTC），timestamptz 可直接解析
+            target.append(value);
+        }
+
+        /**
+         * COPY 文本格式转义：反斜杠、制表符、换行、回车；去掉 PostgreSQL 不接受的 NUL 字符
+         */
+        private static void appendEscaped(StringBuilder target, String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '\\' -> target.append("\\\\");
+                    case '\t' -> target.append("\\t");
+                    case '\n' -> target.append("\\n");
+                    case '\r' -> target.append("\\r");
+                    case '\0' -> {
+                        // 跳过
+                    }
+                    default -> target.append(c);
+                }
+            }
+        }
+    }
+}
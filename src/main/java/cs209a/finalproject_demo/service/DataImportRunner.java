@@ -6,9 +6,14 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import java.sql.SQLException;
+import java.util.List;
+
 /**
  * 数据导入命令行工具
  * 使用方式：java -jar app.jar --import.data=true --import.directory=Sample_SO_data
+ * 可用 -Dimport.engine=thread|batched|bulk（或环境变量 IMPORT_ENGINE）选择导入引擎，默认 thread
+ * 可用 -Dimport.bulk-reload=true（或环境变量 IMPORT_BULK_RELOAD）在导入期间暂时删除二级索引与外键
  */
 @Component
 @ConditionalOnProperty(name = "import.data", havingValue = "true")
@@ -16,33 +21,49 @@ public class DataImportRunner implements CommandLineRunner {
 
     private static final Logger log = LoggerFactory.getLogger(DataImportRunner.class);
 
-    private final DataImportService importService;
+    private final List<ImportEngine> importEngines;
+    private final SolvabilitySketchService sketchService;
+    private final BulkReloadService bulkReloadService;
 
-    public DataImportRunner(DataImportService importService) {
-        this.importService = importService;
+    public DataImportRunner(List<ImportEngine> importEngines, SolvabilitySketchService sketchService,
+                            BulkReloadService bulkReloadService) {
+        this.importEngines = importEngines;
+        this.sketchService = sketchService;
+        this.bulkReloadService = bulkReloadService;
     }
 
     @Override
-    public void run(String... args) {
+    public void run(String... args) throws SQLException {
         String directory = System.getProperty("import.directory", 
                 System.getenv().getOrDefault("IMPORT_DIRECTORY", "Sample_SO_data"));
 
+        String engineName = System.getProperty("import.engine",
+                System.getenv().getOrDefault("IMPORT_ENGINE", PerThreadImportEngine.NAME));
+        ImportEngine engine = ImportEngine.byName(importEngines, engineName);
+        boolean bulkReload = Boolean.parseBoolean(System.getProperty("import.bulk-reload",
+                System.getenv().getOrDefault("IMPORT_BULK_RELOAD", "false")));
+
         log.info("=== Starting Data Import ===");
         log.info("Import directory: {}", directory);
+        log.info("Import engine: {}", engine.getName());
+        log.info("Bulk reload: {}", bulkReload);
+
+        // 上次批量重载中断时先恢复索引与外键
+        bulkReloadService.restoreIfPending();
+
+        ImportResult result = bulkReload
+                ? bulkReloadService.reload(engine, directory)
+                : engine.importFromDirectory(directory);
+        if (result.isAborted()) {
+            // 数据库故障导致导入中止：不重建草图，数据源留在原处，恢复后重新运行即可
+            result.logReport(log);
+            throw new IllegalStateException("Import aborted: " + result.getAbortReason());
+        }
 
-        DataImportService.ImportResult result = importService.importFromDirectory(directory);
-
-        log.info("=== Import Summary ===");
-        log.info("Success: {}", result.getSuccessCount());
-        log.info("Failed: {}", result.getFailedCount());
-        log.info("Skipped: {}", result.getSkippedCount());
+        // 导入完成后重建可解性分析的按月草图
+        sketchService.rebuild();
 
-        if (!result.getErrors().isEmpty()) {
-            log.warn("Errors encountered (showing first 10):");
-            result.getErrors().stream()
-                    .limit(10)
-                    .forEach(error -> log.warn("  - {}", error));
-        }
+        result.logReport(log);
 
         log.info("Import completed!");
     }
@@ -9,6 +9,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -19,6 +20,8 @@ import java.util.Optional;
 
 /**
  * 数据导入服务：将 JSON 文件数据导入到 PostgreSQL 数据库
+ * 导入清单中未变化的文件会被跳过，每个 thread 导入成功后登记到清单，见 {@link ImportManifestService}；
+ * 失败的文件/记录登记到错误台账并移入隔离目录，见 {@link ImportDeadLetterService}
  */
 @Service
 public class DataImportService {
@@ -32,6 +35,9 @@ public class DataImportService {
     private final QuestionCommentRepository questionCommentRepository;
     private final AnswerCommentRepository answerCommentRepository;
     private final TagRepository tagRepository;
+    private final ImportManifestService manifestService;
+    private final ImportDeadLetterService deadLetters;
+    private final RemovedChildrenPruner childrenPruner;
 
     public DataImportService(ThreadFileLoader fileLoader,
                             UserRepository userRepository,
@@ -39,7 +45,10 @@ public class DataImportService {
                             AnswerRepository answerRepository,
                             QuestionCommentRepository questionCommentRepository,
                             AnswerCommentRepository answerCommentRepository,
-                            TagRepository tagRepository) {
+                            TagRepository tagRepository,
+                            ImportManifestService manifestService,
+                            ImportDeadLetterService deadLetters,
+                            RemovedChildrenPruner childrenPruner) {
         this.fileLoader = fileLoader;
         this.userRepository = userRepository;
         this.questionRepository = questionRepository;
@@ -47,18 +56,27 @@ public class DataImportService {
         this.questionCommentRepository = questionCommentRepository;
         this.answerCommentRepository = answerCommentRepository;
         this.tagRepository = tagRepository;
+        this.manifestService = manifestService;
+        this.deadLetters = deadLetters;
+        this.childrenPruner = childrenPruner;
     }
 
     /**
-     * 从指定目录导入所有 JSON 文件到数据库
+     * 从指定目录导入所有数据文件到数据库（JSON 文件，以及 NDJSON / gzip / zip 归档）
      */
     public ImportResult importFromDirectory(String directoryPath) {
+        return importFromDirectory(directoryPath, new ImportResult(PerThreadImportEngine.NAME));
+    }
+
+    /**
+     * 从指定目录导入，统计写入调用方提供的结果对象（可在导入过程中读取进度或请求取消）
+     */
+    public ImportResult importFromDirectory(String directoryPath, ImportResult result) {
         long startTime = System.currentTimeMillis();
         log.info("========================================");
         log.info("Starting data import from directory: {}", directoryPath);
         log.info("========================================");
         
-        ImportResult result = new ImportResult();
         Path folderPath = Paths.get(directoryPath);
         
         if (!Files.exists(folderPath)) {
@@ -68,51 +86,59 @@ public class DataImportService {
         }
 
         try {
-            List<Path> jsonFiles = Files.list(folderPath)
+            List<Path> sources = Files.list(folderPath)
                     .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().endsWith(".json"))
+                    .filter(ThreadFileLoader::isSupportedSource)
                     .sorted()
                     .toList();
 
-            log.info("Found {} JSON files to import", jsonFiles.size());
+            log.info("Found {} source files to import", sources.size());
             log.info("Starting import process...");
+            if (sources.stream().noneMatch(ThreadFileLoader::isArchive)) {
+                result.setExpectedItems(sources.size());
+            }
 
+            ImportManifestService.Snapshot manifest = manifestService.snapshot();
             int processedCount = 0;
-            for (Path jsonFile : jsonFiles) {
+            for (Path source : sources) {
+                if (result.isCancelled()) {
+                    log.warn("Import cancelled after {}/{} files", processedCount, sources.size());
+                    break;
+                }
                 processedCount++;
-                try {
-                    Optional<QuestionThread> threadOpt = fileLoader.load(jsonFile);
-                    if (threadOpt.isPresent()) {
-                        QuestionThread thread = threadOpt.get();
-                        log.debug("Processing file {}/{}: {}", processedCount, jsonFiles.size(), jsonFile.getFileName());
-                        importThread(thread);
-                        result.incrementSuccess();
-                        
-                        // 每10个文件输出一次进度
-                        if (processedCount % 10 == 0) {
-                            log.info("Progress: {}/{} files processed (Success: {}, Failed: {}, Skipped: {})", 
-                                    processedCount, jsonFiles.size(), 
-                                    result.getSuccessCount(), result.getFailedCount(), result.getSkippedCount());
-                        }
-                    } else {
-                        result.incrementSkipped();
-                        log.warn("Failed to load thread from: {} (file {}/{})", jsonFile.getFileName(), processedCount, jsonFiles.size());
-                    }
-                } catch (Exception e) {
-                    result.incrementFailed();
-                    String errorMsg = "Failed to import " + jsonFile.getFileName() + ": " + e.getMessage();
-                    result.addError(errorMsg);
-                    log.error("Error importing {} (file {}/{}): {}", jsonFile.getFileName(), processedCount, jsonFiles.size(), e.getMessage(), e);
+                if (ThreadFileLoader.isArchive(source)) {
+                    importArchive(source, manifest, result);
+                } else {
+                    importFile(source, manifest, result);
+                }
+
+                // 每10个文件输出一次进度
+                if (processedCount % 10 == 0) {
+                    log.info("Progress: {}/{} files processed (Success: {}, Failed: {}, Skipped: {}, Unchanged: {})", 
+                            processedCount, sources.size(), 
+                            result.getSuccessCount(), result.getFailedCount(), result.getSkippedCount(),
+                            result.getUnchangedCount());
                 }
             }
 
             long duration = System.currentTimeMillis() - startTime;
             log.info("========================================");
             log.info("Import completed in {} seconds", duration / 1000.0);
-            log.info("Summary: Success: {}, Failed: {}, Skipped: {}", 
-                    result.getSuccessCount(), result.getFailedCount(), result.getSkippedCount());
+            log.info("Summary: Success: {}, Failed: {}, Skipped: {}, Unchanged: {}", 
+                    result.getSuccessCount(), result.getFailedCount(), result.getSkippedCount(),
+                    result.getUnchangedCount());
             log.info("========================================");
 
+        } catch (ImportCancelledException e) {
+            log.warn("Import cancelled");
+        } catch (ImportAbortedException e) {
+            log.error("{}; sources were left in place and can be re-imported", e.getMessage(), e);
+            result.abort(e.getMessage());
+            result.addError(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Import interrupted");
+            result.addError("Import interrupted");
         } catch (Exception e) {
             log.error("Error reading directory: {}", e.getMessage(), e);
             result.addError("Error reading directory: " + e.getMessage());
@@ -121,6 +147,100 @@ public class DataImportService {
         return result;
     }
 
+    /**
+     * 导入单个 JSON 文件；大小与修改时间都与清单一致时不读取文件
+     */
+    private void importFile(Path file, ImportManifestService.Snapshot manifest, ImportResult result) {
+        ImportManifestService.FileStat stat;
+        byte[] content;
+        try {
+            stat = ImportManifestService.stat(file);
+            if (manifest.isUnchanged(stat)) {
+                result.incrementUnchanged();
+                return;
+            }
+            content = Files.readAllBytes(file);
+        } catch (IOException e) {
+            result.incrementFailed();
+            result.addError("Failed to read " + file.getFileName() + ": " + e.getMessage());
+            deadLetters.rejectSource(file, e);
+            log.error("Error reading {}: {}", file.getFileName(), e.getMessage(), e);
+            return;
+        }
+        importRecord(stat, file.getFileName().toString(), content, manifest, result);
+    }
+
+    /**
+     * 顺序读取归档（NDJSON / gzip / zip），逐条导入
+     */
+    private void importArchive(Path archive, ImportManifestService.Snapshot manifest, ImportResult result)
+            throws InterruptedException {
+        log.info("Streaming records from {}", archive.getFileName());
+        try {
+            ImportManifestService.FileStat archiveStat = ImportManifestService.stat(archive);
+            fileLoader.readRecords(archive, (recordName, content) -> {
+                result.checkCancelled();
+                ImportManifestService.FileStat stat = new ImportManifestService.FileStat(
+                        ImportManifestService.recordKey(archiveStat.manifestKey(), recordName),
+                        content.length, archiveStat.modifiedAt());
+                if (manifest.isUnchanged(stat)) {
+                    result.incrementUnchanged();
+                    return;
+                }
+                importRecord(stat, stat.manifestKey(), content, manifest, result);
+            });
+        } catch (IOException e) {
+            result.incrementFailed();
+            result.addError("Failed to read archive " + archive.getFileName() + ": " + e.getMessage());
+            deadLetters.rejectSource(archive, e);
+            log.error("Error reading archive {}: {}", archive.getFileName(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解析并导入一条记录，成功后登记到导入清单；内容哈希与清单一致时跳过
+     */
+    private void importRecord(ImportManifestService.FileStat stat,
+                              String sourceName,
+                              byte[] content,
+                              ImportManifestService.Snapshot manifest,
+                              ImportResult result) {
+        String contentHash = ImportManifestService.contentHash(content);
+        if (manifest.hasContent(stat.manifestKey(), contentHash)) {
+            result.incrementUnchanged();
+            return;
+        }
+        try {
+            Optional<QuestionThread> threadOpt = fileLoader.load(sourceName, content);
+            if (threadOpt.isPresent()) {
+                QuestionThread thread = threadOpt.get();
+                log.debug("Processing {}", sourceName);
+                importThread(thread);
+                ImportedFile imported = new ImportedFile(stat.manifestKey(), stat.size(),
+                        stat.modifiedAt(), contentHash, thread);
+                manifestService.markImported(imported);
+                result.incrementSuccess();
+                result.recordRows(imported);
+            } else {
+                result.incrementSkipped();
+                deadLetters.reject(ImportDeadLetterService.Stage.PARSE, stat, contentHash, content,
+                        "Failed to parse thread", null);
+                log.warn("Failed to load thread from: {}", sourceName);
+            }
+        } catch (Exception e) {
+            if (!ImportDeadLetterService.isRecordError(e)) {
+                // 数据库不可用：不拒绝、不隔离，中止整个导入
+                throw new ImportAbortedException("Database write failed at " + sourceName
+                        + ", import aborted: " + e.getMessage(), e);
+            }
+            result.incrementFailed();
+            String errorMsg = "Failed to import " + sourceName + ": " + e.getMessage();
+            result.addError(errorMsg);
+            deadLetters.reject(ImportDeadLetterService.Stage.WRITE, stat, contentHash, content, e.getMessage(), e);
+            log.error("Error importing {}: {}", sourceName, e.getMessage(), e);
+        }
+    }
+
     /**
      * 清空数据库中的业务数据（保留 schema）
      */
@@ -158,6 +278,10 @@ public class DataImportService {
         
         userRepository.deleteAllInBatch();
         log.info("Deleted {} users", userCount);
+
+        // 清单同时清空，否则下次导入会把所有文件当作未变化而跳过
+        manifestService.clear();
+        log.info("Cleared import manifest");
         
         log.info("All existing data cleared successfully.");
         log.info("========================================");
@@ -176,6 +300,16 @@ public class DataImportService {
         long questionId = question.id();
         log.debug("Importing thread: question_id={}, title={}", questionId, question.title());
 
+        // 重新导入已有问题时以本次数据为准，先删除上游已不存在的回答与评论
+        childrenPruner.prune(
+                List.of(questionId),
+                answers.stream().map(cs209a.finalproject_demo.model.Answer::id).toList(),
+                questionComments.stream().map(cs209a.finalproject_demo.model.Comment::id).toList(),
+                answerComments.values().stream()
+                        .flatMap(List::stream)
+                        .map(cs209a.finalproject_demo.model.Comment::id)
+                        .toList());
+
         // 1. 导入或获取用户
         UserEntity owner = importOrGetUser(question.owner());
         log.trace("Imported/retrieved user: account_id={}", owner.getAccountId());
@@ -252,7 +386,8 @@ public class DataImportService {
             importQuestionComment(comment, questionEntity);
         }
 
-        // 保存更新后的问题（包含关联）
+        // 保存更新后的问题（包含关联），同步冗余的评论数（仅统计实际导入的评论）
+        questionEntity.setCommentCount(questionEntity.getQuestionComments().size());
         questionRepository.save(questionEntity);
         
         log.debug("Completed importing thread: question_id={}, answers={}, question_comments={}, answer_comments={}", 
@@ -360,53 +495,4 @@ public class DataImportService {
             throw e;
         }
     }
-
-    /**
-     * 导入结果统计
-     */
-    public static class ImportResult {
-        private int successCount = 0;
-        private int failedCount = 0;
-        private int skippedCount = 0;
-        private final List<String> errors = new ArrayList<>();
-
-        public void incrementSuccess() {
-            successCount++;
-        }
-
-        public void incrementFailed() {
-            failedCount++;
-        }
-
-        public void incrementSkipped() {
-            skippedCount++;
-        }
-
-        public void addError(String error) {
-            errors.add(error);
-        }
-
-        public int getSuccessCount() {
-            return successCount;
-        }
-
-        public int getFailedCount() {
-            return failedCount;
-        }
-
-        public int getSkippedCount() {
-            return skippedCount;
-        }
-
-        public List<String> getErrors() {
-            return errors;
-        }
-
-        @Override
-        public String toString() {
-            return String.format("ImportResult{success=%d, failed=%d, skipped=%d, errors=%d}",
-                    successCount, failedCount, skippedCount, errors.size());
-        }
-    }
 }
-
@@ -1,19 +1,26 @@
 package cs209a.finalproject_demo.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import cs209a.finalproject_demo.dataset.ThreadFileLoader;
 import cs209a.finalproject_demo.entity.*;
 import cs209a.finalproject_demo.model.QuestionThread;
 import cs209a.finalproject_demo.repository.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -22,15 +29,33 @@ import java.util.stream.Collectors;
  * 性能优化方案：
  * 1. 批量保存：使用 saveAll 代替单个 save
  * 2. 批量事务：每批处理多个 thread，减少事务开销
- * 3. 预加载缓存：预先加载所有用户和标签到内存，避免重复查询
+ * 3. 按批解析用户/标签：每批一次 INSERT ... ON CONFLICT DO NOTHING，再一次查询取回，不预加载整张表；
+ *    最近确认已入库的键保存在有界 LRU 中（import.pipeline.key-cache-size），命中时跳过插入
  * 4. 禁用级联：在批量插入时禁用不必要的级联操作
- * 5. 批量大小控制：可配置的批次大小
+ * 5. 批量大小控制：按行数/字节数切分批次，预算随实测提交耗时与堆占用自适应调整，见 {@link AdaptiveBatchSizer}
+ * 6. 流水线：文件列举、并行解析、实体映射、数据库写入分阶段执行，阶段间用有界队列连接
+ *    （import.pipeline.parsers / writers / queue-capacity 可配置，批次之间没有依赖，可多线程写入）
+ * 7. COPY 写入端（可选）：跳过 JPA，用 PostgreSQL COPY 批量写入，见 {@link CopyImportSink}
+ * 8. 失败隔离：每批一个事务，失败时二分重试，只拒绝真正出错的 thread
+ * 9. 增量导入：跳过导入清单中未变化的文件，清单记录随批次一起提交，见 {@link ImportManifestService}
+ * 10. 死信隔离：被拒绝的 thread 登记到错误台账，源文件或记录移入隔离目录，可单独重放，见 {@link ImportDeadLetterService}
  */
 @Service
 public class DataImportServiceOptimized {
 
     private static final Logger log = LoggerFactory.getLogger(DataImportServiceOptimized.class);
-    private static final int BATCH_SIZE = 50; // 每批处理的 thread 数量
+    private static final int INITIAL_BATCH_ROWS = 1_000; // 初始每批行数，之后由 AdaptiveBatchSizer 调整
+    private static final int COPY_INITIAL_BATCH_ROWS = 10_000; // COPY 写入端单批开销小，起点更大
+    private static final int MIN_BATCH_ROWS = 50;
+    private static final int MAX_BATCH_ROWS = 200_000;
+
+    /**
+     * 导入写入端
+     */
+    public enum Sink {
+        JPA,   // 映射为实体，通过仓库 saveAll 保存
+        COPY   // 通过 PostgreSQL COPY 流入暂存表，再 INSERT ... ON CONFLICT 合并
+    }
 
     private final ThreadFileLoader fileLoader;
     private final UserRepository userRepository;
@@ -39,6 +64,20 @@ public class DataImportServiceOptimized {
     private final QuestionCommentRepository questionCommentRepository;
     private final AnswerCommentRepository answerCommentRepository;
     private final TagRepository tagRepository;
+    private final ImportManifestRepository manifestRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CopyImportSink copySink;
+    private final RemovedChildrenPruner childrenPruner;
+    private final ImportManifestService manifestService;
+    private final ImportDeadLetterService deadLetters;
+    private final int parserCount;
+    private final int writerCount;
+    private final int queueCapacity;
+    private final int keyCacheSize;
+    private final long targetCommitMillis;
+    private final long maxBatchBytes;
+    private final double heapHighWatermark;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     public DataImportServiceOptimized(ThreadFileLoader fileLoader,
                                     UserRepository userRepository,
@@ -46,7 +85,20 @@ public class DataImportServiceOptimized {
                                     AnswerRepository answerRepository,
                                     QuestionCommentRepository questionCommentRepository,
                                     AnswerCommentRepository answerCommentRepository,
-                                    TagRepository tagRepository) {
+                                    TagRepository tagRepository,
+                                    ImportManifestRepository manifestRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    CopyImportSink copySink,
+                                    RemovedChildrenPruner childrenPruner,
+                                    ImportManifestService manifestService,
+                                    ImportDeadLetterService deadLetters,
+                                    @Value("${import.pipeline.parsers:0}") int parserCount,
+                                    @Value("${import.pipeline.writers:1}") int writerCount,
+                                    @Value("${import.pipeline.queue-capacity:256}") int queueCapacity,
+                                    @Value("${import.pipeline.key-cache-size:100000}") int keyCacheSize,
+                                    @Value("${import.batch.target-commit-ms:500}") long targetCommitMillis,
+                                    @Value("${import.batch.max-bytes:16777216}") long maxBatchBytes,
+                                    @Value("${import.batch.heap-high-watermark:0.75}") double heapHighWatermark) {
         this.fileLoader = fileLoader;
         this.userRepository = userRepository;
         this.questionRepository = questionRepository;
@@ -54,19 +106,49 @@ public class DataImportServiceOptimized {
         this.questionCommentRepository = questionCommentRepository;
         this.answerCommentRepository = answerCommentRepository;
         this.tagRepository = tagRepository;
+        this.manifestRepository = manifestRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.copySink = copySink;
+        this.childrenPruner = childrenPruner;
+        this.manifestService = manifestService;
+        this.deadLetters = deadLetters;
+        this.parserCount = parserCount > 0 ? parserCount : Runtime.getRuntime().availableProcessors();
+        // 用户/标签在每个批次的事务内 upsert，批次之间互不依赖，可以多线程写入
+        this.writerCount = Math.max(1, writerCount);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.keyCacheSize = Math.max(1, keyCacheSize);
+        this.targetCommitMillis = targetCommitMillis;
+        this.maxBatchBytes = maxBatchBytes;
+        this.heapHighWatermark = heapHighWatermark;
     }
 
     /**
      * 从指定目录导入所有 JSON 文件到数据库（优化版）
+     * 文件列举、解析、实体映射与数据库写入以流水线方式并行执行，见 {@link ImportPipeline}
      */
     public ImportResult importFromDirectory(String directoryPath) {
+        return importFromDirectory(directoryPath, Sink.JPA);
+    }
+
+    /**
+     * 从指定目录导入所有 JSON 文件到数据库，并指定写入端
+     * @param sink JPA：映射为实体后 saveAll；COPY：跳过实体，直接以 COPY 流入暂存表再合并
+     */
+    public ImportResult importFromDirectory(String directoryPath, Sink sink) {
+        return importFromDirectory(directoryPath, sink,
+                new ImportResult(sink == Sink.COPY ? BulkCopyImportEngine.NAME : BatchedImportEngine.NAME));
+    }
+
+    /**
+     * 从指定目录导入，统计写入调用方提供的结果对象（可在导入过程中读取进度或请求取消）
+     */
+    public ImportResult importFromDirectory(String directoryPath, Sink sink, ImportResult result) {
         long startTime = System.currentTimeMillis();
         log.info("========================================");
         log.info("Starting OPTIMIZED data import from directory: {}", directoryPath);
-        log.info("Batch size: {}", BATCH_SIZE);
+        log.info("Adaptive batch size (target commit {} ms), sink: {}", targetCommitMillis, sink);
         log.info("========================================");
         
-        ImportResult result = new ImportResult();
         Path folderPath = Paths.get(directoryPath);
         
         if (!Files.exists(folderPath)) {
@@ -76,147 +158,253 @@ public class DataImportServiceOptimized {
         }
 
         try {
-            List<Path> jsonFiles = Files.list(folderPath)
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().endsWith(".json"))
-                    .sorted()
-                    .toList();
-
-            log.info("Found {} JSON files to import", jsonFiles.size());
-
-            // 预加载所有用户和标签到内存缓存
-            long cacheStartTime = System.currentTimeMillis();
-            Map<Long, UserEntity> userCache = loadUserCache();
-            Map<String, TagEntity> tagCache = loadTagCache();
-            long cacheLoadTime = System.currentTimeMillis() - cacheStartTime;
-            log.info("Preloaded {} users and {} tags into cache (took {} ms)", 
-                    userCache.size(), tagCache.size(), cacheLoadTime);
-
-            // 批量处理 threads
-            List<QuestionThread> batch = new ArrayList<>();
-            int processedCount = 0;
-            int batchNumber = 0;
-            
-            for (Path jsonFile : jsonFiles) {
-                try {
-                    Optional<QuestionThread> threadOpt = fileLoader.load(jsonFile);
-                    if (threadOpt.isPresent()) {
-                        batch.add(threadOpt.get());
-                        processedCount++;
-                        
-                        // 当批次达到指定大小时，批量导入
-                        if (batch.size() >= BATCH_SIZE) {
-                            batchNumber++;
-                            log.info("Processing batch {} (files {}-{}/{})", 
-                                    batchNumber, processedCount - BATCH_SIZE + 1, processedCount, jsonFiles.size());
-                            long batchStartTime = System.currentTimeMillis();
-                            importBatch(batch, userCache, tagCache, result);
-                            long batchTime = System.currentTimeMillis() - batchStartTime;
-                            log.info("Batch {} completed in {} ms (Success: {}, Failed: {})", 
-                                    batchNumber, batchTime, result.getSuccessCount(), result.getFailedCount());
-                            batch.clear();
-                        }
-                    } else {
-                        result.incrementSkipped();
-                        log.warn("Failed to load thread from: {} (file {}/{})", 
-                                jsonFile.getFileName(), processedCount + 1, jsonFiles.size());
-                    }
-                } catch (Exception e) {
-                    result.incrementFailed();
-                    result.addError("Failed to load " + jsonFile.getFileName() + ": " + e.getMessage());
-                    log.error("Error loading {} (file {}/{}): {}", 
-                            jsonFile.getFileName(), processedCount + 1, jsonFiles.size(), e.getMessage(), e);
-                }
-            }
-
-            // 处理剩余的 threads
-            if (!batch.isEmpty()) {
-                batchNumber++;
-                log.info("Processing final batch {} ({} threads, files {}-{}/{})", 
-                        batchNumber, batch.size(), processedCount - batch.size() + 1, processedCount, jsonFiles.size());
-                long batchStartTime = System.currentTimeMillis();
-                importBatch(batch, userCache, tagCache, result);
-                long batchTime = System.currentTimeMillis() - batchStartTime;
-                log.info("Final batch {} completed in {} ms", batchNumber, batchTime);
+            if (sink == Sink.COPY) {
+                result.setStageStats(runCopyPipeline(folderPath, result));
+            } else {
+                result.setStageStats(runJpaPipeline(folderPath, result));
             }
 
             long duration = System.currentTimeMillis() - startTime;
             log.info("========================================");
             log.info("OPTIMIZED import completed in {} seconds", duration / 1000.0);
-            log.info("Summary: Success: {}, Failed: {}, Skipped: {}", 
-                    result.getSuccessCount(), result.getFailedCount(), result.getSkippedCount());
+            log.info("Summary: Success: {}, Failed: {}, Skipped: {}, Unchanged: {}", 
+                    result.getSuccessCount(), result.getFailedCount(), result.getSkippedCount(),
+                    result.getUnchangedCount());
             log.info("Average time per thread: {} ms", 
                     result.getSuccessCount() > 0 ? duration / result.getSuccessCount() : 0);
             log.info("========================================");
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Import interrupted");
+            result.addError("Import interrupted");
+        } catch (ImportAbortedException e) {
+            log.error("{}; sources were left in place and can be re-imported", e.getMessage());
+            result.abort(e.getMessage());
+            result.addError(e.getMessage());
         } catch (Exception e) {
             log.error("Error reading directory: {}", e.getMessage(), e);
             result.addError("Error reading directory: " + e.getMessage());
+        } finally {
+            // 写入阶段被拒绝的归档记录在这里统一提取到隔离目录
+            deadLetters.flushPending();
         }
 
         return result;
     }
 
     /**
-     * 预加载所有用户到内存缓存
+     * 直接导入一批已解析的 thread，不经过数据文件（例如采集器边采集边入库）
+     *
+     * 与目录导入共用映射、写入与失败隔离逻辑，在调用线程中同步完成；
+     * 每个 thread 以 sourcePrefix + question_id 为清单键，修改时间取问题的 last_activity_date。
+     * @throws ImportAbortedException 数据库不可用（结果同时标记为中止），调用方应停止继续写入
      */
-    private Map<Long, UserEntity> loadUserCache() {
-        return userRepository.findAll().stream()
-                .collect(Collectors.toMap(UserEntity::getAccountId, u -> u));
+    public void importBatch(String sourcePrefix, List<QuestionThread> threads, Sink sink, ImportResult result) {
+        if (threads.isEmpty()) {
+            return;
+        }
+        List<ImportedFile> files = new ArrayList<>(threads.size());
+        for (QuestionThread thread : threads) {
+            files.add(new ImportedFile(sourcePrefix + thread.question().id(), 0,
+                    Instant.ofEpochSecond(thread.question().lastActivityDateEpoch()), null, thread));
+        }
+        try {
+            if (sink == Sink.COPY) {
+                writeIsolated(files, copySink::write, file -> file, result);
+                return;
+            }
+            List<ThreadEntities> batch = mapBatch(files, result);
+            if (batch != null) {
+                // 单批调用之间不共享最近键集合：调用方可能在两批之间清库
+                RecentKeySet<Long> knownUsers = new RecentKeySet<>(keyCacheSize);
+                RecentKeySet<String> knownTags = new RecentKeySet<>(keyCacheSize);
+                writeIsolated(batch, items -> saveEntities(items, knownUsers, knownTags), t -> t.source, result);
+            }
+        } catch (ImportAbortedException e) {
+            result.abort(e.getMessage());
+            throw e;
+        }
     }
 
     /**
-     * 预加载所有标签到内存缓存
+     * JPA 写入端：映射阶段构建实体批次，写入阶段在事务中解析用户/标签并 saveAll
      */
-    private Map<String, TagEntity> loadTagCache() {
-        return tagRepository.findAll().stream()
-                .collect(Collectors.toMap(TagEntity::getName, t -> t));
+    private List<ImportPipeline.StageStats> runJpaPipeline(Path folderPath, ImportResult result)
+            throws InterruptedException {
+        // 最近确认已入库的用户/标签（有界，多个写入线程共享）
+        RecentKeySet<Long> knownUsers = new RecentKeySet<>(keyCacheSize);
+        RecentKeySet<String> knownTags = new RecentKeySet<>(keyCacheSize);
+
+        ImportPipeline<List<ThreadEntities>> pipeline = new ImportPipeline<>(
+                fileLoader,
+                deadLetters,
+                manifestService.snapshot(),
+                files -> mapBatch(files, result),
+                (batch, threadCount) -> writeIsolated(batch,
+                        threads -> saveEntities(threads, knownUsers, knownTags), t -> t.source, result),
+                result,
+                newBatchSizer(INITIAL_BATCH_ROWS, result),
+                parserCount,
+                writerCount,
+                queueCapacity
+        );
+        List<ImportPipeline.StageStats> stats = pipeline.run(folderPath);
+        log.info("Key cache: {} users, {} tags (capacity {})", knownUsers.size(), knownTags.size(), keyCacheSize);
+        return stats;
     }
 
     /**
-     * 批量导入 threads
+     * COPY 写入端：映射阶段只负责分批，写入阶段直接把模型记录 COPY 进暂存表并合并
      */
-    @Transactional
-    public void importBatch(List<QuestionThread> threads, 
-                           Map<Long, UserEntity> userCache,
-                           Map<String, TagEntity> tagCache,
-                           ImportResult result) {
+    private List<ImportPipeline.StageStats> runCopyPipeline(Path folderPath, ImportResult result)
+            throws InterruptedException {
+        ImportPipeline<List<ImportedFile>> pipeline = new ImportPipeline<>(
+                fileLoader,
+                deadLetters,
+                manifestService.snapshot(),
+                files -> files,
+                (files, threadCount) -> writeIsolated(files, copySink::write, file -> file, result),
+                result,
+                newBatchSizer(COPY_INITIAL_BATCH_ROWS, result),
+                parserCount,
+                writerCount,
+                queueCapacity
+        );
+        return pipeline.run(folderPath);
+    }
+
+    private AdaptiveBatchSizer newBatchSizer(int initialRows, ImportResult result) {
+        AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(initialRows, MIN_BATCH_ROWS, MAX_BATCH_ROWS,
+                maxBatchBytes, targetCommitMillis, heapHighWatermark);
+        result.setBatchSizer(batchSizer);
+        return batchSizer;
+    }
+
+    /**
+     * 将一批 threads 映射为实体（流水线映射阶段）
+     * 用户/标签只在本批内去重，创建的是占位实体，写入阶段在事务中替换为数据库中的托管实体
+     */
+    private List<ThreadEntities> mapBatch(List<ImportedFile> files, ImportResult result) {
+        Map<Long, UserEntity> batchUsers = new HashMap<>();
+        Map<String, TagEntity> batchTags = new HashMap<>();
+        List<ThreadEntities> batch = new ArrayList<>(files.size());
+        for (ImportedFile file : files) {
+            try {
+                ThreadEntities entities = new ThreadEntities(file);
+                processThread(file.thread(), batchUsers, batchTags,
+                             entities.questions, entities.answers, entities.questionComments, entities.answerComments);
+                batch.add(entities);
+            } catch (Exception e) {
+                result.incrementFailed();
+                result.addError("Failed to process thread " + file.questionId() + ": " + e.getMessage());
+                deadLetters.reject(ImportDeadLetterService.Stage.MAP, file, e.getMessage(), e);
+                log.error("Error processing thread {}: {}", file.questionId(), e.getMessage(), e);
+            }
+        }
+        return batch.isEmpty() ? null : batch;
+    }
+
+    /**
+     * 写入一批数据，每次尝试一个事务；因数据错误失败时将批次二分后分别重试，
+     * 最终只有单独失败的 thread 被拒绝并记录（导入清单的 FAILED 记录、错误台账与隔离），其余数据仍按批提交
+     * @throws ImportAbortedException 数据库不可用等与数据无关的故障：不二分、不拒绝，中止导入
+     */
+    private <T> void writeIsolated(List<T> items,
+                                   BatchAttempt<T> attempt,
+                                   Function<T, ImportedFile> sourceOf,
+                                   ImportResult result) {
         try {
-            List<UserEntity> newUsers = new ArrayList<>();
-            List<TagEntity> newTags = new ArrayList<>();
-            List<QuestionEntity> questions = new ArrayList<>();
-            List<AnswerEntity> answers = new ArrayList<>();
-            List<QuestionCommentEntity> questionComments = new ArrayList<>();
-            List<AnswerCommentEntity> answerComments = new ArrayList<>();
-
-            for (QuestionThread thread : threads) {
-                try {
-                    processThread(thread, userCache, tagCache, newUsers, newTags, 
-                                 questions, answers, questionComments, answerComments);
-                    result.incrementSuccess();
-                } catch (Exception e) {
-                    result.incrementFailed();
-                    result.addError("Failed to process thread " + thread.question().id() + ": " + e.getMessage());
-                    log.error("Error processing thread {}: {}", thread.question().id(), e.getMessage(), e);
-                }
+            attempt.write(items);
+            result.incrementSuccess(items.size());
+            items.forEach(item -> result.recordRows(sourceOf.apply(item)));
+        } catch (Exception e) {
+            if (!ImportDeadLetterService.isRecordError(e)) {
+                throw new ImportAbortedException("Database write failed, import aborted: " + rootMessage(e), e);
+            }
+            if (items.size() == 1) {
+                ImportedFile source = sourceOf.apply(items.get(0));
+                result.incrementFailed();
+                result.addError("Failed to import thread " + source.questionId() + ": " + rootMessage(e));
+                deadLetters.reject(ImportDeadLetterService.Stage.WRITE, source, rootMessage(e), e);
+                log.error("Rejected thread {}: {}", source.questionId(), rootMessage(e), e);
+                return;
             }
+            log.warn("Batch of {} threads failed ({}), retrying in halves", items.size(), rootMessage(e));
+            int middle = items.size() / 2;
+            writeIsolated(items.subList(0, middle), attempt, sourceOf, result);
+            writeIsolated(items.subList(middle, items.size()), attempt, sourceOf, result);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
 
-            // 批量保存
-            log.debug("Batch statistics - Questions: {}, Answers: {}, Question Comments: {}, Answer Comments: {}, New Users: {}, New Tags: {}", 
-                     questions.size(), answers.size(), questionComments.size(), answerComments.size(), newUsers.size(), newTags.size());
-            
-            if (!newUsers.isEmpty()) {
-                userRepository.saveAll(newUsers);
-                // 更新缓存
-                newUsers.forEach(u -> userCache.put(u.getAccountId(), u));
-                log.debug("Saved {} new users", newUsers.size());
+    /**
+     * 在一个事务中批量保存若干 thread 的实体及其导入清单记录（流水线写入阶段）
+     *
+     * 用户/标签按批解析：先插入本批引用、且不在最近键集合中的用户/标签（已存在则跳过），
+     * 再一次查询取回托管实体，替换映射阶段创建的占位实体。事务提交后才把这些键加入最近键集合，
+     * 回滚的批次不会让其他写入线程误以为某个用户/标签已经入库。
+     */
+    private void saveEntities(List<ThreadEntities> threads,
+                              RecentKeySet<Long> knownUsers,
+                              RecentKeySet<String> knownTags) {
+        Map<Long, UserEntity> referencedUsers = new HashMap<>();
+        Set<String> referencedTags = new HashSet<>();
+        List<QuestionEntity> questions = new ArrayList<>();
+        List<AnswerEntity> answers = new ArrayList<>();
+        List<QuestionCommentEntity> questionComments = new ArrayList<>();
+        List<AnswerCommentEntity> answerComments = new ArrayList<>();
+        List<ImportManifestEntity> manifestEntries = new ArrayList<>(threads.size());
+        for (ThreadEntities thread : threads) {
+            for (QuestionEntity question : thread.questions) {
+                referencedUsers.putIfAbsent(question.getOwner().getAccountId(), question.getOwner());
+                question.getTags().forEach(tag -> referencedTags.add(tag.getName()));
             }
-            if (!newTags.isEmpty()) {
-                tagRepository.saveAll(newTags);
-                // 更新缓存
-                newTags.forEach(t -> tagCache.put(t.getName(), t));
-                log.debug("Saved {} new tags", newTags.size());
+            thread.answers.forEach(answer ->
+                    referencedUsers.putIfAbsent(answer.getOwner().getAccountId(), answer.getOwner()));
+            thread.questionComments.forEach(comment ->
+                    referencedUsers.putIfAbsent(comment.getOwner().getAccountId(), comment.getOwner()));
+            thread.answerComments.forEach(comment ->
+                    referencedUsers.putIfAbsent(comment.getOwner().getAccountId(), comment.getOwner()));
+            questions.addAll(thread.questions);
+            answers.addAll(thread.answers);
+            questionComments.addAll(thread.questionComments);
+            answerComments.addAll(thread.answerComments);
+            manifestEntries.add(manifestService.importedEntry(thread.source));
+        }
+
+        // 批量保存
+        log.debug("Batch statistics - Questions: {}, Answers: {}, Question Comments: {}, Answer Comments: {}, Users: {}, Tags: {}", 
+                 questions.size(), answers.size(), questionComments.size(),
+                 answerComments.size(), referencedUsers.size(), referencedTags.size());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, UserEntity> users = resolveUsers(referencedUsers, knownUsers);
+            Map<String, TagEntity> tags = resolveTags(referencedTags, knownTags);
+            for (QuestionEntity question : questions) {
+                question.setOwner(users.get(question.getOwner().getAccountId()));
+                question.setTags(question.getTags().stream()
+                        .map(tag -> tags.get(tag.getName()))
+                        .collect(Collectors.toCollection(ArrayList::new)));
             }
+            answers.forEach(answer -> answer.setOwner(users.get(answer.getOwner().getAccountId())));
+            questionComments.forEach(comment -> comment.setOwner(users.get(comment.getOwner().getAccountId())));
+            answerComments.forEach(comment -> comment.setOwner(users.get(comment.getOwner().getAccountId())));
+
+            // 重新导入的问题以本批数据为准，先删除上游已不存在的回答与评论
+            childrenPruner.prune(
+                    questions.stream().map(QuestionEntity::getQuestionId).toList(),
+                    answers.stream().map(AnswerEntity::getAnswerId).toList(),
+                    questionComments.stream().map(QuestionCommentEntity::getCommentId).toList(),
+                    answerComments.stream().map(AnswerCommentEntity::getCommentId).toList());
+
             if (!questions.isEmpty()) {
                 questionRepository.saveAll(questions);
                 log.debug("Saved {} questions", questions.size());
@@ -233,11 +421,98 @@ public class DataImportServiceOptimized {
                 answerCommentRepository.saveAll(answerComments);
                 log.debug("Saved {} answer comments", answerComments.size());
             }
+            // 清单记录与数据同一事务提交：中断后重新运行从最后提交的批次继续
+            manifestRepository.saveAll(manifestEntries);
+        });
 
-            log.debug("Completed batch import of {} threads", threads.size());
-        } catch (Exception e) {
-            log.error("Error importing batch: {}", e.getMessage(), e);
-            throw e;
+        knownUsers.addAll(referencedUsers.keySet());
+        knownTags.addAll(referencedTags);
+        log.debug("Completed batch import of {} threads", threads.size());
+    }
+
+    /**
+     * 插入本批引用的、不在最近键集合中的用户（已存在则跳过），再一次查询取回全部托管实体
+     */
+    private Map<Long, UserEntity> resolveUsers(Map<Long, UserEntity> referenced, RecentKeySet<Long> knownUsers) {
+        List<Map<String, Object>> missing = new ArrayList<>();
+        for (UserEntity user : referenced.values()) {
+            if (knownUsers.contains(user.getAccountId())) {
+                continue;
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("account_id", user.getAccountId());
+            row.put("user_id", user.getUserId());
+            row.put("display_name", user.getDisplayName());
+            row.put("reputation", user.getReputation());
+            row.put("user_type", user.getUserType());
+            row.put("profile_image", user.getProfileImage());
+            row.put("link", user.getLink());
+            missing.add(row);
+        }
+        if (!missing.isEmpty()) {
+            int inserted = userRepository.insertMissing(toJson(missing));
+            log.debug("Inserted {} new users ({} not in key cache)", inserted, missing.size());
+        }
+
+        Map<Long, UserEntity> users = userRepository.findByAccountIdIn(referenced.keySet()).stream()
+                .collect(Collectors.toMap(UserEntity::getAccountId, u -> u));
+        if (users.size() != referenced.size()) {
+            throw new IllegalStateException("Expected " + referenced.size() + " users after upsert, found " + users.size());
+        }
+        return users;
+    }
+
+    /**
+     * 插入本批引用的、不在最近键集合中的标签（已存在则跳过），再一次查询取回全部托管实体
+     */
+    private Map<String, TagEntity> resolveTags(Set<String> referenced, RecentKeySet<String> knownTags) {
+        if (referenced.isEmpty()) {
+            return Map.of();
+        }
+        List<String> missing = referenced.stream()
+                .filter(name -> !knownTags.contains(name))
+                .toList();
+        if (!missing.isEmpty()) {
+            int inserted = tagRepository.insertMissing(toJson(missing));
+            log.debug("Inserted {} new tags ({} not in key cache)", inserted, missing.size());
+        }
+
+        Map<String, TagEntity> tags = tagRepository.findByNameIn(referenced).stream()
+                .collect(Collectors.toMap(TagEntity::getName, t -> t));
+        if (tags.size() != referenced.size()) {
+            throw new IllegalStateException("Expected " + referenced.size() + " tags after upsert, found " + tags.size());
+        }
+        return tags;
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 一次写入尝试（在一个事务中完成，失败时抛出异常）
+     */
+    @FunctionalInterface
+    private interface BatchAttempt<T> {
+        void write(List<T> items) throws Exception;
+    }
+
+    /**
+     * 映射阶段为单个 thread 产出的待保存实体（批次二分的最小单位）
+     */
+    private static final class ThreadEntities {
+        private final ImportedFile source;
+        private final List<QuestionEntity> questions = new ArrayList<>(1);
+        private final List<AnswerEntity> answers = new ArrayList<>();
+        private final List<QuestionCommentEntity> questionComments = new ArrayList<>();
+        private final List<AnswerCommentEntity> answerComments = new ArrayList<>();
+
+        private ThreadEntities(ImportedFile source) {
+            this.source = source;
         }
     }
 
@@ -245,10 +520,8 @@ public class DataImportServiceOptimized {
      * 处理单个 thread（不立即保存，收集到批量列表）
      */
     private void processThread(QuestionThread thread,
-                               Map<Long, UserEntity> userCache,
-                               Map<String, TagEntity> tagCache,
-                               List<UserEntity> newUsers,
-                               List<TagEntity> newTags,
+                               Map<Long, UserEntity> batchUsers,
+                               Map<String, TagEntity> batchTags,
                                List<QuestionEntity> questions,
                                List<AnswerEntity> answers,
                                List<QuestionCommentEntity> questionComments,
@@ -259,10 +532,10 @@ public class DataImportServiceOptimized {
         var answerCommentMap = thread.answerComments();
 
         // 1. 获取或创建用户
-        UserEntity owner = getOrCreateUser(question.owner(), userCache, newUsers);
+        UserEntity owner = getOrCreateUser(question.owner(), batchUsers);
 
         // 2. 获取或创建标签
-        List<TagEntity> tags = getOrCreateTags(question.tags(), tagCache, newTags);
+        List<TagEntity> tags = getOrCreateTags(question.tags(), batchTags);
 
         // 3. 创建问题实体
         QuestionEntity questionEntity = new QuestionEntity();
@@ -289,7 +562,7 @@ public class DataImportServiceOptimized {
         // 4. 创建回答实体
         Map<Long, AnswerEntity> answerMap = new HashMap<>();
         for (var answer : questionAnswers) {
-            UserEntity answerOwner = getOrCreateUser(answer.owner(), userCache, newUsers);
+            UserEntity answerOwner = getOrCreateUser(answer.owner(), batchUsers);
             AnswerEntity answerEntity = new AnswerEntity();
             answerEntity.setAnswerId(answer.id());
             answerEntity.setQuestion(questionEntity);
@@ -308,10 +581,11 @@ public class DataImportServiceOptimized {
 
         // 5. 创建问题的评论
         for (var comment : questionCommentList) {
-            QuestionCommentEntity commentEntity = createQuestionCommentEntity(comment, questionEntity, userCache, newUsers);
+            QuestionCommentEntity commentEntity = createQuestionCommentEntity(comment, questionEntity, batchUsers);
             questionComments.add(commentEntity);
             questionEntity.getQuestionComments().add(commentEntity);
         }
+        questionEntity.setCommentCount(questionCommentList.size());
 
         // 6. 创建回答的评论
         for (var entry : answerCommentMap.entrySet()) {
@@ -319,8 +593,7 @@ public class DataImportServiceOptimized {
             AnswerEntity answerEntity = answerMap.get(answerId);
             if (answerEntity != null) {
                 for (var comment : entry.getValue()) {
-                    AnswerCommentEntity commentEntity = createAnswerCommentEntity(comment, answerEntity, 
-                                                                                 userCache, newUsers);
+                    AnswerCommentEntity commentEntity = createAnswerCommentEntity(comment, answerEntity, batchUsers);
                     answerComments.add(commentEntity);
                     answerEntity.getAnswerComments().add(commentEntity);
                 }
@@ -329,9 +602,8 @@ public class DataImportServiceOptimized {
     }
 
     private UserEntity getOrCreateUser(cs209a.finalproject_demo.model.Author author,
-                                      Map<Long, UserEntity> userCache,
-                                      List<UserEntity> newUsers) {
-        UserEntity user = userCache.get(author.accountId());
+                                      Map<Long, UserEntity> batchUsers) {
+        UserEntity user = batchUsers.get(author.accountId());
         if (user == null) {
             user = new UserEntity();
             user.setAccountId(author.accountId());
@@ -341,23 +613,20 @@ public class DataImportServiceOptimized {
             user.setUserType(author.userType());
             user.setProfileImage(author.profileImage());
             user.setLink(author.link());
-            newUsers.add(user);
-            userCache.put(author.accountId(), user);
+            batchUsers.put(author.accountId(), user);
         }
         return user;
     }
 
     private List<TagEntity> getOrCreateTags(List<String> tagNames,
-                                           Map<String, TagEntity> tagCache,
-                                           List<TagEntity> newTags) {
+                                           Map<String, TagEntity> batchTags) {
         List<TagEntity> tags = new ArrayList<>();
         for (String tagName : tagNames) {
             String normalizedName = tagName.toLowerCase();
-            TagEntity tag = tagCache.get(normalizedName);
+            TagEntity tag = batchTags.get(normalizedName);
             if (tag == null) {
                 tag = new TagEntity(normalizedName);
-                newTags.add(tag);
-                tagCache.put(normalizedName, tag);
+                batchTags.put(normalizedName, tag);
             }
             tags.add(tag);
         }
@@ -366,9 +635,8 @@ public class DataImportServiceOptimized {
 
     private QuestionCommentEntity createQuestionCommentEntity(cs209a.finalproject_demo.model.Comment comment,
                                                              QuestionEntity question,
-                                                             Map<Long, UserEntity> userCache,
-                                                             List<UserEntity> newUsers) {
-        UserEntity commentOwner = getOrCreateUser(comment.owner(), userCache, newUsers);
+                                                             Map<Long, UserEntity> batchUsers) {
+        UserEntity commentOwner = getOrCreateUser(comment.owner(), batchUsers);
         QuestionCommentEntity commentEntity = new QuestionCommentEntity();
         commentEntity.setCommentId(comment.id());
         commentEntity.setBody(comment.text());
@@ -382,9 +650,8 @@ public class DataImportServiceOptimized {
 
     private AnswerCommentEntity createAnswerCommentEntity(cs209a.finalproject_demo.model.Comment comment,
                                                          AnswerEntity answer,
-                                                         Map<Long, UserEntity> userCache,
-                                                         List<UserEntity> newUsers) {
-        UserEntity commentOwner = getOrCreateUser(comment.owner(), userCache, newUsers);
+                                                         Map<Long, UserEntity> batchUsers) {
+        UserEntity commentOwner = getOrCreateUser(comment.owner(), batchUsers);
         AnswerCommentEntity commentEntity = new AnswerCommentEntity();
         commentEntity.setCommentId(comment.id());
         commentEntity.setBody(comment.text());
@@ -433,57 +700,12 @@ public class DataImportServiceOptimized {
         
         userRepository.deleteAllInBatch();
         log.info("Deleted {} users", userCount);
+
+        // 清单同时清空，否则下次导入会把所有文件当作未变化而跳过
+        manifestService.clear();
+        log.info("Cleared import manifest");
         
         log.info("All existing data cleared successfully.");
         log.info("========================================");
     }
-
-    /**
-     * 导入结果统计
-     */
-    public static class ImportResult {
-        private int successCount = 0;
-        private int failedCount = 0;
-        private int skippedCount = 0;
-        private final List<String> errors = new ArrayList<>();
-
-        public void incrementSuccess() {
-            successCount++;
-        }
-
-        public void incrementFailed() {
-            failedCount++;
-        }
-
-        public void incrementSkipped() {
-            skippedCount++;
-        }
-
-        public void addError(String error) {
-            errors.add(error);
-        }
-
-        public int getSuccessCount() {
-            return successCount;
-        }
-
-        public int getFailedCount() {
-            return failedCount;
-        }
-
-        public int getSkippedCount() {
-            return skippedCount;
-        }
-
-        public List<String> getErrors() {
-            return errors;
-        }
-
-        @Override
-        public String toString() {
-            return String.format("ImportResult{success=%d, failed=%d, skipped=%d, errors=%d}",
-                    successCount, failedCount, skippedCount, errors.size());
-        }
-    }
 }
-
@@ -0,0 +1,43 @@
+package cs209a.finalproject_demo.service;
+
+import cs209a.finalproject_demo.dto.IntegrityReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * 数据完整性校验命令行工具
+ * 使用方式：java -jar app.jar --integrity.check=true
+ * 可用 -Dintegrity.source=database|files（或环境变量 INTEGRITY_SOURCE）选择校验对象，默认 database；
+ * files 模式校验 -Dintegrity.directory（或环境变量 INTEGRITY_DIRECTORY，默认 Sample_SO_data）中的文件
+ */
+@Component
+@ConditionalOnProperty(name = "integrity.check", havingValue = "true")
+public class DataIntegrityRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DataIntegrityRunner.class);
+
+    private final DataIntegrityValidator integrityValidator;
+
+    public DataIntegrityRunner(DataIntegrityValidator integrityValidator) {
+        this.integrityValidator = integrityValidator;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        String source = System.getProperty("integrity.source",
+                System.getenv().getOrDefault("INTEGRITY_SOURCE", "database"));
+        String directory = System.getProperty("integrity.directory",
+                System.getenv().getOrDefault("INTEGRITY_DIRECTORY", "Sample_SO_data"));
+
+        log.info("=== Starting Data Integrity Check ({}) ===", source);
+        IntegrityReport report = "files".equalsIgnoreCase(source)
+                ? integrityValidator.validateFiles(Paths.get(directory))
+                : integrityValidator.validateDatabase();
+        DataIntegrityValidator.logReport(report, log);
+    }
+}
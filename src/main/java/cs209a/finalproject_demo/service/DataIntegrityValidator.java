@@ -0,0 +1,643 @@
+package cs209a.finalproject_demo.service;
+
+import cs209a.finalproject_demo.dataset.ThreadFileLoader;
+import cs209a.finalproject_demo.dto.IntegrityReport;
+import cs209a.finalproject_demo.model.Answer;
+import cs209a.finalproject_demo.model.Author;
+import cs209a.finalproject_demo.model.Comment;
+import cs209a.finalproject_demo.model.Question;
+import cs209a.finalproject_demo.model.QuestionThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 数据完整性校验（替代 validate-data-integrity.sql / find_inconsistent_threads.py 的逐项全表扫描）
+ *
+ * 数据库模式：按 question_id 区间分片并行扫描，每个分片在一个连接上同时打开问题、回答、问题评论、
+ * 回答评论（按所属问题）与问题标签五个按 question_id 排序的游标，归并成一个个 thread 后一次完成所有检查，
+ * 每张表只读一遍；用户 account_id 与标签名预先加载到内存用于存在性检查。
+ *
+ * 文件模式：多线程解析目录中的 JSON / 归档记录，对每个 thread 做同样的一致性检查。
+ *
+ * 每项检查只保留违规计数与少量示例 ID，内存占用与数据量无关。
+ */
+@Service
+public class DataIntegrityValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(DataIntegrityValidator.class);
+
+    private static final int SAMPLE_SIZE = 20;
+    private static final int FETCH_SIZE = 10_000;
+    private static final int SHARDS_PER_WORKER = 4;
+
+    /**
+     * 检查项
+     */
+    public enum Check {
+        ANSWERED_WITHOUT_ANSWERS("问题标记为已回答但没有答案"),
+        ANSWER_COUNT_MISMATCH("answer_count 与实际答案数量不一致"),
+        ACCEPTED_ANSWER_MISSING("accepted_answer_id 不在该问题的答案中"),
+        ACCEPTED_FLAG_MISMATCH("答案的 accepted 标记与问题的 accepted_answer_id 不一致"),
+        ACCEPTED_ID_NOT_RECORDED("有答案标记为已采纳但问题没有 accepted_answer_id"),
+        ORPHAN_ANSWERS("答案指向不存在（或其他）的问题"),
+        ORPHAN_QUESTION_COMMENTS("问题评论指向不存在（或其他）的问题"),
+        ORPHAN_ANSWER_COMMENTS("回答评论指向不存在的答案（或答案所属的问题不存在）"),
+        UNRESOLVED_OWNERS("作者（问题/答案/评论）无法解析为用户"),
+        UNKNOWN_TAGS("问题标签不在 tags 表中"),
+        UNTAGGED_QUESTIONS("问题没有标签");
+
+        private final String description;
+
+        Check(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final String QUESTIONS_SQL = """
+            SELECT question_id, answered, answer_count, accepted_answer_id, owner_account_id
+            FROM questions WHERE question_id >= ? AND question_id < ? ORDER BY question_id
+            """;
+    private static final String ANSWERS_SQL = """
+            SELECT question_id, answer_id, accepted, owner_account_id
+            FROM answers WHERE question_id >= ? AND question_id < ? ORDER BY question_id
+            """;
+    private static final String QUESTION_COMMENTS_SQL = """
+            SELECT question_id, comment_id, owner_account_id
+            FROM question_comments WHERE question_id >= ? AND question_id < ? ORDER BY question_id
+            """;
+    private static final String ANSWER_COMMENTS_SQL = """
+            SELECT a.question_id, ac.comment_id, ac.owner_account_id
+            FROM answer_comments ac JOIN answers a ON a.answer_id = ac.answer_id
+            WHERE a.question_id >= ? AND a.question_id < ? ORDER BY a.question_id
+            """;
+    private static final String QUESTION_TAGS_SQL = """
+            SELECT question_id, tag_name
+            FROM question_tags WHERE question_id >= ? AND question_id < ? ORDER BY question_id
+            """;
+    private static final String ORPHAN_ANSWER_COMMENTS_SQL = """
+            SELECT ac.comment_id FROM answer_comments ac
+            WHERE NOT EXISTS (SELECT 1 FROM answers a WHERE a.answer_id = ac.answer_id)
+            """;
+
+    private final DataSource dataSource;
+    private final ThreadFileLoader fileLoader;
+    private final int parallelism;
+
+    public DataIntegrityValidator(DataSource dataSource,
+                                  ThreadFileLoader fileLoader,
+                                  @Value("${integrity.parallelism:0}") int parallelism) {
+        this.dataSource = dataSource;
+        this.fileLoader = fileLoader;
+        // 每个数据库工作线程占用一个连接，默认不超过连接池的一半
+        this.parallelism = parallelism > 0 ? parallelism : Math.min(4, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 校验数据库中的数据
+     */
+    public IntegrityReport validateDatabase() throws SQLException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        Violations violations = new Violations();
+        Counters counters = new Counters();
+
+        ExecutorService executor = newExecutor();
+        try {
+            Future<long[]> users = executor.submit(this::loadAccountIds);
+            Future<Set<String>> tags = executor.submit(this::loadTagNames);
+            Future<?> orphanComments = executor.submit(() -> {
+                scanOrphanAnswerComments(violations);
+                return null;
+            });
+            long[] accountIds = await(users);
+            Set<String> tagNames = await(tags);
+
+            List<long[]> shards = shardRanges(parallelism * SHARDS_PER_WORKER);
+            List<Future<?>> futures = new ArrayList<>();
+            for (long[] shard : shards) {
+                futures.add(executor.submit(() -> {
+                    scanShard(shard[0], shard[1], accountIds, tagNames, violations, counters);
+                    return null;
+                }));
+            }
+            await(orphanComments);
+            for (Future<?> future : futures) {
+                await(future);
+            }
+            return violations.toReport("database", EnumSet.allOf(Check.class), counters, shards.size(),
+                    System.currentTimeMillis() - startTime);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 校验目录中的 JSON 文件 / 归档记录
+     */
+    public IntegrityReport validateFiles(Path directory) throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        Violations violations = new Violations();
+        Counters counters = new Counters();
+
+        ExecutorService executor = newExecutor();
+        // 限制排队中的记录数，归档中的记录已读入内存
+        Semaphore inFlight = new Semaphore(parallelism * 64);
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> sources = files
+                    .filter(Files::isRegularFile)
+                    .filter(ThreadFileLoader::isSupportedSource)
+                    .sorted()
+                    .toList();
+            for (Path source : sources) {
+                if (ThreadFileLoader.isArchive(source)) {
+                    try {
+                        fileLoader.readRecords(source, (recordName, content) ->
+                                submit(executor, inFlight, () -> checkRecord(source.getFileName() + "!" + recordName,
+                                        content, violations, counters)));
+                    } catch (IOException e) {
+                        counters.unreadable.increment();
+                        log.warn("Failed to read archive {}: {}", source.getFileName(), e.getMessage());
+                    }
+                } else {
+                    submit(executor, inFlight, () -> checkRecord(source.getFileName().toString(),
+                            Files.readAllBytes(source), violations, counters));
+                }
+            }
+            inFlight.acquire(parallelism * 64);
+            // 文件中没有独立的标签表，标签存在性只能在数据库中检查
+            return violations.toReport("files", EnumSet.complementOf(EnumSet.of(Check.UNKNOWN_TAGS)), counters, 0,
+                    System.currentTimeMillis() - startTime);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 输出统一格式的校验报告
+     */
+    public static void logReport(IntegrityReport report, Logger log) {
+        log.info("========================================");
+        log.info("Data Integrity Report ({})", report.source());
+        log.info("========================================");
+        log.info("Threads: {}, answers: {}, comments: {} in {} s",
+                report.threads(), report.answers(), report.comments(), report.duration_ms() / 1000.0);
+        for (IntegrityReport.CheckResult check : report.checks()) {
+            if (check.violations() == 0) {
+                log.info("  OK    {} ({})", check.check(), check.description());
+            } else {
+                log.warn("  FAIL  {} ({}): {} violation(s), e.g. {}",
+                        check.check(), check.description(), check.violations(), check.sample_ids());
+            }
+        }
+        log.info("Result: {}", report.passed() ? "PASSED" : "FAILED");
+    }
+
+    private void scanShard(long from, long to, long[] accountIds, Set<String> tagNames,
+                           Violations violations, Counters counters) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            // 游标（按 fetchSize 分批读取）只在事务内生效
+            connection.setAutoCommit(false);
+            try (Cursor<QuestionRow> questions = new Cursor<>(connection, QUESTIONS_SQL, from, to,
+                         rs -> new QuestionRow(rs.getBoolean(2), rs.getInt(3), nullableLong(rs, 4), nullableLong(rs, 5)));
+                 Cursor<AnswerRow> answers = new Cursor<>(connection, ANSWERS_SQL, from, to,
+                         rs -> new AnswerRow(rs.getLong(2), rs.getBoolean(3), nullableLong(rs, 4)));
+                 Cursor<CommentRow> questionComments = new Cursor<>(connection, QUESTION_COMMENTS_SQL, from, to,
+                         rs -> new CommentRow(rs.getLong(2), nullableLong(rs, 3)));
+                 Cursor<CommentRow> answerComments = new Cursor<>(connection, ANSWER_COMMENTS_SQL, from, to,
+                         rs -> new CommentRow(rs.getLong(2), nullableLong(rs, 3)));
+                 Cursor<String> questionTags = new Cursor<>(connection, QUESTION_TAGS_SQL, from, to,
+                         rs -> rs.getString(2))) {
+                while (true) {
+                    long questionId = Math.min(Math.min(questions.key(), answers.key()),
+                            Math.min(Math.min(questionComments.key(), answerComments.key()), questionTags.key()));
+                    if (questionId == Long.MAX_VALUE) {
+                        break;
+                    }
+                    List<QuestionRow> question = questions.take(questionId);
+                    List<AnswerRow> answerRows = answers.take(questionId);
+                    List<CommentRow> questionCommentRows = questionComments.take(questionId);
+                    List<CommentRow> answerCommentRows = answerComments.take(questionId);
+                    List<String> tags = questionTags.take(questionId);
+                    counters.answers.add(answerRows.size());
+                    counters.comments.add(questionCommentRows.size() + answerCommentRows.size());
+
+                    if (question.isEmpty()) {
+                        // 所属问题不存在；答案本身存在，scanOrphanAnswerComments 不会报告其下的评论，在这里一并计为孤立
+                        violations.add(Check.ORPHAN_ANSWERS, questionId, answerRows.size());
+                        violations.add(Check.ORPHAN_QUESTION_COMMENTS, questionId, questionCommentRows.size());
+                        violations.add(Check.ORPHAN_ANSWER_COMMENTS, questionId, answerCommentRows.size());
+                        continue;
+                    }
+                    counters.threads.increment();
+                    QuestionRow row = question.get(0);
+                    List<AnswerFact> answerFacts = new ArrayList<>(answerRows.size());
+                    for (AnswerRow answer : answerRows) {
+                        answerFacts.add(new AnswerFact(answer.answerId(), answer.accepted()));
+                    }
+                    checkThread(questionId, row.answered(), row.answerCount(), row.acceptedAnswerId(),
+                            answerFacts, tags.size(), violations);
+
+                    long unresolved = unresolved(accountIds, row.ownerAccountId()) ? 1 : 0;
+                    for (AnswerRow answer : answerRows) {
+                        unresolved += unresolved(accountIds, answer.ownerAccountId()) ? 1 : 0;
+                    }
+                    for (CommentRow comment : questionCommentRows) {
+                        unresolved += unresolved(accountIds, comment.ownerAccountId()) ? 1 : 0;
+                    }
+                    for (CommentRow comment : answerCommentRows) {
+                        unresolved += unresolved(accountIds, comment.ownerAccountId()) ? 1 : 0;
+                    }
+                    violations.add(Check.UNRESOLVED_OWNERS, questionId, unresolved);
+
+                    long unknownTags = tags.stream().filter(tag -> !tagNames.contains(tag)).count();
+                    violations.add(Check.UNKNOWN_TAGS, questionId, unknownTags);
+                }
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * 两种模式共用的 thread 内一致性检查
+     */
+    private static void checkThread(long questionId, boolean answered, int answerCount, Long acceptedAnswerId,
+                                    List<AnswerFact> answers, int tagCount, Violations violations) {
+        if (answered && answers.isEmpty()) {
+            violations.add(Check.ANSWERED_WITHOUT_ANSWERS, questionId, 1);
+        }
+        if (answerCount != answers.size()) {
+            violations.add(Check.ANSWER_COUNT_MISMATCH, questionId, 1);
+        }
+        if (acceptedAnswerId == null) {
+            if (answers.stream().anyMatch(AnswerFact::accepted)) {
+                violations.add(Check.ACCEPTED_ID_NOT_RECORDED, questionId, 1);
+            }
+        } else {
+            boolean acceptedFound = false;
+            boolean flagMismatch = false;
+            for (AnswerFact answer : answers) {
+                boolean isAccepted = answer.answerId() == acceptedAnswerId;
+                acceptedFound |= isAccepted;
+                flagMismatch |= answer.accepted() != isAccepted;
+            }
+            if (!acceptedFound) {
+                violations.add(Check.ACCEPTED_ANSWER_MISSING, questionId, 1);
+            }
+            if (flagMismatch) {
+                violations.add(Check.ACCEPTED_FLAG_MISMATCH, questionId, 1);
+            }
+        }
+        if (tagCount == 0) {
+            violations.add(Check.UNTAGGED_QUESTIONS, questionId, 1);
+        }
+    }
+
+    private void checkRecord(String sourceName, byte[] content, Violations violations, Counters counters) {
+        Optional<QuestionThread> threadOpt = fileLoader.load(sourceName, content);
+        if (threadOpt.isEmpty()) {
+            counters.unreadable.increment();
+            return;
+        }
+        QuestionThread thread = threadOpt.get();
+        Question question = thread.question();
+        long questionId = question.id();
+        List<Answer> answers = thread.answers() != null ? thread.answers() : List.of();
+        List<Comment> questionComments = thread.questionComments() != null ? thread.questionComments() : List.of();
+        Map<Long, List<Comment>> answerComments = thread.answerComments() != null ? thread.answerComments() : Map.of();
+        counters.threads.increment();
+        counters.answers.add(answers.size());
+        counters.comments.add(questionComments.size());
+
+        List<AnswerFact> answerFacts = new ArrayList<>(answers.size());
+        Set<Long> answerIds = new HashSet<>();
+        long orphanAnswers = 0;
+        long unresolved = unresolvable(question.owner()) ? 1 : 0;
+        for (Answer answer : answers) {
+            answerFacts.add(new AnswerFact(answer.id(), answer.accepted()));
+            answerIds.add(answer.id());
+            orphanAnswers += answer.questionId() != questionId ? 1 : 0;
+            unresolved += unresolvable(answer.owner()) ? 1 : 0;
+        }
+        Long acceptedAnswerId = question.acceptedAnswerId() != null ? question.acceptedAnswerId().longValue() : null;
+        int tagCount = question.tags() != null ? question.tags().size() : 0;
+        checkThread(questionId, question.answered(), question.answerCount(), acceptedAnswerId,
+                answerFacts, tagCount, violations);
+        violations.add(Check.ORPHAN_ANSWERS, questionId, orphanAnswers);
+
+        long orphanQuestionComments = 0;
+        for (Comment comment : questionComments) {
+            orphanQuestionComments += comment.postId() != questionId ? 1 : 0;
+            unresolved += unresolvable(comment.owner()) ? 1 : 0;
+        }
+        violations.add(Check.ORPHAN_QUESTION_COMMENTS, questionId, orphanQuestionComments);
+
+        for (Map.Entry<Long, List<Comment>> entry : answerComments.entrySet()) {
+            List<Comment> comments = entry.getValue() != null ? entry.getValue() : List.of();
+            counters.comments.add(comments.size());
+            if (!answerIds.contains(entry.getKey())) {
+                violations.add(Check.ORPHAN_ANSWER_COMMENTS, questionId, comments.size());
+            }
+            for (Comment comment : comments) {
+                unresolved += unresolvable(comment.owner()) ? 1 : 0;
+            }
+        }
+        violations.add(Check.UNRESOLVED_OWNERS, questionId, unresolved);
+    }
+
+    /**
+     * 文件中的作者有显示名却没有 account_id 时，导入后会被并入匿名用户
+     */
+    private static boolean unresolvable(Author owner) {
+        return owner != null && owner.accountId() <= 0 && !"anonymous".equals(owner.safeDisplayName());
+    }
+
+    private static boolean unresolved(long[] accountIds, Long accountId) {
+        return accountId != null && Arrays.binarySearch(accountIds, accountId) < 0;
+    }
+
+    private long[] loadAccountIds() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.setFetchSize(FETCH_SIZE);
+                long[] ids = new long[1024];
+                int size = 0;
+                try (ResultSet rs = statement.executeQuery("SELECT account_id FROM users")) {
+                    while (rs.next()) {
+                        if (size == ids.length) {
+                            ids = Arrays.copyOf(ids, size * 2);
+                        }
+                        ids[size++] = rs.getLong(1);
+                    }
+                }
+                long[] result = Arrays.copyOf(ids, size);
+                Arrays.sort(result);
+                return result;
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private Set<String> loadTagNames() throws SQLException {
+        Set<String> names = new HashSet<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name FROM tags")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+
+    private void scanOrphanAnswerComments(Violations violations) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(ORPHAN_ANSWER_COMMENTS_SQL)) {
+            while (rs.next()) {
+                violations.add(Check.ORPHAN_ANSWER_COMMENTS, rs.getLong(1), 1);
+            }
+        }
+    }
+
+    /**
+     * 按 question_id 的取值范围等分为若干区间；首尾区间不设界，覆盖指向不存在问题的孤立行
+     */
+    private List<long[]> shardRanges(int shardCount) throws SQLException {
+        long min;
+        long max;
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MIN(question_id), MAX(question_id) FROM questions")) {
+            rs.next();
+            min = rs.getLong(1);
+            max = rs.getLong(2);
+        }
+        List<long[]> shards = new ArrayList<>();
+        long span = Math.max(1, (max - min + shardCount) / shardCount);
+        long from = Long.MIN_VALUE;
+        for (int i = 1; i < shardCount && min + span * i <= max; i++) {
+            long to = min + span * i;
+            shards.add(new long[]{from, to});
+            from = to;
+        }
+        shards.add(new long[]{from, Long.MAX_VALUE});
+        return shards;
+    }
+
+    private ExecutorService newExecutor() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "integrity-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static void submit(ExecutorService executor, Semaphore inFlight, FileTask task)
+            throws InterruptedException {
+        inFlight.acquire();
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                log.warn("Failed to read record: {}", e.getMessage());
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private static <T> T await(Future<T> future) throws SQLException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new IllegalStateException("Integrity scan failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static Long nullableLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    @FunctionalInterface
+    private interface FileTask {
+        void run() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * 按 question_id 有序的只进游标，按键分组取行（第 1 列为 question_id）
+     */
+    private static final class Cursor<T> implements AutoCloseable {
+        private final PreparedStatement statement;
+        private final ResultSet rs;
+        private final RowReader<T> reader;
+        private long key;
+        private T row;
+
+        Cursor(Connection connection, String sql, long from, long to, RowReader<T> reader) throws SQLException {
+            this.statement = connection.prepareStatement(sql);
+            this.statement.setFetchSize(FETCH_SIZE);
+            this.statement.setLong(1, from);
+            this.statement.setLong(2, to);
+            this.rs = statement.executeQuery();
+            this.reader = reader;
+            advance();
+        }
+
+        /**
+         * 当前行的 question_id；读完时为 Long.MAX_VALUE
+         */
+        long key() {
+            return key;
+        }
+
+        /**
+         * 取出 question_id 等于 groupKey 的连续行
+         */
+        List<T> take(long groupKey) throws SQLException {
+            if (key != groupKey) {
+                return List.of();
+            }
+            List<T> rows = new ArrayList<>();
+            while (key == groupKey) {
+                rows.add(row);
+                advance();
+            }
+            return rows;
+        }
+
+        private void advance() throws SQLException {
+            if (rs.next()) {
+                key = rs.getLong(1);
+                row = reader.read(rs);
+            } else {
+                key = Long.MAX_VALUE;
+                row = null;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                rs.close();
+            } finally {
+                statement.close();
+            }
+        }
+    }
+
+    private record QuestionRow(boolean answered, int answerCount, Long acceptedAnswerId, Long ownerAccountId) {
+    }
+
+    private record AnswerRow(long answerId, boolean accepted, Long ownerAccountId) {
+    }
+
+    private record CommentRow(long commentId, Long ownerAccountId) {
+    }
+
+    private record AnswerFact(long answerId, boolean accepted) {
+    }
+
+    private static final class Counters {
+        private final LongAdder threads = new LongAdder();
+        private final LongAdder answers = new LongAdder();
+        private final LongAdder comments = new LongAdder();
+        private final LongAdder unreadable = new LongAdder();
+    }
+
+    /**
+     * 各检查项的违规计数与示例 ID（线程安全）
+     */
+    private static final class Violations {
+        private final Map<Check, LongAdder> counts = new EnumMap<>(Check.class);
+        private final Map<Check, List<Long>> samples = new EnumMap<>(Check.class);
+
+        Violations() {
+            for (Check check : Check.values()) {
+                counts.put(check, new LongAdder());
+                samples.put(check, new ArrayList<>());
+            }
+        }
+
+        void add(Check check, long id, long count) {
+            if (count <= 0) {
+                return;
+            }
+            counts.get(check).add(count);
+            List<Long> ids = samples.get(check);
+            synchronized (ids) {
+                if (ids.size() < SAMPLE_SIZE) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        IntegrityReport toReport(String source, Set<Check> applicable, Counters counters, int shards,
+                                 long durationMillis) {
+            List<IntegrityReport.CheckResult> checks = new ArrayList<>();
+            boolean passed = true;
+            for (Check check : applicable) {
+                long violations = counts.get(check).sum();
+                passed &= violations == 0;
+                List<Long> ids = samples.get(check);
+                synchronized (ids) {
+                    checks.add(new IntegrityReport.CheckResult(check.name(), check.getDescription(),
+                            violations, List.copyOf(ids)));
+                }
+            }
+            if (counters.unreadable.sum() > 0) {
+                log.warn("{} records could not be parsed and were not validated", counters.unreadable.sum());
+            }
+            return new IntegrityReport(source, counters.threads.sum(), counters.answers.sum(),
+                    counters.comments.sum(), shards, durationMillis, passed, checks);
+        }
+    }
+}
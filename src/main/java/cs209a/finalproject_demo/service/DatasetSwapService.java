@@ -0,0 +1,284 @@
+package cs209a.finalproject_demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 蓝绿切换式全量重新导入
+ *
+ * 导入进程的连接以 search_path = import_staging, public 启动（见 DataImporterApplication），
+ * 未限定 schema 的表名都落到暂存 schema，Web 应用仍读取 public 中的正式数据：
+ * 1. prepareStaging：按正式表结构（LIKE ... INCLUDING ALL）重建空的暂存表，补上外键与独立的自增序列
+ * 2. 导入引擎照常写入（实际写入暂存表）
+ * 3. swap：校验行数后在一个事务中把正式表移入 import_previous、暂存表移入 public，
+ *    读者只会看到切换前或切换后的完整数据
+ *
+ * 上一代数据保留在 import_previous 中，rollback 可在一个事务内换回；下一次切换时才删除。
+ */
+@Service
+public class DatasetSwapService {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetSwapService.class);
+
+    public static final String LIVE_SCHEMA = "public";
+    public static final String STAGING_SCHEMA = "import_staging";
+    public static final String PREVIOUS_SCHEMA = "import_previous";
+
+    /**
+     * 切换模式下导入进程每个连接的初始化语句
+     */
+    public static final String STAGING_SEARCH_PATH_SQL = "SET search_path TO " + STAGING_SCHEMA + ", " + LIVE_SCHEMA;
+
+    // 一起切换的表：业务数据、导入清单与由业务数据构建的草图，按外键依赖顺序排列
+    private static final List<String> SWAPPED_TABLES = List.of(
+            "users", "tags", "questions", "question_tags", "answers",
+            "question_comments", "answer_comments", "import_manifest", "solvability_month_sketches"
+    );
+
+    private static final String FIND_FOREIGN_KEYS = """
+            SELECT t.relname, c.conname, pg_get_constraintdef(c.oid)
+            FROM pg_constraint c
+            JOIN pg_class t ON t.oid = c.conrelid
+            JOIN pg_namespace n ON n.oid = t.relnamespace
+            WHERE n.nspname = ? AND c.contype = 'f' AND t.relname = ANY (?)
+            ORDER BY t.relname, c.conname
+            """;
+
+    private static final String FIND_SERIAL_COLUMNS = """
+            SELECT table_name, column_name
+            FROM information_schema.columns
+            WHERE table_schema = ? AND table_name = ANY (?) AND column_default LIKE 'nextval(%'
+            ORDER BY table_name, column_name
+            """;
+
+    private final DataSource dataSource;
+    private final double minRowRatio;
+
+    public DatasetSwapService(DataSource dataSource,
+                              @Value("${import.swap.min-row-ratio:0.9}") double minRowRatio) {
+        this.dataSource = dataSource;
+        this.minRowRatio = minRowRatio;
+    }
+
+    /**
+     * 删除残留的暂存 schema，按正式表结构重建空表
+     * @throws IllegalStateException 导入进程的连接没有指向暂存 schema 时（导入会直接写正式表）
+     */
+    public void prepareStaging() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            inTransaction(connection, () -> {
+                try (Statement statement = connection.createStatement()) {
+                    // 以 public 解析外键定义，生成的引用表名不带 schema，随后在暂存 schema 中重新解析
+                    statement.execute("SET LOCAL search_path TO " + LIVE_SCHEMA);
+                    statement.execute("DROP SCHEMA IF EXISTS " + STAGING_SCHEMA + " CASCADE");
+                    List<String[]> foreignKeys = query(connection, FIND_FOREIGN_KEYS);
+                    List<String[]> serialColumns = query(connection, FIND_SERIAL_COLUMNS);
+
+                    statement.execute("CREATE SCHEMA " + STAGING_SCHEMA);
+                    for (String table : SWAPPED_TABLES) {
+                        statement.execute("CREATE TABLE " + staging(table)
+                                + " (LIKE " + live(table) + " INCLUDING ALL)");
+                    }
+                    // LIKE 复制的默认值仍指向正式表的序列，切换后会跨 schema 依赖，这里换成暂存 schema 自己的序列
+                    for (String[] column : serialColumns) {
+                        String sequence = STAGING_SCHEMA + "." + quote(column[0] + "_" + column[1] + "_seq");
+                        statement.execute("CREATE SEQUENCE " + sequence
+                                + " OWNED BY " + staging(column[0]) + "." + quote(column[1]));
+                        statement.execute("ALTER TABLE " + staging(column[0]) + " ALTER COLUMN " + quote(column[1])
+                                + " SET DEFAULT nextval('" + sequence.replace("'", "''") + "')");
+                    }
+                    // LIKE 不复制外键
+                    statement.execute("SET LOCAL search_path TO " + STAGING_SCHEMA);
+                    for (String[] foreignKey : foreignKeys) {
+                        statement.execute("ALTER TABLE " + staging(foreignKey[0]) + " ADD CONSTRAINT "
+                                + quote(foreignKey[1]) + " " + foreignKey[2]);
+                    }
+                }
+            });
+        }
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT current_schema()")) {
+            rs.next();
+            if (!STAGING_SCHEMA.equals(rs.getString(1))) {
+                throw new IllegalStateException("Import connections resolve to schema '" + rs.getString(1)
+                        + "' instead of " + STAGING_SCHEMA + "; start the importer with --import.swap=true");
+            }
+        }
+        log.info("Prepared staging schema {} ({} tables)", STAGING_SCHEMA, SWAPPED_TABLES.size());
+    }
+
+    /**
+     * 校验暂存数据的行数，通过后原子地切换为正式数据
+     * @throws IllegalStateException 校验不通过时（正式数据不变，暂存 schema 保留以便排查）
+     */
+    public void swap() throws SQLException {
+        Map<String, long[]> counts = countRows();
+        counts.forEach((table, count) ->
+                log.info("Swap check {}: live={}, staging={}", table, count[0], count[1]));
+
+        long[] questions = counts.get("questions");
+        if (questions[1] == 0) {
+            throw new IllegalStateException("Staging schema has no questions, keeping the live dataset");
+        }
+        if (questions[1] < questions[0] * minRowRatio) {
+            throw new IllegalStateException("Staging schema has " + questions[1] + " questions, less than "
+                    + minRowRatio + " of the live " + questions[0] + "; keeping the live dataset");
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            inTransaction(connection, () -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("DROP SCHEMA IF EXISTS " + PREVIOUS_SCHEMA + " CASCADE");
+                    statement.execute("CREATE SCHEMA " + PREVIOUS_SCHEMA);
+                    lockAll(statement, LIVE_SCHEMA);
+                    moveAll(statement, LIVE_SCHEMA, PREVIOUS_SCHEMA);
+                    moveAll(statement, STAGING_SCHEMA, LIVE_SCHEMA);
+                    statement.execute("DROP SCHEMA " + STAGING_SCHEMA);
+                }
+            });
+        }
+        log.info("Swapped staging dataset into {}; previous dataset kept in {}", LIVE_SCHEMA, PREVIOUS_SCHEMA);
+    }
+
+    /**
+     * 把 import_previous 中的上一代数据换回正式 schema（当前数据换入 import_previous，可再次回滚）
+     */
+    public void rollback() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            inTransaction(connection, () -> {
+                try (Statement statement = connection.createStatement()) {
+                    for (String table : SWAPPED_TABLES) {
+                        if (!tableExists(connection, PREVIOUS_SCHEMA, table)) {
+                            throw new IllegalStateException("No previous dataset to roll back to: "
+                                    + PREVIOUS_SCHEMA + "." + table + " does not exist");
+                        }
+                    }
+                    statement.execute("DROP SCHEMA IF EXISTS " + STAGING_SCHEMA + " CASCADE");
+                    statement.execute("CREATE SCHEMA " + STAGING_SCHEMA);
+                    lockAll(statement, LIVE_SCHEMA);
+                    moveAll(statement, LIVE_SCHEMA, STAGING_SCHEMA);
+                    moveAll(statement, PREVIOUS_SCHEMA, LIVE_SCHEMA);
+                    moveAll(statement, STAGING_SCHEMA, PREVIOUS_SCHEMA);
+                    statement.execute("DROP SCHEMA " + STAGING_SCHEMA);
+                }
+            });
+        }
+        log.info("Rolled back to the previous dataset; the replaced dataset is now in {}", PREVIOUS_SCHEMA);
+    }
+
+    private Map<String, long[]> countRows() throws SQLException {
+        Map<String, long[]> counts = new LinkedHashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String table : SWAPPED_TABLES) {
+                counts.put(table, new long[]{
+                        count(statement, LIVE_SCHEMA + "." + quote(table)),
+                        count(statement, staging(table))
+                });
+            }
+        }
+        return counts;
+    }
+
+    private static long count(Statement statement, String qualifiedTable) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + qualifiedTable)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * 一次性对所有正式表加排他锁，避免逐表加锁时与持有多张表共享锁的读者死锁
+     */
+    private static void lockAll(Statement statement, String schema) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        for (String table : SWAPPED_TABLES) {
+            tables.add(schema + "." + quote(table));
+        }
+        statement.execute("LOCK TABLE " + String.join(", ", tables) + " IN ACCESS EXCLUSIVE MODE");
+    }
+
+    /**
+     * ALTER TABLE ... SET SCHEMA 会连同索引、约束与所属序列一起移动
+     */
+    private static void moveAll(Statement statement, String from, String to) throws SQLException {
+        for (String table : SWAPPED_TABLES) {
+            statement.execute("ALTER TABLE " + from + "." + quote(table) + " SET SCHEMA " + to);
+        }
+    }
+
+    private static boolean tableExists(Connection connection, String schema, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM information_schema.tables WHERE table_schema = ? AND table_name = ?")) {
+            statement.setString(1, schema);
+            statement.setString(2, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static List<String[]> query(Connection connection, String sql) throws SQLException {
+        List<String[]> rows = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, LIVE_SCHEMA);
+            statement.setArray(2, connection.createArrayOf("text", SWAPPED_TABLES.toArray()));
+            try (ResultSet rs = statement.executeQuery()) {
+                int columns = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    String[] row = new String[columns];
+                    for (int i = 0; i < columns; i++) {
+                        row[i] = rs.getString(i + 1);
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void inTransaction(Connection connection, SqlWork work) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            work.run();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static String staging(String table) {
+        return STAGING_SCHEMA + "." + quote(table);
+    }
+
+    private static String live(String table) {
+        return LIVE_SCHEMA + "." + quote(table);
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+}
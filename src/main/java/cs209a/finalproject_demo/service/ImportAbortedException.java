@@ -0,0 +1,14 @@
+package cs209a.finalproject_demo.service;
+
+/**
+ * 写入因数据库不可用等基础设施故障失败，导入整体中止
+ *
+ * 与单条数据的错误不同，这类失败与数据无关，批次二分与隔离都没有意义：
+ * 数据源留在原处、不登记为失败，恢复后重新运行即可从导入清单处继续。
+ */
+public class ImportAbortedException extends RuntimeException {
+
+    public ImportAbortedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
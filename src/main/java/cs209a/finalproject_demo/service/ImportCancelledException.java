@@ -0,0 +1,11 @@
+package cs209a.finalproject_demo.service;
+
+/**
+ * 导入已被取消（见 {@link ImportResult#cancel()}），用于中止正在顺序读取的归档
+ */
+class ImportCancelledException extends RuntimeException {
+
+    ImportCancelledException() {
+        super("Import cancelled");
+    }
+}
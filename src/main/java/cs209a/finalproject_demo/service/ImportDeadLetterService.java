@@ -0,0 +1,297 @@
+package cs209a.finalproject_demo.service;
+
+import cs209a.finalproject_demo.dataset.ThreadFileLoader;
+import cs209a.finalproject_demo.entity.ImportErrorEntity;
+import cs209a.finalproject_demo.entity.ImportManifestEntity;
+import cs209a.finalproject_demo.repository.ImportErrorRepository;
+import cs209a.finalproject_demo.repository.ImportManifestRepository;
+import jakarta.persistence.PersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 导入死信服务：被拒绝的数据源登记到错误台账并移入隔离目录，之后可以只重放隔离的数据
+ *
+ * 每次拒绝做三件事：
+ * 1. 导入清单记为 FAILED（与原来一样，下次全量运行仍会重试）
+ * 2. 错误台账 import_errors 增加一行：来源、question_id、阶段、异常类与消息，持久保存
+ * 3. 隔离：单个文件直接移入隔离目录；归档中的记录无法单独移动，
+ *    解析阶段已有原始字节时直接写出，之后阶段被拒绝的记录先登记，导入结束时按归档顺序读取一遍统一提取
+ *
+ * 重放（{@link #replay}）把隔离目录当作普通导入目录交给任意引擎，
+ * 导入清单中已为 IMPORTED 的副本删除，对应的台账记录标记为已解决；再次失败的副本留在原处，台账增加新的记录。
+ * 错误详情保存在台账中，{@link ImportResult} 只保留前若干条消息，内存占用不随失败数量增长。
+ *
+ * 只有单条数据本身的错误才拒绝（见 {@link #isRecordError}）；数据库连接中断、连接池超时等故障
+ * 由调用方中止导入（{@link ImportAbortedException}），数据源留在原处，不会因为一次故障被整体移入隔离目录。
+ */
+@Service
+public class ImportDeadLetterService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportDeadLetterService.class);
+
+    /**
+     * 数据源被拒绝时所处的阶段
+     */
+    public enum Stage {
+        READ,   // 读取文件或归档失败
+        PARSE,  // JSON 解析失败
+        MAP,    // 映射为实体失败
+        WRITE   // 写入数据库失败（批次二分后单独失败）
+    }
+
+    private final ImportManifestService manifestService;
+    private final ImportManifestRepository manifestRepository;
+    private final ImportErrorRepository errorRepository;
+    private final ThreadFileLoader fileLoader;
+    private final Path quarantineDirectory;
+    private final boolean quarantineEnabled;
+
+    // 归档路径 → 待提取的记录名（导入结束时由 flushPending 统一提取）
+    private final Map<Path, Set<String>> pendingRecords = new HashMap<>();
+
+    public ImportDeadLetterService(ImportManifestService manifestService,
+                                   ImportManifestRepository manifestRepository,
+                                   ImportErrorRepository errorRepository,
+                                   ThreadFileLoader fileLoader,
+                                   @Value("${import.quarantine.directory:import-quarantine}") String quarantineDirectory,
+                                   @Value("${import.quarantine.enabled:true}") boolean quarantineEnabled) {
+        this.manifestService = manifestService;
+        this.manifestRepository = manifestRepository;
+        this.errorRepository = errorRepository;
+        this.fileLoader = fileLoader;
+        this.quarantineDirectory = Paths.get(quarantineDirectory).toAbsolutePath().normalize();
+        this.quarantineEnabled = quarantineEnabled;
+    }
+
+    /**
+     * 判断写入失败是否由这条数据本身引起（重试同样会失败，应当拒绝并隔离）
+     *
+     * 1. 完整性约束或数据异常（DataIntegrityViolationException、SQLState 22xxx / 23xxx）：是
+     * 2. 其他数据库、事务或 I/O 异常（连接 08xxx、连接池超时、事务无法开始、COPY 流中断等）：否
+     * 3. 与数据库无关的异常（映射时的空值等）：是
+     */
+    static boolean isRecordError(Throwable error) {
+        boolean infrastructure = false;
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException sql && sql.getSQLState() != null
+                    && (sql.getSQLState().startsWith("22") || sql.getSQLState().startsWith("23"))) {
+                return true;
+            }
+            if (cause instanceof DataAccessException || cause instanceof TransactionException
+                    || cause instanceof SQLException || cause instanceof PersistenceException
+                    || cause instanceof IOException) {
+                infrastructure = true;
+            }
+        }
+        return !infrastructure;
+    }
+
+    public Path getQuarantineDirectory() {
+        return quarantineDirectory;
+    }
+
+    /**
+     * 拒绝一条已读入内容的数据源（解析阶段）
+     */
+    void reject(Stage stage, ImportManifestService.FileStat stat, String contentHash, byte[] content,
+                String message, Throwable error) {
+        manifestService.markFailed(stat.manifestKey(), stat.size(), stat.modifiedAt(), contentHash, null, message);
+        record(stage, stat.manifestKey(), null, message, error, quarantine(stat.manifestKey(), content));
+    }
+
+    /**
+     * 拒绝一个已解析的 thread（映射或写入阶段）
+     */
+    void reject(Stage stage, ImportedFile file, String message, Throwable error) {
+        manifestService.markFailed(file, message);
+        record(stage, file.manifestKey(), file.questionId(), message, error, quarantine(file.manifestKey(), null));
+    }
+
+    /**
+     * 登记无法读取的文件或归档（只记台账，不隔离：读取失败的归档可能已部分导入）
+     */
+    void rejectSource(Path source, Throwable error) {
+        record(Stage.READ, ImportManifestService.manifestKey(source), null, error.getMessage(), error, null);
+    }
+
+    /**
+     * 提取导入过程中登记的归档记录到隔离目录（每个归档顺序读取一遍）
+     */
+    void flushPending() {
+        Map<Path, Set<String>> pending;
+        synchronized (pendingRecords) {
+            if (pendingRecords.isEmpty()) {
+                return;
+            }
+            pending = new HashMap<>(pendingRecords);
+            pendingRecords.clear();
+        }
+        for (Map.Entry<Path, Set<String>> entry : pending.entrySet()) {
+            Path archive = entry.getKey();
+            Set<String> recordNames = entry.getValue();
+            String archiveKey = ImportManifestService.manifestKey(archive);
+            try {
+                fileLoader.readRecords(archive, (recordName, content) -> {
+                    if (recordNames.remove(recordName)) {
+                        String recordKey = ImportManifestService.recordKey(archiveKey, recordName);
+                        Path target = writeQuarantined(archive.getFileName() + "!" + recordName, content);
+                        errorRepository.setQuarantinePath(recordKey, ImportManifestService.manifestKey(target));
+                    }
+                });
+                if (!recordNames.isEmpty()) {
+                    log.warn("{} rejected record(s) no longer found in {}", recordNames.size(), archive.getFileName());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while quarantining records from {}", archive.getFileName());
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to quarantine records from {}: {}", archive.getFileName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 重放隔离目录：只导入被隔离的数据源，成功的副本删除并把台账记录标记为已解决
+     */
+    public ImportResult replay(ImportEngine engine) {
+        ImportResult result;
+        if (!Files.isDirectory(quarantineDirectory)) {
+            log.info("Quarantine directory {} does not exist, nothing to replay", quarantineDirectory);
+            result = new ImportResult(engine.getName());
+            result.finish();
+            return result;
+        }
+        log.info("Replaying quarantined sources from {} ({} unresolved errors in ledger)",
+                quarantineDirectory, errorRepository.countByResolvedAtIsNull());
+        result = engine.importFromDirectory(quarantineDirectory.toString());
+
+        int resolved = 0;
+        int remaining = 0;
+        Instant now = Instant.now();
+        try (Stream<Path> files = Files.list(quarantineDirectory)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String key = ImportManifestService.manifestKey(file);
+                boolean imported = manifestRepository.findById(key)
+                        .map(entry -> ImportManifestEntity.STATUS_IMPORTED.equals(entry.getStatus()))
+                        .orElse(false);
+                if (!imported) {
+                    remaining++;
+                    continue;
+                }
+                errorRepository.markResolved(key, now);
+                Files.deleteIfExists(file);
+                resolved++;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up quarantine directory {}: {}", quarantineDirectory, e.getMessage());
+        }
+        log.info("Replay resolved {} quarantined source(s), {} remain in {}", resolved, remaining, quarantineDirectory);
+        return result;
+    }
+
+    /**
+     * 写入一条台账记录；写入失败只打日志，不影响导入流程
+     */
+    private void record(Stage stage, String sourceKey, Long questionId, String message, Throwable error,
+                        Path quarantined) {
+        try {
+            errorRepository.save(new ImportErrorEntity(sourceKey, questionId, stage.name(),
+                    error != null ? error.getClass().getName() : null, message,
+                    quarantined != null ? ImportManifestService.manifestKey(quarantined) : null, Instant.now()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to record import error for {}: {}", sourceKey, e.getMessage());
+        }
+    }
+
+    /**
+     * 隔离一个数据源，返回隔离副本；归档记录没有原始字节时登记待提取，返回 null
+     */
+    private Path quarantine(String sourceKey, byte[] content) {
+        if (!quarantineEnabled) {
+            return null;
+        }
+        try {
+            Path source = Paths.get(sourceKey);
+            if (source.startsWith(quarantineDirectory)) {
+                // 重放时再次失败：副本留在原处
+                return source;
+            }
+            if (Files.isRegularFile(source)) {
+                return moveQuarantined(source);
+            }
+            int separator = sourceKey.indexOf('!');
+            if (separator < 0) {
+                return null;
+            }
+            Path archive = Paths.get(sourceKey.substring(0, separator));
+            String recordName = sourceKey.substring(separator + 1);
+            if (content != null) {
+                return writeQuarantined(archive.getFileName() + "!" + recordName, content);
+            }
+            synchronized (pendingRecords) {
+                pendingRecords.computeIfAbsent(archive, key -> new HashSet<>()).add(recordName);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to quarantine {}: {}", sourceKey, e.getMessage());
+        }
+        return null;
+    }
+
+    private Path moveQuarantined(Path source) throws IOException {
+        Files.createDirectories(quarantineDirectory);
+        String name = source.getFileName().toString();
+        for (int attempt = 0; ; attempt++) {
+            Path target = quarantineDirectory.resolve(attempt == 0 ? name : attempt + "-" + name);
+            try {
+                Files.move(source, target);
+                log.info("Quarantined {} -> {}", source.getFileName(), target.getFileName());
+                return target;
+            } catch (FileAlreadyExistsException e) {
+                // 同名文件已被隔离，换一个名字
+            }
+        }
+    }
+
+    /**
+     * 把归档中的一条记录写成隔离目录中的单个 JSON 文件（文件名由归档名与记录名组成）
+     */
+    private Path writeQuarantined(String recordName, byte[] content) throws IOException {
+        Files.createDirectories(quarantineDirectory);
+        String name = recordName.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (!name.endsWith(".json")) {
+            name = name + ".json";
+        }
+        Path target = quarantineDirectory.resolve(name);
+        Path temp = Files.createTempFile(quarantineDirectory, ".record-", ".tmp");
+        Files.write(temp, content, StandardOpenOption.TRUNCATE_EXISTING);
+        // 同一条记录再次被拒绝时覆盖之前的副本
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Quarantined record {} -> {}", recordName, target.getFileName());
+        return target;
+    }
+}
@@ -0,0 +1,45 @@
+package cs209a.finalproject_demo.service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 导入引擎：把目录中的 thread JSON 文件导入数据库
+ *
+ * 可选实现：
+ * - thread：每个 thread 一个事务（{@link DataImportService}）
+ * - batched：流水线 + 批量 saveAll（{@link DataImportServiceOptimized}，JPA 写入端）
+ * - bulk：流水线 + PostgreSQL COPY（{@link DataImportServiceOptimized}，COPY 写入端）
+ *
+ * 所有引擎返回相同的 {@link ImportResult}，导入报告格式一致，可直接比较。
+ */
+public interface ImportEngine {
+
+    /**
+     * 引擎名称（命令行 --import.engine 的取值）
+     */
+    String getName();
+
+    /**
+     * 导入指定目录，返回结果时已调用 {@link ImportResult#finish()}
+     */
+    default ImportResult importFromDirectory(String directoryPath) {
+        return importFromDirectory(directoryPath, new ImportResult(getName()));
+    }
+
+    /**
+     * 导入指定目录，统计写入调用方提供的结果对象（可在导入过程中读取进度或请求取消）
+     */
+    ImportResult importFromDirectory(String directoryPath, ImportResult result);
+
+    /**
+     * 按名称选择引擎（忽略大小写）
+     */
+    static ImportEngine byName(List<ImportEngine> engines, String name) {
+        return engines.stream()
+                .filter(engine -> engine.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown import engine '" + name
+                        + "', available: " + engines.stream().map(ImportEngine::getName).collect(Collectors.joining(", "))));
+    }
+}
@@ -0,0 +1,340 @@
+package cs209a.finalproject_demo.service;
+
+import cs209a.finalproject_demo.dto.ImportJobResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后台导入任务管理：在运行中的 Web 应用里启动、取消与查询导入，并通过 SSE 推送进度
+ *
+ * 同一时间只运行一个导入任务（在 importJobExecutor 中执行）；取消是协作式的，
+ * 见 {@link ImportResult#cancel()}，已在途的批次照常提交，再次导入时由导入清单从中断处继续。
+ * 进度按固定间隔采样，速度取最近一个采样区间的增量，预计剩余时间按当前处理速度估算。
+ */
+@Service
+public class ImportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportJobService.class);
+
+    private static final int RETAINED_JOBS = 20;
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private final List<ImportEngine> importEngines;
+    private final SolvabilitySketchService sketchService;
+    private final ExecutorService jobExecutor;
+    private final ScheduledExecutorService progressScheduler;
+    private final Path importRoot;
+    private final long progressIntervalMillis;
+    private final long sseTimeoutMillis;
+
+    // 按提交顺序保存最近的任务（访问时加锁）
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>();
+
+    public ImportJobService(List<ImportEngine> importEngines,
+                            SolvabilitySketchService sketchService,
+                            @Qualifier("importJobExecutor") ExecutorService jobExecutor,
+                            @Qualifier("importProgressScheduler") ScheduledExecutorService progressScheduler,
+                            @Value("${import.jobs.root:.}") String importRoot,
+                            @Value("${import.jobs.progress-interval-ms:1000}") long progressIntervalMillis,
+                            @Value("${import.jobs.sse-timeout-ms:1800000}") long sseTimeoutMillis) {
+        this.importEngines = importEngines;
+        this.sketchService = sketchService;
+        this.jobExecutor = jobExecutor;
+        this.progressScheduler = progressScheduler;
+        this.importRoot = Paths.get(importRoot).toAbsolutePath().normalize();
+        this.progressIntervalMillis = Math.max(100, progressIntervalMillis);
+        this.sseTimeoutMillis = sseTimeoutMillis;
+    }
+
+    /**
+     * 启动导入任务
+     * @throws IllegalArgumentException 引擎名称无效或目录不存在/不在允许的根目录下
+     * @throws IllegalStateException 已有导入任务在运行
+     */
+    public synchronized ImportJobResponse start(String engineName, String directory) {
+        ImportEngine engine = ImportEngine.byName(importEngines, engineName);
+        Path folder = resolveDirectory(directory);
+        for (ImportJob job : jobs.values()) {
+            if (job.isActive()) {
+                throw new IllegalStateException("Import job " + job.id + " is still " + job.status);
+            }
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), engine.getName(), folder.toString());
+        jobs.put(job.id, job);
+        evictFinishedJobs();
+
+        job.ticker = progressScheduler.scheduleAtFixedRate(job::publishProgress,
+                progressIntervalMillis, progressIntervalMillis, TimeUnit.MILLISECONDS);
+        jobExecutor.execute(() -> run(job, engine));
+        log.info("Submitted import job {} (engine {}, directory {})", job.id, job.engine, job.directory);
+        return job.toResponse();
+    }
+
+    /**
+     * 请求取消任务
+     * @throws NoSuchElementException 任务不存在
+     */
+    public ImportJobResponse cancel(String jobId) {
+        ImportJob job = find(jobId);
+        if (job.isActive()) {
+            log.info("Cancelling import job {}", jobId);
+            job.result.cancel();
+        }
+        return job.toResponse();
+    }
+
+    /**
+     * @throws NoSuchElementException 任务不存在
+     */
+    public ImportJobResponse get(String jobId) {
+        return find(jobId).toResponse();
+    }
+
+    /**
+     * 最近的任务（新任务在前）
+     */
+    public synchronized List<ImportJobResponse> list() {
+        List<ImportJobResponse> responses = new ArrayList<>();
+        for (ImportJob job : jobs.values()) {
+            responses.add(0, job.toResponse());
+        }
+        return responses;
+    }
+
+    /**
+     * 订阅任务进度：立即发送一次当前进度，之后每个采样间隔发送 progress 事件，结束时发送 done 事件并关闭
+     * @throws NoSuchElementException 任务不存在（在创建 SseEmitter 之前抛出）
+     */
+    public SseEmitter subscribe(String jobId) {
+        ImportJob job = find(jobId);
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        emitter.onCompletion(() -> job.emitters.remove(emitter));
+        emitter.onTimeout(() -> job.emitters.remove(emitter));
+        emitter.onError(e -> job.emitters.remove(emitter));
+        job.emitters.add(emitter);
+        if (!job.send(emitter, "progress", job.toResponse())) {
+            return emitter;
+        }
+        // 订阅时任务已结束（或恰好在此期间结束）：直接补发结束事件
+        if (!job.isActive() && job.emitters.remove(emitter)) {
+            job.send(emitter, "done", job.toResponse());
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    private void run(ImportJob job, ImportEngine engine) {
+        job.startedAt = Instant.now();
+        job.status = Status.RUNNING;
+        try {
+            engine.importFromDirectory(job.directory, job.result);
+            // 取消时已提交的数据同样需要反映到草图中
+            sketchService.rebuild();
+            if (job.result.isAborted()) {
+                job.finish(Status.FAILED, job.result.getAbortReason());
+            } else {
+                job.finish(job.result.isCancelled() ? Status.CANCELLED : Status.SUCCEEDED, null);
+            }
+        } catch (Exception e) {
+            log.error("Import job {} failed: {}", job.id, e.getMessage(), e);
+            job.finish(Status.FAILED, e.getMessage());
+        } finally {
+            // Error（如 OutOfMemoryError）不经过上面的 catch：任务仍须结束，否则一直占用运行名额并继续采样
+            if (job.isActive()) {
+                log.error("Import job {} terminated unexpectedly", job.id);
+                job.finish(Status.FAILED, "Import job terminated unexpectedly");
+            }
+            job.result.logReport(log);
+        }
+    }
+
+    private synchronized ImportJob find(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new NoSuchElementException("Import job not found: " + jobId);
+        }
+        return job;
+    }
+
+    private void evictFinishedJobs() {
+        Iterator<ImportJob> iterator = jobs.values().iterator();
+        while (jobs.size() > RETAINED_JOBS && iterator.hasNext()) {
+            if (!iterator.next().isActive()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 解析导入目录：必须是 import.jobs.root 下已存在的目录，避免通过接口读取任意路径
+     * @throws IllegalArgumentException 目录不存在或不在允许的根目录下
+     */
+    public Path resolveDirectory(String directory) {
+        Path folder = importRoot.resolve(directory).normalize();
+        if (!folder.startsWith(importRoot)) {
+            throw new IllegalArgumentException("Import directory must be inside " + importRoot);
+        }
+        if (!Files.isDirectory(folder)) {
+            throw new IllegalArgumentException("Import directory not found: " + directory);
+        }
+        return folder;
+    }
+
+    /**
+     * 一个导入任务及其进度采样状态
+     */
+    private static final class ImportJob {
+        private final String id;
+        private final String engine;
+        private final String directory;
+        private final ImportResult result;
+        private final Instant submittedAt = Instant.now();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        private volatile Status status = Status.QUEUED;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile String error;
+        private volatile ScheduledFuture<?> ticker;
+
+        // 最近一个采样区间的速度（由 sample 更新）
+        private long lastSampleNanos = System.nanoTime();
+        private long lastSuccess;
+        private long lastProcessed;
+        private Map<String, Long> lastRows = Map.of();
+        private volatile double threadsPerSecond;
+        private volatile double processedPerSecond;
+        private volatile Map<String, Double> rowsPerSecond = Map.of();
+
+        private ImportJob(String id, String engine, String directory) {
+            this.id = id;
+            this.engine = engine;
+            this.directory = directory;
+            this.result = new ImportResult(engine);
+        }
+
+        boolean isActive() {
+            return status == Status.QUEUED || status == Status.RUNNING;
+        }
+
+        /**
+         * 定时采样并推送给所有订阅者
+         */
+        void publishProgress() {
+            sample();
+            ImportJobResponse response = toResponse();
+            for (SseEmitter emitter : emitters) {
+                send(emitter, "progress", response);
+            }
+        }
+
+        void finish(Status finalStatus, String failure) {
+            ScheduledFuture<?> currentTicker = ticker;
+            if (currentTicker != null) {
+                currentTicker.cancel(false);
+            }
+            sample();
+            error = failure;
+            finishedAt = Instant.now();
+            status = finalStatus;
+            ImportJobResponse response = toResponse();
+            for (SseEmitter emitter : emitters) {
+                if (emitters.remove(emitter) && send(emitter, "done", response)) {
+                    emitter.complete();
+                }
+            }
+        }
+
+        /**
+         * 发送一个事件；连接已断开时移除订阅者并返回 false
+         */
+        boolean send(SseEmitter emitter, String eventName, ImportJobResponse response) {
+            try {
+                emitter.send(SseEmitter.event().name(eventName).data(response));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+                return false;
+            }
+        }
+
+        private synchronized void sample() {
+            long now = System.nanoTime();
+            double seconds = (now - lastSampleNanos) / 1e9;
+            if (seconds <= 0) {
+                return;
+            }
+            long success = result.getSuccessCount();
+            long processed = result.getProcessedCount();
+            Map<String, Long> rows = result.getRowCounts();
+            Map<String, Double> rates = new LinkedHashMap<>();
+            rows.forEach((table, count) -> rates.put(table, (count - lastRows.getOrDefault(table, 0L)) / seconds));
+
+            threadsPerSecond = (success - lastSuccess) / seconds;
+            processedPerSecond = (processed - lastProcessed) / seconds;
+            rowsPerSecond = rates;
+            lastSampleNanos = now;
+            lastSuccess = success;
+            lastProcessed = processed;
+            lastRows = rows;
+        }
+
+        ImportJobResponse toResponse() {
+            long processed = result.getProcessedCount();
+            long expected = result.getExpectedItems();
+            Long eta = null;
+            if (expected >= 0 && processedPerSecond > 0 && isActive()) {
+                eta = Math.round(Math.max(0, expected - processed) / processedPerSecond);
+            }
+            return new ImportJobResponse(
+                    id,
+                    engine,
+                    directory,
+                    status.name(),
+                    submittedAt,
+                    startedAt,
+                    finishedAt,
+                    processed,
+                    expected >= 0 ? expected : null,
+                    result.getSuccessCount(),
+                    result.getFailedCount(),
+                    result.getSkippedCount(),
+                    result.getUnchangedCount(),
+                    threadsPerSecond,
+                    result.getRowCounts(),
+                    rowsPerSecond,
+                    result.getBatchSizeRows(),
+                    eta,
+                    result.getErrorCount(),
+                    error
+            );
+        }
+    }
+}
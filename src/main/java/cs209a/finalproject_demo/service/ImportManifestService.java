@@ -0,0 +1,168 @@
+package cs209a.finalproject_demo.service;
+
+import cs209a.finalproject_demo.entity.ImportManifestEntity;
+import cs209a.finalproject_demo.repository.ImportManifestRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * 导入清单服务：记录每个数据文件的导入状态，支持增量与可恢复导入
+ *
+ * 判断文件是否需要重新导入分两步：
+ * 1. 大小与修改时间都与清单一致 → 直接跳过，不读取文件
+ *    （归档中的记录以“归档路径!记录名”为键，大小为记录字节数，修改时间取归档文件的修改时间）
+ * 2. 否则读取文件计算内容哈希，哈希一致（只是被 touch 过）→ 跳过，不解析
+ * 其余文件正常导入，已存在的数据按主键更新（JPA merge / COPY 的 ON CONFLICT DO UPDATE）。
+ *
+ * 批量导入时 IMPORTED 记录与该批数据在同一事务中写入，崩溃或中断后重新运行即从最后提交的批次继续。
+ * FAILED 记录只用于排查，下次运行会重新尝试。
+ */
+@Service
+public class ImportManifestService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportManifestService.class);
+
+    private final ImportManifestRepository manifestRepository;
+
+    public ImportManifestService(ImportManifestRepository manifestRepository) {
+        this.manifestRepository = manifestRepository;
+    }
+
+    /**
+     * 加载已导入文件的清单快照（一次导入运行期间只读，可被多个线程共享）
+     */
+    public Snapshot snapshot() {
+        Map<String, ImportManifestEntity> imported = new HashMap<>();
+        for (ImportManifestEntity entry : manifestRepository.findByStatus(ImportManifestEntity.STATUS_IMPORTED)) {
+            imported.put(entry.getFilePath(), entry);
+        }
+        log.info("Import manifest: {} files previously imported", imported.size());
+        return new Snapshot(imported);
+    }
+
+    /**
+     * 构造 IMPORTED 清单记录（由调用方与批次数据一起保存）
+     */
+    ImportManifestEntity importedEntry(ImportedFile file) {
+        return new ImportManifestEntity(file.manifestKey(), file.size(), file.modifiedAt(), file.contentHash(),
+                ImportManifestEntity.STATUS_IMPORTED, file.questionId(), Instant.now(), null);
+    }
+
+    /**
+     * 单独记录一个导入成功的文件（逐条导入时使用）
+     */
+    void markImported(ImportedFile file) {
+        manifestRepository.save(importedEntry(file));
+    }
+
+    /**
+     * 记录导入失败的文件；记录失败只打日志，不影响导入流程
+     */
+    void markFailed(ImportedFile file, String error) {
+        markFailed(file.manifestKey(), file.size(), file.modifiedAt(), file.contentHash(), file.questionId(), error);
+    }
+
+    void markFailed(String manifestKey, long size, Instant modifiedAt, String contentHash, Long questionId,
+                    String error) {
+        try {
+            manifestRepository.save(new ImportManifestEntity(manifestKey, size, modifiedAt, contentHash,
+                    ImportManifestEntity.STATUS_FAILED, questionId, Instant.now(), error));
+        } catch (RuntimeException e) {
+            log.warn("Failed to record manifest failure for {}: {}", manifestKey, e.getMessage());
+        }
+    }
+
+    /**
+     * 清空清单（清库后必须调用，否则下次导入会跳过所有文件）
+     */
+    public void clear() {
+        manifestRepository.deleteAllInBatch();
+    }
+
+    /**
+     * 清单主键：规范化的绝对路径
+     */
+    static String manifestKey(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * 归档中一条记录的清单键：归档路径!记录名（zip 条目名和/或行号）
+     */
+    static String recordKey(String archiveKey, String recordName) {
+        return recordName.isEmpty() ? archiveKey : archiveKey + "!" + recordName;
+    }
+
+    /**
+     * 读取文件属性，修改时间截断到微秒（数据库 timestamp 的精度）
+     */
+    static FileStat stat(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new FileStat(manifestKey(file), attributes.size(),
+                attributes.lastModifiedTime().toInstant().truncatedTo(ChronoUnit.MICROS));
+    }
+
+    /**
+     * 文件内容的 SHA-256（十六进制）
+     */
+    static String contentHash(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 文件的清单键、大小与修改时间
+     */
+    record FileStat(String manifestKey, long size, Instant modifiedAt) {
+    }
+
+    /**
+     * 已导入文件的清单快照
+     */
+    public static final class Snapshot {
+        private final Map<String, ImportManifestEntity> imported;
+
+        private Snapshot(Map<String, ImportManifestEntity> imported) {
+            this.imported = imported;
+        }
+
+        /**
+         * 大小与修改时间都未变化
+         */
+        boolean isUnchanged(FileStat stat) {
+            ImportManifestEntity entry = imported.get(stat.manifestKey());
+            return entry != null
+                    && entry.getFileSize() == stat.size()
+                    && stat.modifiedAt().equals(entry.getModifiedAt());
+        }
+
+        /**
+         * 内容哈希未变化
+         */
+        boolean hasContent(String manifestKey, String contentHash) {
+            ImportManifestEntity entry = imported.get(manifestKey);
+            return entry != null && contentHash.equals(entry.getContentHash());
+        }
+
+        public int size() {
+            return imported.size();
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package cs209a.finalproject_demo.service;
+
+import cs209a.finalproject_demo.dataset.ThreadFileLoader;
+import cs209a.finalproject_demo.model.QuestionThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 分阶段并行导入流水线
+ *
+ * 文件列举 → N 个解析线程 → 实体映射 → 数据库写入，阶段之间用有界队列连接：
+ * 1. 背压：下游跟不上时上游阻塞在 put 上，内存占用取决于队列容量而不是文件数量
+ * 2. 重叠：JSON 解析（CPU）与数据库往返（IO）同时进行，总耗时趋近 max(解析, 写入)
+ * 3. 统计：每个阶段记录处理数量、忙碌时间与吞吐量
+ *
+ * 实体映射阶段是单线程的：用户/标签缓存只在该线程中读写，新建实体的去重不需要加锁。
+ * 批次按行数与字节数切分，预算由 {@link AdaptiveBatchSizer} 根据写入阶段反馈的提交耗时与堆占用动态调整。
+ *
+ * 归档数据源（NDJSON、gzip、zip）由列举阶段顺序读取一遍，按记录放入队列，解析仍由多个线程并行完成，
+ * 见 {@link ThreadFileLoader#readRecords}。
+ *
+ * 增量导入：列举阶段跳过大小与修改时间都与导入清单一致的文件，解析阶段跳过内容哈希一致的文件，
+ * 见 {@link ImportManifestService}。解析失败的数据源登记到错误台账并隔离，见 {@link ImportDeadLetterService}。
+ *
+ * @param <B> 映射阶段产出、写入阶段消费的批次类型
+ */
+final class ImportPipeline<B> {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportPipeline.class);
+
+    // 各阶段的结束标记（按引用比较）
+    private static final SourceItem END_OF_FILES = new SourceItem(null, null, null);
+    private static final ParsedThread END_OF_THREADS = new ParsedThread(null);
+
+    // 阻塞在队列上的线程每隔这么久检查一次流水线是否已停止
+    private static final long QUEUE_POLL_MILLIS = 500;
+
+    /**
+     * 将一批 thread 映射为待写入的批次；返回 null 表示该批没有可写入的数据
+     */
+    interface BatchMapper<B> {
+        B map(List<ImportedFile> files);
+    }
+
+    /**
+     * 将一个批次写入数据库
+     */
+    interface BatchWriter<B> {
+        void write(B batch, int threadCount);
+    }
+
+    private final ThreadFileLoader fileLoader;
+    private final ImportDeadLetterService deadLetters;
+    private final ImportManifestService.Snapshot manifest;
+    private final BatchMapper<B> mapper;
+    private final BatchWriter<B> writer;
+    private final ImportResult result;
+    private final AdaptiveBatchSizer batchSizer;
+    private final int parserCount;
+    private final int writerCount;
+    private final int queueCapacity;
+
+    private final BlockingQueue<SourceItem> fileQueue;
+    private final BlockingQueue<ParsedThread> threadQueue;
+    private final BlockingQueue<PendingBatch<B>> batchQueue;
+
+    private final StageStats listStats = new StageStats("list", 1);
+    private final StageStats parseStats;
+    private final StageStats mapStats = new StageStats("map", 1);
+    private final StageStats writeStats;
+
+    // 任一阶段失败或调用线程被中断后置为 true：各阶段不再等待队列，也不再发送结束标记
+    private volatile boolean stopped;
+
+    ImportPipeline(ThreadFileLoader fileLoader,
+                   ImportDeadLetterService deadLetters,
+                   ImportManifestService.Snapshot manifest,
+                   BatchMapper<B> mapper,
+                   BatchWriter<B> writer,
+                   ImportResult result,
+                   AdaptiveBatchSizer batchSizer,
+                   int parserCount,
+                   int writerCount,
+                   int queueCapacity) {
+        this.fileLoader = fileLoader;
+        this.deadLetters = deadLetters;
+        this.manifest = manifest;
+        this.mapper = mapper;
+        this.writer = writer;
+        this.result = result;
+        this.batchSizer = batchSizer;
+        this.parserCount = parserCount;
+        this.writerCount = writerCount;
+        this.queueCapacity = queueCapacity;
+        this.fileQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.threadQueue = new ArrayBlockingQueue<>(queueCapacity);
+        // 批次大小是动态的，批次队列按写入线程数取容量；单批内存由字节预算限制
+        this.batchQueue = new ArrayBlockingQueue<>(Math.max(2, writerCount * 2));
+        this.parseStats = new StageStats("parse", parserCount);
+        this.writeStats = new StageStats("write", writerCount);
+    }
+
+    /**
+     * 运行流水线直到所有文件处理完毕
+     * @return 各阶段的统计信息
+     */
+    List<StageStats> run(Path folderPath) throws InterruptedException {
+        log.info("Import pipeline: {} parser(s), {} writer(s), initial batch size {} rows, queue capacity {}",
+                parserCount, writerCount, batchSizer.getRowBudget(), queueCapacity);
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2 + parserCount + writerCount, runnable -> {
+            Thread thread = new Thread(runnable, "import-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long startTime = System.nanoTime();
+        submit(executor, () -> listFiles(folderPath), listStats, startTime);
+        for (int i = 0; i < parserCount; i++) {
+            submit(executor, this::parseFiles, parseStats, startTime);
+        }
+        submit(executor, this::mapThreads, mapStats, startTime);
+        for (int i = 0; i < writerCount; i++) {
+            submit(executor, this::writeBatches, writeStats, startTime);
+        }
+
+        executor.shutdown();
+        while (!awaitTermination(executor)) {
+            log.info("Import pipeline progress: listed={}, parsed={}, mapped={}, written={} "
+                            + "(queues: files={}, threads={}, batches={}; batch size {} rows)",
+                    listStats.getItems(), parseStats.getItems(), mapStats.getItems(), writeStats.getItems(),
+                    fileQueue.size(), threadQueue.size(), batchQueue.size(), batchSizer.getRowBudget());
+        }
+
+        List<StageStats> stats = List.of(listStats, parseStats, mapStats, writeStats);
+        stats.forEach(stage -> log.info("Stage {}", stage));
+        log.info("Batch sizing: {}", batchSizer);
+        return stats;
+    }
+
+    /**
+     * 等待流水线结束；调用线程被中断时请求取消并立即停止所有阶段
+     */
+    private boolean awaitTermination(ExecutorService executor) throws InterruptedException {
+        try {
+            return executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            result.cancel();
+            stop(executor);
+            throw e;
+        }
+    }
+
+    /**
+     * 提交一个阶段的工作线程；任一阶段异常退出时中止导入并中断所有线程，避免其他阶段永久阻塞
+     * 写入阶段遇到数据库故障时抛出 {@link ImportAbortedException}，此时在途的数据源不拒绝、不隔离
+     */
+    private void submit(ExecutorService executor, StageTask task, StageStats stats, long startTime) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Import pipeline stage {} interrupted", stats.getName());
+            } catch (ImportAbortedException e) {
+                log.error("{}; sources were left in place and can be re-imported", e.getMessage(), e);
+                result.abort(e.getMessage());
+                result.addError(e.getMessage());
+                stop(executor);
+            } catch (Exception e) {
+                log.error("Import pipeline stage {} failed: {}", stats.getName(), e.getMessage(), e);
+                result.abort("Import pipeline stage " + stats.getName() + " failed: " + e.getMessage());
+                result.addError("Import pipeline stage " + stats.getName() + " failed: " + e.getMessage());
+                stop(executor);
+            } finally {
+                stats.workerFinished(System.nanoTime() - startTime);
+            }
+        });
+    }
+
+    /**
+     * 停止流水线并中断所有阶段
+     *
+     * 被中断的线程在 InterruptedException 抛出后中断标志即被清除，之后若再阻塞在队列上（例如 finally 中发送结束标记，
+     * 而消费者已经退出）就不会再被唤醒；因此队列操作都带超时并检查 stopped，见 {@link #put} 与 {@link #take}。
+     */
+    private void stop(ExecutorService executor) {
+        stopped = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * 放入队列；队列满时等待，流水线停止后抛出 InterruptedException
+     */
+    private <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+        while (!queue.offer(item, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (stopped) {
+                throw new InterruptedException("Import pipeline stopped");
+            }
+        }
+    }
+
+    /**
+     * 从队列取出；队列空时等待，流水线停止后抛出 InterruptedException
+     */
+    private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+        while (true) {
+            T item = queue.poll(QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (item != null) {
+                return item;
+            }
+            if (stopped) {
+                throw new InterruptedException("Import pipeline stopped");
+            }
+        }
+    }
+
+    /**
+     * 向下游发送结束标记（在 finally 中调用）；流水线已停止或当前线程已被中断时不发送，
+     * 下游由中断与 stopped 结束，不会等待这些标记
+     */
+    private <T> void signalEnd(BlockingQueue<T> queue, T marker, int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            if (stopped || result.isAborted() || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            put(queue, marker);
+        }
+    }
+
+    /**
+     * 阶段 1：列出目录中的数据源并顺序读取归档，跳过清单中大小与修改时间都未变化的文件/记录
+     */
+    private void listFiles(Path folderPath) throws IOException, InterruptedException {
+        try (Stream<Path> files = Files.list(folderPath)) {
+            List<Path> sources = files
+                    .filter(Files::isRegularFile)
+                    .filter(ThreadFileLoader::isSupportedSource)
+                    .sorted()
+                    .toList();
+            long archives = sources.stream().filter(ThreadFileLoader::isArchive).count();
+            log.info("Found {} source files to import ({} archives)", sources.size(), archives);
+            if (archives == 0) {
+                result.setExpectedItems(sources.size());
+            }
+            for (Path source : sources) {
+                if (result.isCancelled()) {
+                    log.warn("Import cancelled, no further sources will be read");
+                    break;
+                }
+                if (ThreadFileLoader.isArchive(source)) {
+                    listArchive(source);
+                    continue;
+                }
+                long begin = System.nanoTime();
+                ImportManifestService.FileStat stat = ImportManifestService.stat(source);
+                if (manifest.isUnchanged(stat)) {
+                    result.incrementUnchanged();
+                } else {
+                    put(fileQueue, new SourceItem(stat, source, null));
+                }
+                listStats.recordItem(System.nanoTime() - begin);
+            }
+        } finally {
+            signalEnd(fileQueue, END_OF_FILES, parserCount);
+        }
+    }
+
+    /**
+     * 顺序读取一个归档，每条记录以“归档路径!记录名”作为清单键；
+     * 归档损坏只影响该归档已读到位置之后的记录，不中断整个流水线
+     */
+    private void listArchive(Path archive) throws InterruptedException {
+        log.info("Streaming records from {}", archive.getFileName());
+        long[] lastEnd = {System.nanoTime()};
+        try {
+            ImportManifestService.FileStat archiveStat = ImportManifestService.stat(archive);
+            fileLoader.readRecords(archive, (recordName, content) -> {
+                result.checkCancelled();
+                // 计入上一条记录入队之后的读取/解压时间，不含阻塞在队列上的时间
+                ImportManifestService.FileStat stat = new ImportManifestService.FileStat(
+                        ImportManifestService.recordKey(archiveStat.manifestKey(), recordName),
+                        content.length, archiveStat.modifiedAt());
+                boolean unchanged = manifest.isUnchanged(stat);
+                listStats.recordItem(System.nanoTime() - lastEnd[0]);
+                if (unchanged) {
+                    result.incrementUnchanged();
+                } else {
+                    put(fileQueue, new SourceItem(stat, null, content));
+                }
+                lastEnd[0] = System.nanoTime();
+            });
+        } catch (ImportCancelledException e) {
+            log.warn("Import cancelled while reading {}", archive.getFileName());
+        } catch (IOException e) {
+            result.incrementFailed();
+            result.addError("Failed to read archive " + archive.getFileName() + ": " + e.getMessage());
+            deadLetters.rejectSource(archive, e);
+            log.error("Error reading archive {}: {}", archive.getFileName(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 阶段 2：读取并解析 JSON 记录（多线程），跳过内容哈希未变化的记录
+     */
+    private void parseFiles() throws InterruptedException {
+        try {
+            while (true) {
+                SourceItem item = take(fileQueue);
+                if (item == END_OF_FILES) {
+                    return;
+                }
+                if (result.isCancelled()) {
+                    // 取消后丢弃已排队的数据源，尽快排空流水线
+                    continue;
+                }
+                long begin = System.nanoTime();
+                ImportManifestService.FileStat stat = item.stat();
+                String sourceName = item.displayName();
+                String contentHash = null;
+                byte[] content = null;
+                try {
+                    content = item.content() != null ? item.content() : Files.readAllBytes(item.file());
+                    contentHash = ImportManifestService.contentHash(content);
+                    if (manifest.hasContent(stat.manifestKey(), contentHash)) {
+                        result.incrementUnchanged();
+                        parseStats.recordItem(System.nanoTime() - begin);
+                        continue;
+                    }
+                    Optional<QuestionThread> threadOpt = fileLoader.load(sourceName, content);
+                    if (threadOpt.isPresent()) {
+                        put(threadQueue, new ParsedThread(new ImportedFile(stat.manifestKey(), stat.size(),
+                                stat.modifiedAt(), contentHash, threadOpt.get())));
+                    } else {
+                        result.incrementSkipped();
+                        deadLetters.reject(ImportDeadLetterService.Stage.PARSE, stat, contentHash, content,
+                                "Failed to parse thread", null);
+                        log.warn("Failed to load thread from: {}", sourceName);
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    result.incrementFailed();
+                    result.addError("Failed to load " + sourceName + ": " + e.getMessage());
+                    deadLetters.reject(content != null ? ImportDeadLetterService.Stage.PARSE
+                                    : ImportDeadLetterService.Stage.READ,
+                            stat, contentHash, content, e.getMessage(), e);
+                    log.error("Error loading {}: {}", sourceName, e.getMessage(), e);
+                }
+                parseStats.recordItem(System.nanoTime() - begin);
+            }
+        } finally {
+            signalEnd(threadQueue, END_OF_THREADS, 1);
+        }
+    }
+
+    /**
+     * 阶段 3：按行数/字节预算切分批次并映射为实体（单线程）
+     */
+    private void mapThreads() throws InterruptedException {
+        try {
+            List<ImportedFile> pending = new ArrayList<>();
+            long rows = 0;
+            long bytes = 0;
+            int finishedParsers = 0;
+            while (finishedParsers < parserCount) {
+                ParsedThread parsed = take(threadQueue);
+                if (parsed == END_OF_THREADS) {
+                    finishedParsers++;
+                    continue;
+                }
+                pending.add(parsed.file());
+                rows += parsed.file().rowCount();
+                bytes += parsed.file().size();
+                if (batchSizer.isFull(pending.size(), rows, bytes)) {
+                    mapBatch(pending, rows, bytes);
+                    pending = new ArrayList<>();
+                    rows = 0;
+                    bytes = 0;
+                }
+            }
+            if (!pending.isEmpty()) {
+                mapBatch(pending, rows, bytes);
+            }
+        } finally {
+            signalEnd(batchQueue, new PendingBatch<>(null, 0, 0, 0), writerCount);
+        }
+    }
+
+    private void mapBatch(List<ImportedFile> files, long rows, long bytes) throws InterruptedException {
+        long begin = System.nanoTime();
+        B batch = mapper.map(files);
+        mapStats.recordItems(files.size(), System.nanoTime() - begin);
+        if (batch != null) {
+            put(batchQueue, new PendingBatch<>(batch, files.size(), rows, bytes));
+        }
+    }
+
+    /**
+     * 阶段 4：写入数据库
+     */
+    private void writeBatches() throws InterruptedException {
+        while (true) {
+            PendingBatch<B> pending = take(batchQueue);
+            if (pending.batch() == null) {
+                return;
+            }
+            long begin = System.nanoTime();
+            writer.write(pending.batch(), pending.threadCount());
+            long nanos = System.nanoTime() - begin;
+            writeStats.recordItems(pending.threadCount(), nanos);
+            batchSizer.recordWrite(pending.rows(), pending.bytes(), nanos);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageTask {
+        void run() throws Exception;
+    }
+
+    /**
+     * 待解析的一条记录：独立文件由解析线程读取（content 为空），归档记录已由列举阶段读入内存
+     */
+    private record SourceItem(ImportManifestService.FileStat stat, Path file, byte[] content) {
+        String displayName() {
+            return file != null ? file.getFileName().toString() : stat.manifestKey();
+        }
+    }
+
+    private record ParsedThread(ImportedFile file) {
+    }
+
+    private record PendingBatch<B>(B batch, int threadCount, long rows, long bytes) {
+    }
+
+    /**
+     * 单个阶段的统计信息（线程安全）
+     */
+    public static final class StageStats {
+        private final String name;
+        private final int workers;
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong elapsedNanos = new AtomicLong();
+
+        StageStats(String name, int workers) {
+            this.name = name;
+            this.workers = workers;
+        }
+
+        void recordItem(long nanos) {
+            recordItems(1, nanos);
+        }
+
+        void recordItems(long count, long nanos) {
+            items.addAndGet(count);
+            busyNanos.addAndGet(nanos);
+        }
+
+        /**
+         * 记录某个工作线程结束的时间（相对流水线启动），阶段耗时取最后结束的工作线程
+         */
+        void workerFinished(long nanosSinceStart) {
+            elapsedNanos.accumulateAndGet(nanosSinceStart, Math::max);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public long getItems() {
+            return items.get();
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos.get() / 1e9;
+        }
+
+        /**
+         * 吞吐量（条/秒），按阶段从启动到结束的时间计算
+         */
+        public double getThroughput() {
+            double seconds = getElapsedSeconds();
+            return seconds > 0 ? items.get() / seconds : 0.0;
+        }
+
+        /**
+         * 忙碌率：工作线程实际处理时间占 (阶段耗时 × 线程数) 的比例，其余时间在等待队列
+         */
+        public double getUtilization() {
+            double capacity = elapsedNanos.get() * (double) workers;
+            return capacity > 0 ? busyNanos.get() / capacity : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d items, %d worker(s), %.2f s, %.1f items/s, busy %.0f%%",
+                    name, getItems(), workers, getElapsedSeconds(), getThroughput(), getUtilization() * 100);
+        }
+    }
+}
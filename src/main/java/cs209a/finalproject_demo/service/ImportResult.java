@@ -0,0 +1,297 @@
+package cs209a.finalproject_demo.service;
+
+import org.slf4j.Logger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 导入结果统计（所有导入引擎共用，线程安全）
+ *
+ * 除成功/失败/跳过/未变化计数与错误消息外，还记录导入耗时与吞吐量，
+ * 流水线引擎额外附带各阶段统计，便于横向比较不同引擎。
+ *
+ * 错误消息只保留前 {@value #RETAINED_ERRORS} 条并计数，内存占用不随失败数量增长；
+ * 每个被拒绝数据源的完整记录在错误台账中，见 {@link ImportDeadLetterService}。
+ *
+ * 导入过程中可随时读取（进度查询），也可调用 {@link #cancel()} 请求取消：
+ * 引擎停止读取新的数据源，已在途的批次照常提交，导入清单保证下次可从中断处继续。
+ */
+public class ImportResult {
+
+    private static final int REPORTED_ERRORS = 10;
+    private static final int RETAINED_ERRORS = 100;
+
+    private final String engine;
+    private final Instant startedAt = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private volatile long finishNanos = -1;
+
+    private final AtomicInteger successCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final AtomicInteger unchangedCount = new AtomicInteger();
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private volatile List<ImportPipeline.StageStats> stageStats = List.of();
+    private volatile AdaptiveBatchSizer batchSizer;
+    private final Map<String, AtomicLong> rowCounts = new ConcurrentHashMap<>();
+    private volatile long expectedItems = -1;
+    private volatile boolean cancelled;
+    private volatile String abortReason;
+
+    public ImportResult(String engine) {
+        this.engine = engine;
+    }
+
+    public void incrementSuccess() {
+        successCount.incrementAndGet();
+    }
+
+    public void incrementSuccess(int count) {
+        successCount.addAndGet(count);
+    }
+
+    public void incrementFailed() {
+        failedCount.incrementAndGet();
+    }
+
+    public void incrementFailed(int count) {
+        failedCount.addAndGet(count);
+    }
+
+    public void incrementSkipped() {
+        skippedCount.incrementAndGet();
+    }
+
+    /**
+     * 文件与导入清单一致，本次未重新导入
+     */
+    public void incrementUnchanged() {
+        unchangedCount.incrementAndGet();
+    }
+
+    public void addError(String error) {
+        if (errorCount.incrementAndGet() <= RETAINED_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    void setStageStats(List<ImportPipeline.StageStats> stageStats) {
+        this.stageStats = stageStats;
+    }
+
+    /**
+     * 记录一个已提交 thread 各表写入的行数
+     */
+    void recordRows(ImportedFile file) {
+        file.rowsByTable().forEach((table, rows) ->
+                rowCounts.computeIfAbsent(table, key -> new AtomicLong()).addAndGet(rows));
+    }
+
+    /**
+     * 待处理的数据源条数；包含归档时事先无法得知，为 -1
+     */
+    void setExpectedItems(long expectedItems) {
+        this.expectedItems = expectedItems;
+    }
+
+    /**
+     * 请求取消导入（协作式，引擎在处理下一个数据源前检查）
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 记录导入因基础设施故障中止（只保留第一个原因），见 {@link ImportAbortedException}
+     */
+    synchronized void abort(String reason) {
+        if (abortReason == null) {
+            abortReason = reason;
+        }
+    }
+
+    public boolean isAborted() {
+        return abortReason != null;
+    }
+
+    public String getAbortReason() {
+        return abortReason;
+    }
+
+    /**
+     * 已取消时抛出 {@link ImportCancelledException}，用于中止归档的顺序读取
+     */
+    void checkCancelled() {
+        if (cancelled) {
+            throw new ImportCancelledException();
+        }
+    }
+
+    void setBatchSizer(AdaptiveBatchSizer batchSizer) {
+        this.batchSizer = batchSizer;
+    }
+
+    /**
+     * 标记导入结束（只记录第一次调用的时间）
+     */
+    public void finish() {
+        if (finishNanos < 0) {
+            finishNanos = System.nanoTime();
+        }
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public int getSuccessCount() {
+        return successCount.get();
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public int getUnchangedCount() {
+        return unchangedCount.get();
+    }
+
+    /**
+     * 已处理的数据源条数（成功、失败、跳过与未变化之和）
+     */
+    public long getProcessedCount() {
+        return (long) successCount.get() + failedCount.get() + skippedCount.get() + unchangedCount.get();
+    }
+
+    /**
+     * 待处理的数据源条数，未知时为 -1
+     */
+    public long getExpectedItems() {
+        return expectedItems;
+    }
+
+    /**
+     * 各表已提交的行数
+     */
+    public Map<String, Long> getRowCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        rowCounts.forEach((table, count) -> counts.put(table, count.get()));
+        return counts;
+    }
+
+    /**
+     * 保留的错误消息（最多前 {@value #RETAINED_ERRORS} 条）
+     */
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return List.copyOf(errors);
+        }
+    }
+
+    /**
+     * 错误总数（包括未保留消息的错误）
+     */
+    public int getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * 流水线各阶段的吞吐量统计（非流水线引擎为空）
+     */
+    public List<ImportPipeline.StageStats> getStageStats() {
+        return stageStats;
+    }
+
+    /**
+     * 当前批次大小（行数预算，导入过程中动态变化；非流水线引擎为 0）
+     */
+    public long getBatchSizeRows() {
+        AdaptiveBatchSizer sizer = batchSizer;
+        return sizer != null ? sizer.getRowBudget() : 0;
+    }
+
+    /**
+     * 导入耗时；未结束时返回目前已用时间
+     */
+    public long getDurationMillis() {
+        long end = finishNanos >= 0 ? finishNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000;
+    }
+
+    /**
+     * 成功导入的 thread 数 / 秒
+     */
+    public double getThroughput() {
+        long millis = getDurationMillis();
+        return millis > 0 ? getSuccessCount() * 1000.0 / millis : 0.0;
+    }
+
+    /**
+     * 输出统一格式的导入报告
+     */
+    public void logReport(Logger log) {
+        log.info("========================================");
+        log.info("Import Summary ({} engine)", engine);
+        log.info("========================================");
+        log.info("Duration: {} s", getDurationMillis() / 1000.0);
+        log.info("Success: {}", getSuccessCount());
+        log.info("Failed: {}", getFailedCount());
+        log.info("Skipped: {}", getSkippedCount());
+        log.info("Unchanged: {}", getUnchangedCount());
+        log.info("Throughput: {} threads/s", String.format("%.1f", getThroughput()));
+        if (cancelled) {
+            log.warn("Import was cancelled before all sources were processed");
+        }
+        if (abortReason != null) {
+            log.error("Import was aborted: {}", abortReason);
+        }
+        if (!rowCounts.isEmpty()) {
+            log.info("Rows: {}", getRowCounts());
+        }
+        for (ImportPipeline.StageStats stage : stageStats) {
+            log.info("Stage {}", stage);
+        }
+        if (batchSizer != null) {
+            log.info("Batch sizing: {}", batchSizer);
+        }
+
+        List<String> errorList = getErrors();
+        if (!errorList.isEmpty()) {
+            log.warn("Errors encountered (showing first {}):", REPORTED_ERRORS);
+            errorList.stream()
+                    .limit(REPORTED_ERRORS)
+                    .forEach(error -> log.warn("  - {}", error));
+            if (getErrorCount() > REPORTED_ERRORS) {
+                log.warn("  ... and {} more errors (see import_errors)", getErrorCount() - REPORTED_ERRORS);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImportResult{engine=%s, success=%d, failed=%d, skipped=%d, unchanged=%d, errors=%d, duration=%dms}",
+                engine, getSuccessCount(), getFailedCount(), getSkippedCount(), getUnchangedCount(), getErrorCount(),
+                getDurationMillis());
+    }
+}
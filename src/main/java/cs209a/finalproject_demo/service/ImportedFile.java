@@ -0,0 +1,58 @@
+package cs209a.finalproject_demo.service;
+
+import cs209a.finalproject_demo.model.QuestionThread;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个已解析的数据文件：清单键、文件指纹与解析出的 thread
+ *
+ * @param manifestKey 清单主键（规范化的绝对路径）
+ * @param size 文件大小（字节）
+ * @param modifiedAt 文件修改时间（截断到微秒，与数据库 timestamp 精度一致）
+ * @param contentHash 文件内容的 SHA-256（十六进制）
+ */
+record ImportedFile(String manifestKey, long size, Instant modifiedAt, String contentHash, QuestionThread thread) {
+
+    long questionId() {
+        return thread.question().id();
+    }
+
+    /**
+     * 写入的行数估计：问题、问题标签、回答、问题评论与回答评论
+     */
+    long rowCount() {
+        return 1 + size(thread.question().tags()) + size(thread.answers()) + size(thread.questionComments())
+                + answerCommentCount();
+    }
+
+    /**
+     * 按表统计写入的行数（用户为 upsert，不计入）
+     */
+    Map<String, Integer> rowsByTable() {
+        Map<String, Integer> rows = new LinkedHashMap<>();
+        rows.put("questions", 1);
+        rows.put("question_tags", size(thread.question().tags()));
+        rows.put("answers", size(thread.answers()));
+        rows.put("question_comments", size(thread.questionComments()));
+        rows.put("answer_comments", answerCommentCount());
+        return rows;
+    }
+
+    private int answerCommentCount() {
+        int rows = 0;
+        if (thread.answerComments() != null) {
+            for (List<?> comments : thread.answerComments().values()) {
+                rows += size(comments);
+            }
+        }
+        return rows;
+    }
+
+    private static int size(List<?> list) {
+        return list != null ? list.size() : 0;
+    }
+}
@@ -0,0 +1,30 @@
+package cs209a.finalproject_demo.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 逐 thread 导入引擎：每个 thread 一个事务，逐条保存并按 account_id 查询作者
+ */
+@Component
+public class PerThreadImportEngine implements ImportEngine {
+
+    public static final String NAME = "thread";
+
+    private final DataImportService importService;
+
+    public PerThreadImportEngine(DataImportService importService) {
+        this.importService = importService;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ImportResult importFromDirectory(String directoryPath, ImportResult result) {
+        importService.importFromDirectory(directoryPath, result);
+        result.finish();
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package cs209a.finalproject_demo.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 有界的最近使用键集合（LRU，线程安全）
+ *
+ * 导入时记录最近确认已入库的用户 account_id / 标签名，命中的键不再发送插入语句；
+ * 超出容量时淘汰最久未访问的键，内存占用与数据总量无关。
+ *
+ * 只省去插入（insertMissing）这一次往返：实体关联按 account_id / 标签名这两个自然键引用，
+ * 而 getReferenceById 只能按自增主键创建代理，刷写外键时仍会逐个加载，
+ * 所以每批仍需一次 IN 查询取回本批引用的全部托管实体。
+ */
+final class RecentKeySet<K> {
+
+    private final Map<K, Boolean> keys;
+
+    RecentKeySet(int capacity) {
+        this.keys = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 是否包含该键（命中时刷新其访问顺序）
+     */
+    synchronized boolean contains(K key) {
+        return keys.get(key) != null;
+    }
+
+    synchronized void addAll(Collection<K> newKeys) {
+        for (K key : newKeys) {
+            keys.put(key, Boolean.TRUE);
+        }
+    }
+
+    synchronized int size() {
+        return keys.size();
+    }
+}
@@ -0,0 +1,70 @@
+package cs209a.finalproject_demo.service;
+
+import cs209a.finalproject_demo.repository.AnswerCommentRepository;
+import cs209a.finalproject_demo.repository.AnswerRepository;
+import cs209a.finalproject_demo.repository.QuestionCommentRepository;
+import cs209a.finalproject_demo.repository.QuestionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 重新导入已有问题时，删除上游已不存在的回答与评论（JPA 写入端与逐线程引擎共用，COPY 写入端见 {@link CopyImportSink}）
+ *
+ * 一个 thread 以最新导入的数据为准：这些问题下不在本次数据中的回答、问题评论与回答评论被删除。
+ * 必须在调用方的事务中、保存实体之前调用，删除与写入一起提交或回滚；
+ * 本次数据只含新问题时（全量导入的常见情况）只做一次存在性查询。
+ */
+@Component
+public class RemovedChildrenPruner {
+
+    private static final Logger log = LoggerFactory.getLogger(RemovedChildrenPruner.class);
+
+    // NOT IN 空列表的写法不可移植，用不存在的 ID 占位
+    private static final List<Long> NONE = List.of(-1L);
+
+    private final QuestionRepository questionRepository;
+    private final AnswerRepository answerRepository;
+    private final QuestionCommentRepository questionCommentRepository;
+    private final AnswerCommentRepository answerCommentRepository;
+
+    public RemovedChildrenPruner(QuestionRepository questionRepository,
+                                 AnswerRepository answerRepository,
+                                 QuestionCommentRepository questionCommentRepository,
+                                 AnswerCommentRepository answerCommentRepository) {
+        this.questionRepository = questionRepository;
+        this.answerRepository = answerRepository;
+        this.questionCommentRepository = questionCommentRepository;
+        this.answerCommentRepository = answerCommentRepository;
+    }
+
+    /**
+     * @param questionIds 本次导入的问题
+     * @param answerIds 本次数据中这些问题的全部回答
+     * @param questionCommentIds 本次数据中这些问题的全部问题评论
+     * @param answerCommentIds 本次数据中这些问题的全部回答评论
+     */
+    void prune(Collection<Long> questionIds,
+               Collection<Long> answerIds,
+               Collection<Long> questionCommentIds,
+               Collection<Long> answerCommentIds) {
+        if (questionIds.isEmpty() || !questionRepository.existsByQuestionIdIn(questionIds)) {
+            return;
+        }
+        // 先删评论再删回答：回答评论按回答所属的问题定位，回答删除后就找不到了
+        int answerComments = answerCommentRepository.deleteByQuestionIdsExcept(questionIds, keep(answerCommentIds));
+        int questionComments = questionCommentRepository.deleteByQuestionIdsExcept(questionIds, keep(questionCommentIds));
+        int answers = answerRepository.deleteByQuestionIdsExcept(questionIds, keep(answerIds));
+        if (answers + questionComments + answerComments > 0) {
+            log.debug("Removed {} answers, {} question comments and {} answer comments no longer present upstream",
+                    answers, questionComments, answerComments);
+        }
+    }
+
+    private static Collection<Long> keep(Collection<Long> ids) {
+        return ids.isEmpty() ? NONE : ids;
+    }
+}
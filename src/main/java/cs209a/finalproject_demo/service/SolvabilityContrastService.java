@@ -6,21 +6,26 @@ import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.BoxPlotStats;
 import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.CommentFrequencyData;
 import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.DistributionData;
 import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.FeatureComparison;
+import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.SignificanceTest;
 import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.TagFrequencyData;
-import cs209a.finalproject_demo.entity.AnswerEntity;
-import cs209a.finalproject_demo.entity.QuestionCommentEntity;
 import cs209a.finalproject_demo.entity.QuestionEntity;
 import cs209a.finalproject_demo.entity.TagEntity;
-import cs209a.finalproject_demo.repository.QuestionCommentRepository;
 import cs209a.finalproject_demo.repository.QuestionRepository;
+import cs209a.finalproject_demo.stats.RankTests;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -32,7 +37,7 @@ import java.util.stream.Collectors;
 public class SolvabilityContrastService {
 
     private final QuestionRepository questionRepository;
-    private final QuestionCommentRepository questionCommentRepository;
+    private final ExecutorService analyticsExecutor;
     
     // 高复杂性主题标签
     private static final Set<String> COMPLEX_TOPICS = Set.of(
@@ -46,10 +51,33 @@ public class SolvabilityContrastService {
             Pattern.CASE_INSENSITIVE | Pattern.DOTALL
     );
 
+    // 各分布的区间标签（精确计算与按月草图共用）
+    static final int CODE_RATIO_BIN_COUNT = 10;
+    static final List<String> CODE_RATIO_BINS = buildCodeRatioBins();
+    static final List<String> TAG_COUNT_BINS = List.of("0", "1", "2", "3-5", "6-10", "10+");
+    static final List<String> QUESTION_LENGTH_BINS = List.of("0-500", "500-1000", "1000-2000", "2000-5000", "5000+");
+    static final List<String> REPUTATION_BINS = List.of("0-1", "1-2", "2-3", "3-4", "4+");
+    static final List<String> COMMENT_COUNT_BINS = List.of("0", "1", "2-5", "6-10", "10+");
+    static final List<String> TITLE_WORDS_BINS = List.of("0-3", "3-6", "6-10", "10-20", "20+");
+    static final List<String> VIEW_COUNT_BINS = List.of("0-100", "100-500", "500-2000", "2000-10000", "10000+");
+
+    // 难解决问题判断：固定参考日期 2025-12-11，长期无人回答阈值 240 天
+    private static final LocalDate HARD_REFERENCE_DATE = LocalDate.of(2025, 12, 11);
+    private static final int UNANSWERED_DAYS = 240;
+
+    // 未指定时间窗口时的边界
+    private static final Instant UNBOUNDED_START = Instant.parse("1900-01-01T00:00:00Z");
+    private static final Instant UNBOUNDED_END = Instant.parse("9999-12-31T00:00:00Z");
+
+    // 按ID批量加载时每块的大小
+    static final int ID_CHUNK_SIZE = 1000;
+
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
     public SolvabilityContrastService(QuestionRepository questionRepository,
-                                      QuestionCommentRepository questionCommentRepository) {
+                                      @Qualifier("analyticsExecutor") ExecutorService analyticsExecutor) {
         this.questionRepository = questionRepository;
-        this.questionCommentRepository = questionCommentRepository;
+        this.analyticsExecutor = analyticsExecutor;
     }
 
     /**
@@ -59,301 +87,215 @@ public class SolvabilityContrastService {
      * @return 特征对比数据
      */
     public SolvabilityContrastResponse analyze(LocalDate from, LocalDate to) {
-        // 获取可解决问题和难解决问题
-        List<QuestionEntity> allSolvable = questionRepository.findSolvableQuestions();
-        List<QuestionEntity> allHard = questionRepository.findHardToSolveQuestions();
-        
-        // 批量加载标签，避免N+1查询
-        loadTagsForQuestions(allSolvable);
-        loadTagsForQuestions(allHard);
+        // 获取可解决问题和难解决问题（已应用时间过滤与精炼规则）
+        List<QuestionEntity> solvableQuestions = loadSolvableQuestions(from, to);
+        List<QuestionEntity> hardQuestions = loadHardQuestions(from, to);
         
-        // 应用时间过滤（如果提供）
-        List<QuestionEntity> solvableQuestions = filterByDateRange(allSolvable, from, to);
-        List<QuestionEntity> hardQuestions = filterByDateRange(allHard, from, to);
+        // 所有数据库访问都在当前线程完成（评论数使用冗余的 comment_count 列，不加载评论），
+        // 之后各部分只做内存计算，可并行执行
         
-        // 进一步筛选：应用标准三（时效性）到可解决问题
-        solvableQuestions = refineSolvableQuestions(solvableQuestions);
-        
-        // 进一步筛选：应用标准三（时间因素）到难解决问题
-        hardQuestions = refineHardQuestions(hardQuestions);
+        // 每组的特征列只提取一次，供均值与显著性检验共用
+        CompletableFuture<SolvabilityFeatureTable> solvableTable =
+                compute(() -> SolvabilityFeatureTable.extract(solvableQuestions, this));
+        CompletableFuture<SolvabilityFeatureTable> hardTable =
+                compute(() -> SolvabilityFeatureTable.extract(hardQuestions, this));
         
         // 计算特征对比
-        List<FeatureComparison> features = new ArrayList<>();
-        
         // 特征1：问题清晰度和细节（字符数）
-        features.add(calculateQuestionLengthFeature(solvableQuestions, hardQuestions));
-        
         // 特征2：代码片段存在性（百分比）
-        features.add(calculateCodeSnippetFeature(solvableQuestions, hardQuestions));
-        
         // 特征3：提问者声誉（平均分数）
-        features.add(calculateReputationFeature(solvableQuestions, hardQuestions));
-        
         // 特征4（可选）：主题复杂性（百分比）
-        features.add(calculateTopicComplexityFeature(solvableQuestions, hardQuestions));
-        
-        // 批量加载问题评论，用于评论频率统计
-        loadQuestionCommentsForQuestions(solvableQuestions);
-        loadQuestionCommentsForQuestions(hardQuestions);
+        List<CompletableFuture<FeatureComparison>> featureFutures = List.of(
+                compareFeature(solvableTable, hardTable, "Avg Question Length", "Characters", t -> t.questionLength),
+                compareFeature(solvableTable, hardTable, "Code Snippet Presence", "Percentage", t -> t.codeSnippet),
+                compareFeature(solvableTable, hardTable, "Avg Asker Reputation", "Points", t -> t.reputation),
+                compareFeature(solvableTable, hardTable, "High Complexity Topic", "Percentage", t -> t.complexTopic)
+        );
         
         // 计算标签频率数据（前10个标签，排除java）
-        List<TagFrequencyData> tagFrequencyData = calculateTagFrequencyData(solvableQuestions, hardQuestions);
+        CompletableFuture<List<TagFrequencyData>> tagFrequencyData =
+                compute(() -> calculateTagFrequencyData(solvableQuestions, hardQuestions));
         
         // 计算评论频率数据
-        CommentFrequencyData commentFrequencyData = calculateCommentFrequencyData(solvableQuestions, hardQuestions);
-        
-        // 计算5个分布数据
-        DistributionData codeSnippetRatioDistribution = calculateCodeSnippetRatioDistribution(solvableQuestions, hardQuestions);
-        DistributionData tagCountDistribution = calculateTagCountDistribution(solvableQuestions, hardQuestions);
-        DistributionData questionLengthDistribution = calculateQuestionLengthDistribution(solvableQuestions, hardQuestions);
-        DistributionData reputationDistribution = calculateReputationDistribution(solvableQuestions, hardQuestions);
-        DistributionData commentCountDistribution = calculateCommentCountDistribution(solvableQuestions, hardQuestions);
-        DistributionData titleWordsDistribution = calculateTitleWordsDistribution(solvableQuestions, hardQuestions);
-        DistributionData viewCountDistribution = calculateViewCountDistribution(solvableQuestions, hardQuestions);
-        
-        // 计算声誉箱线图数据
-        BoxPlotData reputationBoxPlotData = calculateReputationBoxPlotData(solvableQuestions, hardQuestions);
-        BoxPlotData titleWordsBoxPlotData = calculateTitleWordsBoxPlotData(solvableQuestions, hardQuestions);
-        BoxPlotData codeRatioBoxPlotData = calculateCodeRatioBoxPlotData(solvableQuestions, hardQuestions);
-        BoxPlotData viewCountBoxPlotData = calculateViewCountBoxPlotData(solvableQuestions, hardQuestions);
-        
-        return new SolvabilityContrastResponse(
-                features, 
-                tagFrequencyData, 
-                commentFrequencyData,
-                codeSnippetRatioDistribution,
-                tagCountDistribution,
-                questionLengthDistribution,
-                reputationDistribution,
-                commentCountDistribution,
-                reputationBoxPlotData,
-                titleWordsBoxPlotData,
-                codeRatioBoxPlotData,
-                viewCountBoxPlotData,
-                titleWordsDistribution,
-                viewCountDistribution
-        );
+        CompletableFuture<CommentFrequencyData> commentFrequencyData =
+                compute(() -> calculateCommentFrequencyData(solvableQuestions, hardQuestions));
+        
+        // 计算7个分布数据
+        CompletableFuture<DistributionData> codeSnippetRatioDistribution =
+                compute(() -> calculateCodeSnippetRatioDistribution(solvableQuestions, hardQuestions));
+        CompletableFuture<DistributionData> tagCountDistribution =
+                compute(() -> calculateTagCountDistribution(solvableQuestions, hardQuestions));
+        CompletableFuture<DistributionData> questionLengthDistribution =
+                compute(() -> calculateQuestionLengthDistribution(solvableQuestions, hardQuestions));
+        CompletableFuture<DistributionData> reputationDistribution =
+                compute(() -> calculateReputationDistribution(solvableQuestions, hardQuestions));
+        CompletableFuture<DistributionData> commentCountDistribution =
+                compute(() -> calculateCommentCountDistribution(solvableQuestions, hardQuestions));
+        CompletableFuture<DistributionData> titleWordsDistribution =
+                compute(() -> calculateTitleWordsDistribution(solvableQuestions, hardQuestions));
+        CompletableFuture<DistributionData> viewCountDistribution =
+                compute(() -> calculateViewCountDistribution(solvableQuestions, hardQuestions));
+        
+        // 计算4个箱线图数据
+        CompletableFuture<BoxPlotData> reputationBoxPlotData =
+                compute(() -> calculateReputationBoxPlotData(solvableQuestions, hardQuestions));
+        CompletableFuture<BoxPlotData> titleWordsBoxPlotData =
+                compute(() -> calculateTitleWordsBoxPlotData(solvableQuestions, hardQuestions));
+        CompletableFuture<BoxPlotData> codeRatioBoxPlotData =
+                compute(() -> calculateCodeRatioBoxPlotData(solvableQuestions, hardQuestions));
+        CompletableFuture<BoxPlotData> viewCountBoxPlotData =
+                compute(() -> calculateViewCountBoxPlotData(solvableQuestions, hardQuestions));
+        
+        List<CompletableFuture<?>> sections = new ArrayList<>(featureFutures);
+        sections.addAll(List.of(solvableTable, hardTable));
+        sections.addAll(List.of(
+                tagFrequencyData, commentFrequencyData,
+                codeSnippetRatioDistribution, tagCountDistribution, questionLengthDistribution,
+                reputationDistribution, commentCountDistribution, titleWordsDistribution, viewCountDistribution,
+                reputationBoxPlotData, titleWordsBoxPlotData, codeRatioBoxPlotData, viewCountBoxPlotData
+        ));
+        
+        // 全部完成后组装响应
+        CompletableFuture<SolvabilityContrastResponse> response = CompletableFuture
+                .allOf(sections.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> new SolvabilityContrastResponse(
+                        featureFutures.stream().map(CompletableFuture::join).collect(Collectors.toList()),
+                        tagFrequencyData.join(),
+                        commentFrequencyData.join(),
+                        codeSnippetRatioDistribution.join(),
+                        tagCountDistribution.join(),
+                        questionLengthDistribution.join(),
+                        reputationDistribution.join(),
+                        commentCountDistribution.join(),
+                        reputationBoxPlotData.join(),
+                        titleWordsBoxPlotData.join(),
+                        codeRatioBoxPlotData.join(),
+                        viewCountBoxPlotData.join(),
+                        titleWordsDistribution.join(),
+                        viewCountDistribution.join(),
+                        null
+                ));
+        
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            // 还原各部分计算中抛出的原始异常
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
     
     /**
-     * 按日期范围过滤问题
+     * 在分析线程池上计算一个独立部分
      */
-    private List<QuestionEntity> filterByDateRange(List<QuestionEntity> questions, LocalDate from, LocalDate to) {
-        if (from == null && to == null) {
-            return questions;
-        }
-        
-        ZoneId zoneId = ZoneId.systemDefault();
-        return questions.stream()
-                .filter(q -> {
-                    if (q.getCreationDate() == null) {
-                        return false;
-                    }
-                    LocalDate questionDate = q.getCreationDate().atZone(zoneId).toLocalDate();
-                    if (from != null && questionDate.isBefore(from)) {
-                        return false;
-                    }
-                    if (to != null && questionDate.isAfter(to)) {
-                        return false;
-                    }
-                    return true;
-                })
-                .collect(Collectors.toList());
+    private <T> CompletableFuture<T> compute(Supplier<T> section) {
+        return CompletableFuture.supplyAsync(section, analyticsExecutor);
     }
-    
+
     /**
-     * 精炼可解决问题
-     * 新规则：问题未关闭，且有被接受答案，并且被接受答案的创建时间距离问题创建时间小于2小时
+     * 加载可解决问题：分类规则与时间窗口均在数据库中执行，再批量加载问题与标签
      */
-    private List<QuestionEntity> refineSolvableQuestions(List<QuestionEntity> questions) {
-        return questions.stream()
-                .filter(q -> {
-                    // 必须未关闭
-                    if (q.getClosedDate() != null) {
-                        return false;
-                    }
-
-                    // 必须有被接受答案
-                    Long acceptedId = q.getAcceptedAnswerId();
-                    if (acceptedId == null) {
-                        return false;
-                    }
-
-                    if (q.getCreationDate() == null || q.getAnswers() == null || q.getAnswers().isEmpty()) {
-                        return false;
-                    }
-
-                    // 在 answers 中找到被接受的答案
-                    AnswerEntity accepted = q.getAnswers().stream()
-                            .filter(a -> a.getAnswerId() != null && a.getAnswerId().equals(acceptedId))
-                            .findFirst()
-                            .orElse(null);
-                    if (accepted == null || accepted.getCreationDate() == null) {
-                        return false;
-                    }
-
-                    // 计算时间差 < 2 小时
-                    Duration delta = Duration.between(q.getCreationDate(), accepted.getCreationDate());
-                    return delta.toHours() < 2;
-                })
-                .collect(Collectors.toList());
+    List<QuestionEntity> loadSolvableQuestions(LocalDate from, LocalDate to) {
+        return loadQuestionsWithTags(findSolvableQuestionIds(from, to));
     }
-    
+
     /**
-     * 精炼难解决问题
-     * 新规则：问题未关闭，且满足：
-     *  条件A：无被接受答案，但存在得分 > 6 的答案；
-     *  或 条件B：无被接受答案且没有任何答案，并且距 2025-12-11 超过 240 天。
+     * 可解决问题的 ID（分类规则与时间窗口在数据库中执行）
      */
-    private List<QuestionEntity> refineHardQuestions(List<QuestionEntity> questions) {
-        // 固定比较日期 2025-12-11，用于长期无人回答判断
-        LocalDate referenceDate = LocalDate.of(2025, 12, 11);
-        ZoneId zoneId = ZoneId.systemDefault();
-
-        return questions.stream()
-                .filter(q -> {
-                    // 排除已关闭问题
-                    if (q.getClosedDate() != null) {
-                        return false;
-                    }
-
-                    // 必须没有被接受答案
-                    if (q.getAcceptedAnswerId() != null) {
-                        return false;
-                    }
-
-                    List<AnswerEntity> answers = q.getAnswers() != null ? q.getAnswers() : List.of();
-
-                    // 条件A：有高分答案（score > 6）
-                    boolean hasHighScoreAnswer = answers.stream()
-                            .map(AnswerEntity::getScore)
-                            .filter(score -> score != null)
-                            .anyMatch(score -> score > 6);
-
-                    if (hasHighScoreAnswer) {
-                        return true;
-                    }
+    List<Long> findSolvableQuestionIds(LocalDate from, LocalDate to) {
+        return questionRepository.findSolvableQuestionIds(windowStart(from), windowEnd(to));
+    }
 
-                    // 条件B：长期无人回答（无任何答案，且创建时间距参考日期 > 240 天）
-                    if (!answers.isEmpty()) {
-                        return false;
-                    }
-                    if (q.getCreationDate() == null) {
-                        return false;
-                    }
+    /**
+     * 加载难解决问题：分类规则与时间窗口均在数据库中执行，再批量加载问题与标签
+     * 长期无人回答：创建日期 + 240 天早于参考日期 2025-12-11
+     */
+    List<QuestionEntity> loadHardQuestions(LocalDate from, LocalDate to) {
+        return loadQuestionsWithTags(findHardQuestionIds(from, to));
+    }
 
-                    LocalDate createdDate = q.getCreationDate().atZone(zoneId).toLocalDate();
-                    // createdDate + 240 天 早于 referenceDate，说明间隔 > 240 天
-                    return createdDate.plusDays(240).isBefore(referenceDate);
-                })
-                .collect(Collectors.toList());
+    /**
+     * 难解决问题的 ID（分类规则与时间窗口在数据库中执行）
+     */
+    List<Long> findHardQuestionIds(LocalDate from, LocalDate to) {
+        Instant unansweredBefore = HARD_REFERENCE_DATE.minusDays(UNANSWERED_DAYS)
+                .atStartOfDay(zoneId).toInstant();
+        return questionRepository.findHardToSolveQuestionIds(windowStart(from), windowEnd(to), unansweredBefore);
     }
-    
+
     /**
-     * 计算问题长度特征（字符数）
+     * 时间窗口起点（含），未指定时不限
      */
-    private FeatureComparison calculateQuestionLengthFeature(
-            List<QuestionEntity> solvable, List<QuestionEntity> hard) {
-        
-        double solvableAvg = solvable.stream()
-                .mapToInt(this::calculateQuestionLength)
-                .average()
-                .orElse(0.0);
-        
-        double hardAvg = hard.stream()
-                .mapToInt(this::calculateQuestionLength)
-                .average()
-                .orElse(0.0);
-        
-        return new FeatureComparison(
-                "Avg Question Length",
-                solvableAvg,
-                hardAvg,
-                "Characters"
-        );
+    private Instant windowStart(LocalDate from) {
+        return from == null ? UNBOUNDED_START : from.atStartOfDay(zoneId).toInstant();
     }
-    
+
     /**
-     * 计算代码片段存在性特征（百分比）
+     * 时间窗口终点（不含），to 当天整天都包含在内，未指定时不限
      */
-    private FeatureComparison calculateCodeSnippetFeature(
-            List<QuestionEntity> solvable, List<QuestionEntity> hard) {
-        
-        long solvableWithCode = solvable.stream()
-                .filter(this::hasCodeSnippet)
-                .count();
-        double solvablePercentage = solvable.isEmpty() ? 0.0 
-                : (double) solvableWithCode / solvable.size();
-        
-        long hardWithCode = hard.stream()
-                .filter(this::hasCodeSnippet)
-                .count();
-        double hardPercentage = hard.isEmpty() ? 0.0 
-                : (double) hardWithCode / hard.size();
-        
-        return new FeatureComparison(
-                "Code Snippet Presence",
-                solvablePercentage,
-                hardPercentage,
-                "Percentage"
-        );
+    private Instant windowEnd(LocalDate to) {
+        return to == null ? UNBOUNDED_END : to.plusDays(1).atStartOfDay(zoneId).toInstant();
     }
-    
+
     /**
-     * 计算提问者声誉特征（平均分数，log10变换后）
+     * 分块加载问题（含所有者）并批量关联标签，避免 IN 列表超过数据库参数上限
      */
-    private FeatureComparison calculateReputationFeature(
-            List<QuestionEntity> solvable, List<QuestionEntity> hard) {
-        
-        // 平均声誉不再做 log10 变换，直接使用原始 reputation 值
-        double solvableAvg = solvable.stream()
-                .mapToInt(this::getOwnerReputation)
-                .average()
-                .orElse(0.0);
-        
-        double hardAvg = hard.stream()
-                .mapToInt(this::getOwnerReputation)
-                .average()
-                .orElse(0.0);
-        
-        return new FeatureComparison(
-                "Avg Asker Reputation",
-                solvableAvg,
-                hardAvg,
-                "Points"
-        );
+    List<QuestionEntity> loadQuestionsWithTags(List<Long> questionIds) {
+        List<QuestionEntity> questions = new ArrayList<>(questionIds.size());
+        for (int i = 0; i < questionIds.size(); i += ID_CHUNK_SIZE) {
+            List<Long> chunk = questionIds.subList(i, Math.min(i + ID_CHUNK_SIZE, questionIds.size()));
+            List<QuestionEntity> loaded = questionRepository.findWithOwnerByQuestionIdIn(chunk);
+            loadTagsForQuestions(loaded);
+            questions.addAll(loaded);
+        }
+        return questions;
     }
     
     /**
-     * 计算主题复杂性特征（百分比）
+     * 对比一个特征：两组均值（平均声誉直接使用原始 reputation 值，不做 log10 变换）
+     * 及 Mann-Whitney U / Kolmogorov-Smirnov 检验
      */
-    private FeatureComparison calculateTopicComplexityFeature(
-            List<QuestionEntity> solvable, List<QuestionEntity> hard) {
-        
-        long solvableComplex = solvable.stream()
-                .filter(this::isComplexTopic)
-                .count();
-        double solvablePercentage = solvable.isEmpty() ? 0.0 
-                : (double) solvableComplex / solvable.size();
-        
-        long hardComplex = hard.stream()
-                .filter(this::isComplexTopic)
-                .count();
-        double hardPercentage = hard.isEmpty() ? 0.0 
-                : (double) hardComplex / hard.size();
-        
-        return new FeatureComparison(
-                "High Complexity Topic",
-                solvablePercentage,
-                hardPercentage,
-                "Percentage"
+    private CompletableFuture<FeatureComparison> compareFeature(
+            CompletableFuture<SolvabilityFeatureTable> solvable,
+            CompletableFuture<SolvabilityFeatureTable> hard,
+            String featureName,
+            String unit,
+            Function<SolvabilityFeatureTable, double[]> column) {
+        
+        return solvable.thenCombineAsync(hard, (solvableTable, hardTable) -> {
+            double[] solvableValues = column.apply(solvableTable);
+            double[] hardValues = column.apply(hardTable);
+            return new FeatureComparison(
+                    featureName,
+                    SolvabilityFeatureTable.mean(solvableValues),
+                    SolvabilityFeatureTable.mean(hardValues),
+                    unit,
+                    toSignificance(RankTests.compare(solvableValues, hardValues))
+            );
+        }, analyticsExecutor);
+    }
+    
+    private SignificanceTest toSignificance(RankTests.Result result) {
+        if (result == null) {
+            return null;
+        }
+        return new SignificanceTest(
+                result.n1(),
+                result.n2(),
+                result.u(),
+                result.z(),
+                result.mannWhitneyP(),
+                result.ksStatistic(),
+                result.ksP()
         );
     }
     
     /**
      * 计算问题长度（字符数）
      */
-    private int calculateQuestionLength(QuestionEntity question) {
+    int calculateQuestionLength(QuestionEntity question) {
         String body = question.getBody();
         if (body == null) {
             body = "";
@@ -366,7 +308,7 @@ public class SolvabilityContrastService {
     /**
      * 检查问题是否包含代码片段
      */
-    private boolean hasCodeSnippet(QuestionEntity question) {
+    boolean hasCodeSnippet(QuestionEntity question) {
         String body = question.getBody();
         if (body == null) {
             return false;
@@ -377,7 +319,7 @@ public class SolvabilityContrastService {
     /**
      * 获取提问者声誉
      */
-    private int getOwnerReputation(QuestionEntity question) {
+    int getOwnerReputation(QuestionEntity question) {
         if (question.getOwner() == null) {
             return 0;
         }
@@ -388,7 +330,7 @@ public class SolvabilityContrastService {
     /**
      * 获取标题词数（按空格拆分）
      */
-    private int getTitleWordCount(QuestionEntity question) {
+    int getTitleWordCount(QuestionEntity question) {
         String title = question.getTitle();
         if (title == null || title.isBlank()) {
             return 0;
@@ -399,16 +341,24 @@ public class SolvabilityContrastService {
     /**
      * 获取浏览量
      */
-    private int getViewCount(QuestionEntity question) {
+    int getViewCount(QuestionEntity question) {
         Integer viewCount = question.getViewCount();
         return viewCount != null ? viewCount : 0;
     }
     
+    /**
+     * 获取问题评论数
+     */
+    int getQuestionCommentCount(QuestionEntity question) {
+        Integer commentCount = question.getCommentCount();
+        return commentCount != null ? commentCount : 0;
+    }
+    
     /**
      * 对声誉值进行log10变换
      * 处理边界情况：如果reputation <= 0，返回log10(1) = 0
      */
-    private double log10Reputation(int reputation) {
+    double log10Reputation(int reputation) {
         if (reputation <= 0) {
             return 0.0; // log10(1) = 0
         }
@@ -418,7 +368,7 @@ public class SolvabilityContrastService {
     /**
      * 检查是否为复杂主题
      */
-    private boolean isComplexTopic(QuestionEntity question) {
+    boolean isComplexTopic(QuestionEntity question) {
         if (question.getTags() == null || question.getTags().isEmpty()) {
             return false;
         }
@@ -450,38 +400,9 @@ public class SolvabilityContrastService {
             tagsMap.computeIfAbsent(qId, k -> new ArrayList<>()).add(tag);
         }
         
-        // 关联标签到问题
-        for (QuestionEntity question : questions) {
-            question.getTags().clear();
-            question.getTags().addAll(tagsMap.getOrDefault(question.getQuestionId(), List.of()));
-        }
-    }
-    
-    /**
-     * 批量加载问题的评论，避免N+1查询
-     */
-    private void loadQuestionCommentsForQuestions(List<QuestionEntity> questions) {
-        if (questions.isEmpty()) {
-            return;
-        }
-        
-        List<Long> questionIds = questions.stream()
-                .map(QuestionEntity::getQuestionId)
-                .collect(Collectors.toList());
-        
-        // 批量查询评论
-        List<QuestionCommentEntity> allComments = questionCommentRepository.findByQuestionQuestionIdIn(questionIds);
-        
-        // 构建评论映射
-        java.util.Map<Long, List<QuestionCommentEntity>> commentsMap = allComments.stream()
-                .collect(Collectors.groupingBy(c -> c.getQuestion().getQuestionId()));
-        
-        // 关联评论到问题
+        // 关联标签到问题（直接替换集合，避免初始化懒加载集合带来的逐条查询）
         for (QuestionEntity question : questions) {
-            question.getQuestionComments().clear();
-            question.getQuestionComments().addAll(
-                    commentsMap.getOrDefault(question.getQuestionId(), List.of())
-            );
+            question.setTags(new ArrayList<>(tagsMap.getOrDefault(question.getQuestionId(), List.of())));
         }
     }
     
@@ -549,12 +470,12 @@ public class SolvabilityContrastService {
         
         // 统计易解决问题中有评论的数量
         long solvableWithComments = solvable.stream()
-                .filter(q -> q.getQuestionComments() != null && !q.getQuestionComments().isEmpty())
+                .filter(q -> getQuestionCommentCount(q) > 0)
                 .count();
         
         // 统计难解决问题中有评论的数量
         long hardWithComments = hard.stream()
-                .filter(q -> q.getQuestionComments() != null && !q.getQuestionComments().isEmpty())
+                .filter(q -> getQuestionCommentCount(q) > 0)
                 .count();
         
         return new CommentFrequencyData(
@@ -572,13 +493,8 @@ public class SolvabilityContrastService {
             List<QuestionEntity> solvable, List<QuestionEntity> hard) {
         
         // 定义10个区间：0-0.1, 0.1-0.2, ..., 0.9-1.0
-        int numBins = 10;
-        List<String> bins = new ArrayList<>();
-        for (int i = 0; i < numBins; i++) {
-            double start = i * 0.1;
-            double end = (i + 1) * 0.1;
-            bins.add(String.format("%.1f-%.1f", start, end));
-        }
+        int numBins = CODE_RATIO_BIN_COUNT;
+        List<String> bins = CODE_RATIO_BINS;
         
         // 初始化计数数组
         int[] solvableCounts = new int[numBins];
@@ -612,10 +528,20 @@ public class SolvabilityContrastService {
         return new DistributionData(bins, solvableFreq, hardFreq);
     }
     
+    private static List<String> buildCodeRatioBins() {
+        List<String> bins = new ArrayList<>();
+        for (int i = 0; i < CODE_RATIO_BIN_COUNT; i++) {
+            double start = i * 0.1;
+            double end = (i + 1) * 0.1;
+            bins.add(String.format("%.1f-%.1f", start, end));
+        }
+        return List.copyOf(bins);
+    }
+    
     /**
      * 计算代码片段比率
      */
-    private double calculateCodeSnippetRatio(QuestionEntity question) {
+    double calculateCodeSnippetRatio(QuestionEntity question) {
         String body = question.getBody();
         if (body == null || body.isEmpty()) {
             return 0.0;
@@ -646,7 +572,7 @@ public class SolvabilityContrastService {
             List<QuestionEntity> solvable, List<QuestionEntity> hard) {
         
         // 定义标签数区间：0, 1, 2, 3-5, 6-10, 10+
-        List<String> bins = List.of("0", "1", "2", "3-5", "6-10", "10+");
+        List<String> bins = TAG_COUNT_BINS;
         int[] solvableCounts = new int[6];
         int[] hardCounts = new int[6];
         
@@ -681,7 +607,7 @@ public class SolvabilityContrastService {
     /**
      * 获取标签数的区间索引
      */
-    private int getTagCountBinIndex(int tagCount) {
+    int getTagCountBinIndex(int tagCount) {
         if (tagCount == 0) return 0;
         if (tagCount == 1) return 1;
         if (tagCount == 2) return 2;
@@ -697,7 +623,7 @@ public class SolvabilityContrastService {
             List<QuestionEntity> solvable, List<QuestionEntity> hard) {
         
         // 定义长度区间：0-500, 500-1000, 1000-2000, 2000-5000, 5000+
-        List<String> bins = List.of("0-500", "500-1000", "1000-2000", "2000-5000", "5000+");
+        List<String> bins = QUESTION_LENGTH_BINS;
         int[] solvableCounts = new int[5];
         int[] hardCounts = new int[5];
         
@@ -732,7 +658,7 @@ public class SolvabilityContrastService {
     /**
      * 获取长度的区间索引
      */
-    private int getLengthBinIndex(int length) {
+    int getLengthBinIndex(int length) {
         if (length < 500) return 0;
         if (length < 1000) return 1;
         if (length < 2000) return 2;
@@ -748,7 +674,7 @@ public class SolvabilityContrastService {
         
         // 定义log10变换后的声誉区间：0-1, 1-2, 2-3, 3-4, 4+
         // 对应原始值大致为：1-10, 10-100, 100-1000, 1000-10000, 10000+
-        List<String> bins = List.of("0-1", "1-2", "2-3", "3-4", "4+");
+        List<String> bins = REPUTATION_BINS;
         int[] solvableCounts = new int[5];
         int[] hardCounts = new int[5];
         
@@ -785,7 +711,7 @@ public class SolvabilityContrastService {
     /**
      * 获取log10变换后声誉的区间索引
      */
-    private int getLogReputationBinIndex(double logReputation) {
+    int getLogReputationBinIndex(double logReputation) {
         if (logReputation < 1.0) return 0;
         if (logReputation < 2.0) return 1;
         if (logReputation < 3.0) return 2;
@@ -800,20 +726,20 @@ public class SolvabilityContrastService {
             List<QuestionEntity> solvable, List<QuestionEntity> hard) {
         
         // 定义评论数区间：0, 1, 2-5, 6-10, 10+
-        List<String> bins = List.of("0", "1", "2-5", "6-10", "10+");
+        List<String> bins = COMMENT_COUNT_BINS;
         int[] solvableCounts = new int[5];
         int[] hardCounts = new int[5];
         
         // 统计易解决问题
         for (QuestionEntity question : solvable) {
-            int commentCount = question.getQuestionComments() != null ? question.getQuestionComments().size() : 0;
+            int commentCount = getQuestionCommentCount(question);
             int binIndex = getCommentCountBinIndex(commentCount);
             solvableCounts[binIndex]++;
         }
         
         // 统计难解决问题
         for (QuestionEntity question : hard) {
-            int commentCount = question.getQuestionComments() != null ? question.getQuestionComments().size() : 0;
+            int commentCount = getQuestionCommentCount(question);
             int binIndex = getCommentCountBinIndex(commentCount);
             hardCounts[binIndex]++;
         }
@@ -835,7 +761,7 @@ public class SolvabilityContrastService {
     /**
      * 获取评论数的区间索引
      */
-    private int getCommentCountBinIndex(int commentCount) {
+    int getCommentCountBinIndex(int commentCount) {
         if (commentCount == 0) return 0;
         if (commentCount == 1) return 1;
         if (commentCount >= 2 && commentCount <= 5) return 2;
@@ -1061,7 +987,7 @@ public class SolvabilityContrastService {
             List<QuestionEntity> solvable, List<QuestionEntity> hard) {
 
         // 定义标题词数区间：0-3, 3-6, 6-10, 10-20, 20+
-        List<String> bins = List.of("0-3", "3-6", "6-10", "10-20", "20+");
+        List<String> bins = TITLE_WORDS_BINS;
         int[] solvableCounts = new int[bins.size()];
         int[] hardCounts = new int[bins.size()];
 
@@ -1090,7 +1016,7 @@ public class SolvabilityContrastService {
         return new DistributionData(bins, solvableFreq, hardFreq);
     }
 
-    private int getTitleWordsBinIndex(int words) {
+    int getTitleWordsBinIndex(int words) {
         if (words < 3) return 0;
         if (words < 6) return 1;
         if (words < 10) return 2;
@@ -1105,7 +1031,7 @@ public class SolvabilityContrastService {
             List<QuestionEntity> solvable, List<QuestionEntity> hard) {
 
         // 定义浏览量区间：0-100, 100-500, 500-2000, 2000-10000, 10000+
-        List<String> bins = List.of("0-100", "100-500", "500-2000", "2000-10000", "10000+");
+        List<String> bins = VIEW_COUNT_BINS;
         int[] solvableCounts = new int[bins.size()];
         int[] hardCounts = new int[bins.size()];
 
@@ -1134,7 +1060,7 @@ public class SolvabilityContrastService {
         return new DistributionData(bins, solvableFreq, hardFreq);
     }
 
-    private int getViewCountBinIndex(int views) {
+    int getViewCountBinIndex(int views) {
         if (views < 100) return 0;
         if (views < 500) return 1;
         if (views < 2000) return 2;
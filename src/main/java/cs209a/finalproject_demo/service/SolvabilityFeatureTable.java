@@ -0,0 +1,62 @@
+package cs209a.finalproject_demo.service;
+
+import cs209a.finalproject_demo.entity.QuestionEntity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一组问题的特征列（每个请求只提取一次）
+ *
+ * 每个特征保存为升序排序的 double 数组：均值与顺序无关可直接求和，
+ * 显著性检验（{@link cs209a.finalproject_demo.stats.RankTests}）则直接使用排序结果。
+ */
+final class SolvabilityFeatureTable {
+
+    // 问题长度（字符数）
+    final double[] questionLength;
+    // 是否包含代码片段（0/1）
+    final double[] codeSnippet;
+    // 提问者声誉
+    final double[] reputation;
+    // 是否为复杂主题（0/1）
+    final double[] complexTopic;
+
+    private SolvabilityFeatureTable(int size) {
+        this.questionLength = new double[size];
+        this.codeSnippet = new double[size];
+        this.reputation = new double[size];
+        this.complexTopic = new double[size];
+    }
+
+    static SolvabilityFeatureTable extract(List<QuestionEntity> questions, SolvabilityContrastService features) {
+        SolvabilityFeatureTable table = new SolvabilityFeatureTable(questions.size());
+        for (int i = 0; i < questions.size(); i++) {
+            QuestionEntity question = questions.get(i);
+            table.questionLength[i] = features.calculateQuestionLength(question);
+            table.codeSnippet[i] = features.hasCodeSnippet(question) ? 1.0 : 0.0;
+            table.reputation[i] = features.getOwnerReputation(question);
+            table.complexTopic[i] = features.isComplexTopic(question) ? 1.0 : 0.0;
+        }
+        Arrays.sort(table.questionLength);
+        Arrays.sort(table.codeSnippet);
+        Arrays.sort(table.reputation);
+        Arrays.sort(table.complexTopic);
+        return table;
+    }
+
+    int size() {
+        return questionLength.length;
+    }
+
+    static double mean(double[] column) {
+        if (column.length == 0) {
+            return 0.0;
+        }
+        double sum = 0.0;
+        for (double value : column) {
+            sum += value;
+        }
+        return sum / column.length;
+    }
+}
@@ -0,0 +1,456 @@
+package cs209a.finalproject_demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cs209a.finalproject_demo.dto.SolvabilityContrastResponse;
+import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.BoxPlotData;
+import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.BoxPlotStats;
+import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.CommentFrequencyData;
+import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.DistributionData;
+import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.FeatureComparison;
+import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.QuantileError;
+import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.SketchApproximation;
+import cs209a.finalproject_demo.dto.SolvabilityContrastResponse.TagFrequencyData;
+import cs209a.finalproject_demo.entity.QuestionEntity;
+import cs209a.finalproject_demo.entity.SolvabilitySketchEntity;
+import cs209a.finalproject_demo.entity.TagEntity;
+import cs209a.finalproject_demo.repository.SolvabilitySketchRepository;
+import cs209a.finalproject_demo.stats.KllSketch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 可解性对比分析的按月草图服务
+ *
+ * 导入完成后按 (月份, 组) 预聚合可合并的统计量并持久化：
+ * - 计数与求和（均值、占比、评论频率 —— 精确）
+ * - 固定区间直方图（7 个分布 —— 精确）
+ * - 标签频次（精确）
+ * - KLL 分位数草图（4 个箱线图 —— 近似，并报告秩误差）
+ *
+ * 查询任意 from/to 区间时只需合并区间内的 12~60 个小草图，无需重新扫描全部问题。
+ * 区间按整月对齐，实际覆盖范围在响应的 approximation 字段中给出。
+ */
+@Service
+public class SolvabilitySketchService {
+
+    private static final Logger log = LoggerFactory.getLogger(SolvabilitySketchService.class);
+
+    static final String GROUP_SOLVABLE = "solvable";
+    static final String GROUP_HARD = "hard";
+
+    // 查询区间未指定时使用的月份边界
+    private static final LocalDate MIN_MONTH = LocalDate.of(1970, 1, 1);
+    private static final LocalDate MAX_MONTH = LocalDate.of(9999, 12, 1);
+
+    private final SolvabilityContrastService contrastService;
+    private final SolvabilitySketchRepository sketchRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    public SolvabilitySketchService(SolvabilityContrastService contrastService,
+                                    SolvabilitySketchRepository sketchRepository,
+                                    PlatformTransactionManager transactionManager) {
+        this.contrastService = contrastService;
+        this.sketchRepository = sketchRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 重新构建全部按月草图（导入完成后调用；同一进程内串行执行，避免并发重建写入重复的 (月份, 组)）
+     * @return 写入的草图数量
+     */
+    public synchronized int rebuild() {
+        long startTime = System.currentTimeMillis();
+        Instant builtAt = Instant.now();
+
+        List<Long> solvableIds = readOnlyTransaction.execute(status -> contrastService.findSolvableQuestionIds(null, null));
+        List<Long> hardIds = readOnlyTransaction.execute(status -> contrastService.findHardQuestionIds(null, null));
+
+        List<SolvabilitySketchEntity> entities = new ArrayList<>();
+        aggregateByMonth(solvableIds).forEach((month, aggregate) ->
+                entities.add(toEntity(month, GROUP_SOLVABLE, aggregate, builtAt)));
+        aggregateByMonth(hardIds).forEach((month, aggregate) ->
+                entities.add(toEntity(month, GROUP_HARD, aggregate, builtAt)));
+        log.info("Aggregated {} solvable and {} hard questions into month sketches", solvableIds.size(), hardIds.size());
+
+        writeTransaction.executeWithoutResult(status -> {
+            sketchRepository.deleteAllInBatch();
+            sketchRepository.saveAll(entities);
+        });
+
+        log.info("Rebuilt {} solvability month sketches in {} ms",
+                entities.size(), System.currentTimeMillis() - startTime);
+        return entities.size();
+    }
+
+    /**
+     * 通过合并按月草图计算可解性对比（近似模式）
+     *
+     * 只读取已有的草图，不在查询中重建：草图由导入完成后的 {@link #rebuild()} 生成。
+     * 尚未构建草图（或区间内没有数据）时返回空结果，approximation 的 merged_sketches 为 0。
+     */
+    public SolvabilityContrastResponse analyze(LocalDate from, LocalDate to) {
+        LocalDate fromMonth = from == null ? MIN_MONTH : from.withDayOfMonth(1);
+        LocalDate toMonth = to == null ? MAX_MONTH : to.withDayOfMonth(1);
+        List<SolvabilitySketchEntity> rows =
+                sketchRepository.findByBucketMonthBetweenOrderByBucketMonthAsc(fromMonth, toMonth);
+
+        MonthAggregate solvable = new MonthAggregate();
+        MonthAggregate hard = new MonthAggregate();
+        for (SolvabilitySketchEntity row : rows) {
+            MonthAggregate aggregate = fromPayload(row.getPayload());
+            if (GROUP_SOLVABLE.equals(row.getQuestionGroup())) {
+                solvable.merge(aggregate);
+            } else {
+                hard.merge(aggregate);
+            }
+        }
+
+        LocalDate coveredFrom = rows.isEmpty() ? null : rows.get(0).getBucketMonth();
+        LocalDate coveredTo = rows.isEmpty() ? null
+                : YearMonth.from(rows.get(rows.size() - 1).getBucketMonth()).atEndOfMonth();
+        return buildResponse(solvable, hard, new SketchApproximation(
+                coveredFrom,
+                coveredTo,
+                rows.size(),
+                KllSketch.DEFAULT_K,
+                quantileErrors(solvable, hard)
+        ));
+    }
+
+    /**
+     * 按 ID 分块加载问题并聚合到所属月份：每块在单独的只读事务中加载，聚合后实体即可回收，
+     * 内存占用取决于块大小与月份数，与问题总数无关。
+     * 只读事务同时保证服务层在实体上手动关联的标签不会被刷回数据库。
+     */
+    private Map<YearMonth, MonthAggregate> aggregateByMonth(List<Long> questionIds) {
+        Map<YearMonth, MonthAggregate> aggregates = new TreeMap<>();
+        for (int i = 0; i < questionIds.size(); i += SolvabilityContrastService.ID_CHUNK_SIZE) {
+            List<Long> chunk = questionIds.subList(i,
+                    Math.min(i + SolvabilityContrastService.ID_CHUNK_SIZE, questionIds.size()));
+            readOnlyTransaction.executeWithoutResult(status -> {
+                for (QuestionEntity question : contrastService.loadQuestionsWithTags(chunk)) {
+                    if (question.getCreationDate() == null) {
+                        continue;
+                    }
+                    YearMonth month = YearMonth.from(question.getCreationDate().atZone(zoneId));
+                    aggregates.computeIfAbsent(month, m -> new MonthAggregate()).add(question, contrastService);
+                }
+            });
+        }
+        return aggregates;
+    }
+
+    private SolvabilitySketchEntity toEntity(YearMonth month, String group, MonthAggregate aggregate, Instant builtAt) {
+        try {
+            return new SolvabilitySketchEntity(
+                    month.atDay(1),
+                    group,
+                    (int) aggregate.questionCount,
+                    objectMapper.writeValueAsString(aggregate.toState()),
+                    builtAt
+            );
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize sketch for " + month + "/" + group, e);
+        }
+    }
+
+    private MonthAggregate fromPayload(String payload) {
+        try {
+            return MonthAggregate.fromState(objectMapper.readValue(payload, MonthAggregate.State.class));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupted solvability sketch payload", e);
+        }
+    }
+
+    private SolvabilityContrastResponse buildResponse(MonthAggregate solvable, MonthAggregate hard,
+                                                      SketchApproximation approximation) {
+        // 显著性检验需要完整样本，草图合并模式下不提供（significance 为空）
+        List<FeatureComparison> features = List.of(
+                new FeatureComparison("Avg Question Length",
+                        solvable.mean(solvable.questionLengthSum), hard.mean(hard.questionLengthSum), "Characters", null),
+                new FeatureComparison("Code Snippet Presence",
+                        solvable.mean(solvable.codeSnippetCount), hard.mean(hard.codeSnippetCount), "Percentage", null),
+                new FeatureComparison("Avg Asker Reputation",
+                        solvable.mean(solvable.reputationSum), hard.mean(hard.reputationSum), "Points", null),
+                new FeatureComparison("High Complexity Topic",
+                        solvable.mean(solvable.complexTopicCount), hard.mean(hard.complexTopicCount), "Percentage", null)
+        );
+
+        return new SolvabilityContrastResponse(
+                features,
+                tagFrequencyData(solvable, hard),
+                new CommentFrequencyData(
+                        (int) solvable.withCommentsCount, (int) solvable.questionCount,
+                        (int) hard.withCommentsCount, (int) hard.questionCount),
+                distribution(SolvabilityContrastService.CODE_RATIO_BINS, solvable.codeRatioHistogram, hard.codeRatioHistogram,
+                        solvable.questionCount, hard.questionCount),
+                distribution(SolvabilityContrastService.TAG_COUNT_BINS, solvable.tagCountHistogram, hard.tagCountHistogram,
+                        solvable.questionCount, hard.questionCount),
+                distribution(SolvabilityContrastService.QUESTION_LENGTH_BINS, solvable.questionLengthHistogram,
+                        hard.questionLengthHistogram, solvable.questionCount, hard.questionCount),
+                distribution(SolvabilityContrastService.REPUTATION_BINS, solvable.reputationHistogram, hard.reputationHistogram,
+                        solvable.questionCount, hard.questionCount),
+                distribution(SolvabilityContrastService.COMMENT_COUNT_BINS, solvable.commentCountHistogram,
+                        hard.commentCountHistogram, solvable.questionCount, hard.questionCount),
+                new BoxPlotData(boxPlot(solvable.logReputation, 1.5), boxPlot(hard.logReputation, 1.5)),
+                new BoxPlotData(boxPlot(solvable.titleWords, 0.5), boxPlot(hard.titleWords, 0.5)),
+                new BoxPlotData(boxPlot(solvable.codeRatio, 1.5), boxPlot(hard.codeRatio, 1.5)),
+                new BoxPlotData(boxPlot(solvable.viewCount, 0.5), boxPlot(hard.viewCount, 0.5)),
+                distribution(SolvabilityContrastService.TITLE_WORDS_BINS, solvable.titleWordsHistogram,
+                        hard.titleWordsHistogram, solvable.questionCount, hard.questionCount),
+                distribution(SolvabilityContrastService.VIEW_COUNT_BINS, solvable.viewCountHistogram,
+                        hard.viewCountHistogram, solvable.questionCount, hard.questionCount),
+                approximation
+        );
+    }
+
+    private List<TagFrequencyData> tagFrequencyData(MonthAggregate solvable, MonthAggregate hard) {
+        Map<String, long[]> combined = new HashMap<>();
+        solvable.tagCounts.forEach((tag, count) -> combined.computeIfAbsent(tag, t -> new long[2])[0] += count);
+        hard.tagCounts.forEach((tag, count) -> combined.computeIfAbsent(tag, t -> new long[2])[1] += count);
+        return combined.entrySet().stream()
+                .map(e -> new TagFrequencyData(e.getKey(), (int) e.getValue()[0], (int) e.getValue()[1]))
+                .sorted((a, b) -> Integer.compare(
+                        (b.solvable_count() + b.hard_count()),
+                        (a.solvable_count() + a.hard_count())
+                ))
+                .limit(10)
+                .collect(Collectors.toList());
+    }
+
+    private DistributionData distribution(List<String> bins, long[] solvableCounts, long[] hardCounts,
+                                          long solvableTotal, long hardTotal) {
+        double solvableDivisor = solvableTotal == 0 ? 1 : solvableTotal;
+        double hardDivisor = hardTotal == 0 ? 1 : hardTotal;
+        List<Double> solvableFreq = new ArrayList<>();
+        List<Double> hardFreq = new ArrayList<>();
+        for (int i = 0; i < bins.size(); i++) {
+            solvableFreq.add((solvableCounts[i] / solvableDivisor) * 100.0);
+            hardFreq.add((hardCounts[i] / hardDivisor) * 100.0);
+        }
+        return new DistributionData(bins, solvableFreq, hardFreq);
+    }
+
+    /**
+     * 由 KLL 草图计算箱线图统计；异常值取草图保留样本中落在须线之外的值
+     */
+    private BoxPlotStats boxPlot(KllSketch sketch, double whiskerFactor) {
+        if (sketch.getN() == 0) {
+            return new BoxPlotStats(0, 0, 0, 0, 0, List.of(), 0);
+        }
+        double q1 = sketch.quantile(0.25);
+        double median = sketch.quantile(0.50);
+        double q3 = sketch.quantile(0.75);
+        double iqr = q3 - q1;
+        List<Double> outliers = sketch.valuesOutside(q1 - whiskerFactor * iqr, q3 + whiskerFactor * iqr);
+        return new BoxPlotStats(sketch.getMin(), q1, median, q3, sketch.getMax(), outliers, (int) sketch.getN());
+    }
+
+    private List<QuantileError> quantileErrors(MonthAggregate solvable, MonthAggregate hard) {
+        List<QuantileError> errors = new ArrayList<>();
+        addQuantileErrors(errors, GROUP_SOLVABLE, solvable);
+        addQuantileErrors(errors, GROUP_HARD, hard);
+        return errors;
+    }
+
+    private void addQuantileErrors(List<QuantileError> errors, String group, MonthAggregate aggregate) {
+        errors.add(quantileError("reputation_log10", group, aggregate.logReputation));
+        errors.add(quantileError("title_words", group, aggregate.titleWords));
+        errors.add(quantileError("code_ratio", group, aggregate.codeRatio));
+        errors.add(quantileError("view_count", group, aggregate.viewCount));
+    }
+
+    /**
+     * 中位数的置信区间：取秩区间 [0.5 - ε, 0.5 + ε] 对应的值
+     */
+    private QuantileError quantileError(String metric, String group, KllSketch sketch) {
+        double epsilon = sketch.normalizedRankError();
+        return new QuantileError(
+                metric,
+                group,
+                sketch.getN(),
+                sketch.getRetainedItems(),
+                epsilon,
+                sketch.quantile(Math.max(0.0, 0.5 - epsilon)),
+                sketch.quantile(Math.min(1.0, 0.5 + epsilon))
+        );
+    }
+
+    /**
+     * 某月某组的可合并统计量
+     */
+    static final class MonthAggregate {
+        private long questionCount;
+        private long questionLengthSum;
+        private long codeSnippetCount;
+        private long reputationSum;
+        private long complexTopicCount;
+        private long withCommentsCount;
+        private long[] codeRatioHistogram = new long[SolvabilityContrastService.CODE_RATIO_BINS.size()];
+        private long[] tagCountHistogram = new long[SolvabilityContrastService.TAG_COUNT_BINS.size()];
+        private long[] questionLengthHistogram = new long[SolvabilityContrastService.QUESTION_LENGTH_BINS.size()];
+        private long[] reputationHistogram = new long[SolvabilityContrastService.REPUTATION_BINS.size()];
+        private long[] commentCountHistogram = new long[SolvabilityContrastService.COMMENT_COUNT_BINS.size()];
+        private long[] titleWordsHistogram = new long[SolvabilityContrastService.TITLE_WORDS_BINS.size()];
+        private long[] viewCountHistogram = new long[SolvabilityContrastService.VIEW_COUNT_BINS.size()];
+        private Map<String, Long> tagCounts = new HashMap<>();
+        private KllSketch logReputation = new KllSketch();
+        private KllSketch titleWords = new KllSketch();
+        private KllSketch codeRatio = new KllSketch();
+        private KllSketch viewCount = new KllSketch();
+
+        void add(QuestionEntity question, SolvabilityContrastService features) {
+            int length = features.calculateQuestionLength(question);
+            int reputation = features.getOwnerReputation(question);
+            double logRep = features.log10Reputation(reputation);
+            double ratio = features.calculateCodeSnippetRatio(question);
+            int words = features.getTitleWordCount(question);
+            int views = features.getViewCount(question);
+            int comments = features.getQuestionCommentCount(question);
+            int tagCount = question.getTags() != null ? question.getTags().size() : 0;
+
+            questionCount++;
+            questionLengthSum += length;
+            reputationSum += reputation;
+            if (features.hasCodeSnippet(question)) {
+                codeSnippetCount++;
+            }
+            if (features.isComplexTopic(question)) {
+                complexTopicCount++;
+            }
+            if (comments > 0) {
+                withCommentsCount++;
+            }
+
+            int numBins = SolvabilityContrastService.CODE_RATIO_BIN_COUNT;
+            codeRatioHistogram[Math.min((int) (ratio * numBins), numBins - 1)]++;
+            tagCountHistogram[features.getTagCountBinIndex(tagCount)]++;
+            questionLengthHistogram[features.getLengthBinIndex(length)]++;
+            reputationHistogram[features.getLogReputationBinIndex(logRep)]++;
+            commentCountHistogram[features.getCommentCountBinIndex(comments)]++;
+            titleWordsHistogram[features.getTitleWordsBinIndex(words)]++;
+            viewCountHistogram[features.getViewCountBinIndex(views)]++;
+
+            if (question.getTags() != null) {
+                for (TagEntity tag : question.getTags()) {
+                    String tagName = tag.getName().toLowerCase();
+                    if (!tagName.equals("java")) {
+                        tagCounts.merge(tagName, 1L, Long::sum);
+                    }
+                }
+            }
+
+            logReputation.update(logRep);
+            titleWords.update(words);
+            codeRatio.update(ratio);
+            viewCount.update(views);
+        }
+
+        void merge(MonthAggregate other) {
+            questionCount += other.questionCount;
+            questionLengthSum += other.questionLengthSum;
+            codeSnippetCount += other.codeSnippetCount;
+            reputationSum += other.reputationSum;
+            complexTopicCount += other.complexTopicCount;
+            withCommentsCount += other.withCommentsCount;
+            addInto(codeRatioHistogram, other.codeRatioHistogram);
+            addInto(tagCountHistogram, other.tagCountHistogram);
+            addInto(questionLengthHistogram, other.questionLengthHistogram);
+            addInto(reputationHistogram, other.reputationHistogram);
+            addInto(commentCountHistogram, other.commentCountHistogram);
+            addInto(titleWordsHistogram, other.titleWordsHistogram);
+            addInto(viewCountHistogram, other.viewCountHistogram);
+            other.tagCounts.forEach((tag, count) -> tagCounts.merge(tag, count, Long::sum));
+            logReputation.merge(other.logReputation);
+            titleWords.merge(other.titleWords);
+            codeRatio.merge(other.codeRatio);
+            viewCount.merge(other.viewCount);
+        }
+
+        double mean(long sum) {
+            return questionCount == 0 ? 0.0 : (double) sum / questionCount;
+        }
+
+        private static void addInto(long[] target, long[] source) {
+            for (int i = 0; i < target.length && i < source.length; i++) {
+                target[i] += source[i];
+            }
+        }
+
+        State toState() {
+            return new State(questionCount, questionLengthSum, codeSnippetCount, reputationSum,
+                    complexTopicCount, withCommentsCount,
+                    codeRatioHistogram, tagCountHistogram, questionLengthHistogram, reputationHistogram,
+                    commentCountHistogram, titleWordsHistogram, viewCountHistogram, tagCounts,
+                    logReputation.toState(), titleWords.toState(), codeRatio.toState(), viewCount.toState());
+        }
+
+        static MonthAggregate fromState(State state) {
+            MonthAggregate aggregate = new MonthAggregate();
+            aggregate.questionCount = state.questionCount();
+            aggregate.questionLengthSum = state.questionLengthSum();
+            aggregate.codeSnippetCount = state.codeSnippetCount();
+            aggregate.reputationSum = state.reputationSum();
+            aggregate.complexTopicCount = state.complexTopicCount();
+            aggregate.withCommentsCount = state.withCommentsCount();
+            addInto(aggregate.codeRatioHistogram, state.codeRatioHistogram());
+            addInto(aggregate.tagCountHistogram, state.tagCountHistogram());
+            addInto(aggregate.questionLengthHistogram, state.questionLengthHistogram());
+            addInto(aggregate.reputationHistogram, state.reputationHistogram());
+            addInto(aggregate.commentCountHistogram, state.commentCountHistogram());
+            addInto(aggregate.titleWordsHistogram, state.titleWordsHistogram());
+            addInto(aggregate.viewCountHistogram, state.viewCountHistogram());
+            aggregate.tagCounts = new HashMap<>(state.tagCounts());
+            aggregate.logReputation = KllSketch.fromState(state.logReputation());
+            aggregate.titleWords = KllSketch.fromState(state.titleWords());
+            aggregate.codeRatio = KllSketch.fromState(state.codeRatio());
+            aggregate.viewCount = KllSketch.fromState(state.viewCount());
+            return aggregate;
+        }
+
+        /**
+         * 持久化到 payload 的 JSON 结构
+         */
+        record State(
+                long questionCount,
+                long questionLengthSum,
+                long codeSnippetCount,
+                long reputationSum,
+                long complexTopicCount,
+                long withCommentsCount,
+                long[] codeRatioHistogram,
+                long[] tagCountHistogram,
+                long[] questionLengthHistogram,
+                long[] reputationHistogram,
+                long[] commentCountHistogram,
+                long[] titleWordsHistogram,
+                long[] viewCountHistogram,
+                Map<String, Long> tagCounts,
+                KllSketch.State logReputation,
+                KllSketch.State titleWords,
+                KllSketch.State codeRatio,
+                KllSketch.State viewCount
+        ) {
+        }
+    }
+}
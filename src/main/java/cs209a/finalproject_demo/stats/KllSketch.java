@@ -0,0 +1,300 @@
+package cs209a.finalproject_demo.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * KLL 分位数草图（Karnin–Lang–Liberty）
+ *
+ * 特点：
+ * 1. 可合并：两个草图合并后的误差与直接对并集建草图相同，适合按月预聚合后任意区间合并
+ * 2. 空间有界：保留样本数约为 O(k)，与样本总量无关
+ * 3. 误差可报告：归一化秩误差 ε ≈ 2.296 / k^0.9723（99% 置信度，取自 DataSketches 的经验公式）
+ *
+ * 未发生压缩时（样本数不超过容量）草图是精确的，分位数与线性插值的精确算法一致。
+ */
+public final class KllSketch {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final int MIN_LEVEL_CAPACITY = 8;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+    private final int k;
+    private long n;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    // levels[h] 中每个样本代表 2^h 个原始值
+    private final List<double[]> levels = new ArrayList<>();
+    private final List<Integer> levelSizes = new ArrayList<>();
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_LEVEL_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        addLevel();
+    }
+
+    /**
+     * 加入一个样本（NaN 被忽略）
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        append(0, value);
+        n++;
+        min = Double.isNaN(min) ? value : Math.min(min, value);
+        max = Double.isNaN(max) ? value : Math.max(max, value);
+        compressIfNeeded();
+    }
+
+    /**
+     * 合并另一个草图（要求相同的 k）
+     */
+    public void merge(KllSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Cannot merge sketches with different k: " + k + " vs " + other.k);
+        }
+        if (other.n == 0) {
+            return;
+        }
+        for (int h = 0; h < other.levels.size(); h++) {
+            while (levels.size() <= h) {
+                addLevel();
+            }
+            double[] items = other.levels.get(h);
+            int size = other.levelSizes.get(h);
+            for (int i = 0; i < size; i++) {
+                append(h, items[i]);
+            }
+        }
+        n += other.n;
+        min = Double.isNaN(min) ? other.min : Math.min(min, other.min);
+        max = Double.isNaN(max) ? other.max : Math.max(max, other.max);
+        compressIfNeeded();
+    }
+
+    /**
+     * 估计分位数
+     * @param fraction 分位点，取值 [0, 1]
+     */
+    public double quantile(double fraction) {
+        if (n == 0) {
+            return 0.0;
+        }
+        if (fraction <= 0.0) {
+            return min;
+        }
+        if (fraction >= 1.0) {
+            return max;
+        }
+        if (isExact()) {
+            // 精确模式：与服务层的线性插值百分位算法保持一致
+            double[] sorted = Arrays.copyOf(levels.get(0), levelSizes.get(0));
+            Arrays.sort(sorted);
+            double index = fraction * (sorted.length - 1);
+            int lower = (int) Math.floor(index);
+            int upper = (int) Math.ceil(index);
+            double weight = index - lower;
+            return sorted[lower] * (1 - weight) + sorted[upper] * weight;
+        }
+        WeightedItems weighted = sortedWeightedItems();
+        double target = fraction * n;
+        long cumulative = 0;
+        for (int i = 0; i < weighted.values.length; i++) {
+            cumulative += weighted.weights[i];
+            if (cumulative >= target) {
+                return weighted.values[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 返回保留样本中落在 [lower, upper] 之外的值（用于近似异常值）
+     * 精确模式下即为全部异常值；估计模式下每个值代表若干原始样本。
+     */
+    public List<Double> valuesOutside(double lower, double upper) {
+        List<Double> outside = new ArrayList<>();
+        WeightedItems weighted = sortedWeightedItems();
+        for (double value : weighted.values) {
+            if (value < lower || value > upper) {
+                outside.add(value);
+            }
+        }
+        return outside;
+    }
+
+    /**
+     * 归一化秩误差上界（99% 置信度）；精确模式下为 0
+     */
+    public double normalizedRankError() {
+        return isExact() ? 0.0 : normalizedRankError(k);
+    }
+
+    public static double normalizedRankError(int k) {
+        return 2.296 / Math.pow(k, 0.9723);
+    }
+
+    public boolean isExact() {
+        return levels.size() == 1;
+    }
+
+    public long getN() {
+        return n;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public double getMin() {
+        return n == 0 ? 0.0 : min;
+    }
+
+    public double getMax() {
+        return n == 0 ? 0.0 : max;
+    }
+
+    public int getRetainedItems() {
+        int total = 0;
+        for (int size : levelSizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * 导出可序列化的状态（用于持久化）
+     */
+    public State toState() {
+        List<double[]> trimmed = new ArrayList<>(levels.size());
+        for (int h = 0; h < levels.size(); h++) {
+            trimmed.add(Arrays.copyOf(levels.get(h), levelSizes.get(h)));
+        }
+        return new State(k, n, n == 0 ? null : min, n == 0 ? null : max, trimmed);
+    }
+
+    public static KllSketch fromState(State state) {
+        KllSketch sketch = new KllSketch(state.k());
+        sketch.levels.clear();
+        sketch.levelSizes.clear();
+        for (double[] items : state.levels()) {
+            sketch.levels.add(Arrays.copyOf(items, Math.max(items.length, MIN_LEVEL_CAPACITY)));
+            sketch.levelSizes.add(items.length);
+        }
+        if (sketch.levels.isEmpty()) {
+            sketch.addLevel();
+        }
+        sketch.n = state.n();
+        sketch.min = state.min() == null ? Double.NaN : state.min();
+        sketch.max = state.max() == null ? Double.NaN : state.max();
+        return sketch;
+    }
+
+    /**
+     * 草图状态：每层只保存有效样本
+     */
+    public record State(int k, long n, Double min, Double max, List<double[]> levels) {
+    }
+
+    private void addLevel() {
+        levels.add(new double[MIN_LEVEL_CAPACITY]);
+        levelSizes.add(0);
+    }
+
+    private void append(int level, double value) {
+        double[] items = levels.get(level);
+        int size = levelSizes.get(level);
+        if (size == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+            levels.set(level, items);
+        }
+        items[size] = value;
+        levelSizes.set(level, size + 1);
+    }
+
+    private int levelCapacity(int level) {
+        int depth = levels.size() - 1 - level;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int totalCapacity() {
+        int total = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            total += levelCapacity(h);
+        }
+        return total;
+    }
+
+    private void compressIfNeeded() {
+        while (getRetainedItems() > totalCapacity()) {
+            for (int h = 0; h < levels.size(); h++) {
+                if (levelSizes.get(h) >= levelCapacity(h)) {
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 压缩第 h 层：排序后随机保留奇数位或偶数位，提升到 h+1 层（权重翻倍）
+     */
+    private void compact(int level) {
+        if (level == levels.size() - 1) {
+            addLevel();
+        }
+        double[] items = levels.get(level);
+        int size = levelSizes.get(level);
+        Arrays.sort(items, 0, size);
+
+        // 奇数个样本时保留最小值在本层，其余成对压缩
+        int start = size % 2;
+        int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+        for (int i = start + offset; i < size; i += 2) {
+            append(level + 1, items[i]);
+        }
+        levelSizes.set(level, start);
+    }
+
+    private WeightedItems sortedWeightedItems() {
+        int total = getRetainedItems();
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        int index = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            double[] items = levels.get(h);
+            int size = levelSizes.get(h);
+            for (int i = 0; i < size; i++) {
+                values[index] = items[i];
+                weights[index] = 1L << h;
+                index++;
+            }
+        }
+        // 按值排序，权重随之移动
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sortedValues = new double[total];
+        long[] sortedWeights = new long[total];
+        for (int i = 0; i < total; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        return new WeightedItems(sortedValues, sortedWeights);
+    }
+
+    private record WeightedItems(double[] values, long[] weights) {
+    }
+}
@@ -0,0 +1,16 @@
+-- 导入错误台账：每次被拒绝的数据源（文件或归档中的一条记录）一行，持久保存，不随导入结果一起丢失
+-- quarantine_path 为隔离目录中的副本，重放成功后写入 resolved_at
+CREATE TABLE IF NOT EXISTS import_errors (
+    id BIGSERIAL PRIMARY KEY,
+    source_path VARCHAR(1000) NOT NULL,
+    question_id BIGINT,
+    stage VARCHAR(20) NOT NULL,
+    exception_class VARCHAR(300),
+    message TEXT,
+    quarantine_path VARCHAR(1000),
+    occurred_at TIMESTAMP NOT NULL,
+    resolved_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_import_errors_source_path ON import_errors(source_path);
+CREATE INDEX IF NOT EXISTS idx_import_errors_quarantine_path ON import_errors(quarantine_path);
@@ -0,0 +1,13 @@
+-- 可解性分析按月预聚合草图（导入时构建）
+-- 每行保存某月某组（solvable / hard）的可合并统计：计数、求和、固定区间直方图、标签频次与 KLL 分位数草图
+CREATE TABLE IF NOT EXISTS solvability_month_sketches (
+    id BIGSERIAL PRIMARY KEY,
+    bucket_month DATE NOT NULL,
+    question_group VARCHAR(20) NOT NULL,
+    question_count INTEGER NOT NULL,
+    payload TEXT NOT NULL,
+    built_at TIMESTAMP NOT NULL,
+    CONSTRAINT uk_sketch_month_group UNIQUE (bucket_month, question_group)
+);
+
+CREATE INDEX IF NOT EXISTS idx_sketch_bucket_month ON solvability_month_sketches(bucket_month);
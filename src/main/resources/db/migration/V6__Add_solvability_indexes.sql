@@ -0,0 +1,10 @@
+-- 为可解性分类下推到 SQL 的 EXISTS 子查询提供索引
+
+-- 可解决问题：按 (question_id, answer_id) 定位被接受答案并直接读取其创建时间
+CREATE INDEX IF NOT EXISTS idx_answer_question_answer ON answers(question_id, answer_id) INCLUDE (creation_date);
+
+-- 难解决问题：判断某问题下是否存在高分答案
+CREATE INDEX IF NOT EXISTS idx_answer_question_score ON answers(question_id, score);
+
+-- 两类问题都只考虑未关闭的问题，并按创建时间窗口过滤
+CREATE INDEX IF NOT EXISTS idx_question_open_creation ON questions(creation_date) WHERE closed_date IS NULL;
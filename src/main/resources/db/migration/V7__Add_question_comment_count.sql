@@ -0,0 +1,11 @@
+-- 为 questions 表增加冗余的问题评论数（导入时维护），分析时无需加载评论正文
+ALTER TABLE questions
+    ADD COLUMN IF NOT EXISTS comment_count INTEGER NOT NULL DEFAULT 0;
+
+-- 按已有评论回填
+UPDATE questions q
+SET comment_count = c.cnt
+FROM (SELECT question_id, COUNT(*) AS cnt
+      FROM question_comments
+      GROUP BY question_id) c
+WHERE q.question_id = c.question_id;
@@ -0,0 +1,14 @@
+-- 导入清单：记录每个数据文件的大小、修改时间、内容哈希与导入状态
+-- 重复导入时跳过未变化的文件；IMPORTED 行与对应批次的数据在同一事务中提交，崩溃后从最后提交的批次继续
+CREATE TABLE IF NOT EXISTS import_manifest (
+    file_path VARCHAR(1000) PRIMARY KEY,
+    file_size BIGINT NOT NULL,
+    modified_at TIMESTAMP NOT NULL,
+    content_hash VARCHAR(64),
+    status VARCHAR(20) NOT NULL,
+    question_id BIGINT,
+    imported_at TIMESTAMP NOT NULL,
+    error_message TEXT
+);
+
+CREATE INDEX IF NOT EXISTS idx_import_manifest_status ON import_manifest(status);
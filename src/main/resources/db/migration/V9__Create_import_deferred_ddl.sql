@@ -0,0 +1,10 @@
+-- 批量重载模式暂时删除的二级索引与外键定义
+-- 删除前写入本表（与删除在同一事务中），重建成功后逐条删除；非空表示上次重载未恢复，下次导入会先恢复
+CREATE TABLE IF NOT EXISTS import_deferred_ddl (
+    object_type VARCHAR(20) NOT NULL,
+    table_name VARCHAR(200) NOT NULL,
+    object_name VARCHAR(200) NOT NULL,
+    definition TEXT NOT NULL,
+    deferred_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (object_type, table_name, object_name)
+);
@@ -0,0 +1,78 @@
+package cs209a.finalproject_demo.collector.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * reserve 只返回需要等待的时间，测试不真正等待；
+ * 连续预约之间实际经过的时间很短，断言留出 {@link #SLACK_NANOS} 的余量
+ */
+class TokenBucketRateLimiterTest {
+
+    private static final long SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    void spacesPermitsAtConfiguredRate() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 1);
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+
+        for (int i = 0; i < 10; i++) {
+            assertWait(i * interval, limiter.reserve());
+        }
+    }
+
+    @Test
+    void allowsBurstThenFallsBackToRate() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 5);
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+
+        for (int i = 0; i < 5; i++) {
+            assertWait(0, limiter.reserve());
+        }
+        assertWait(interval, limiter.reserve());
+        assertWait(2 * interval, limiter.reserve());
+    }
+
+    @Test
+    void pauseDelaysAllPermits() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1000, 1);
+        long pause = TimeUnit.SECONDS.toNanos(2);
+
+        limiter.pause(2, TimeUnit.SECONDS);
+        assertWait(pause, limiter.reserve());
+        assertWait(pause + TimeUnit.MILLISECONDS.toNanos(1), limiter.reserve());
+    }
+
+    @Test
+    void shorterPauseDoesNotShortenLongerOne() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1000, 1);
+
+        limiter.pause(2, TimeUnit.SECONDS);
+        limiter.pause(100, TimeUnit.MILLISECONDS);
+        assertWait(TimeUnit.SECONDS.toNanos(2), limiter.reserve());
+    }
+
+    @Test
+    void rejectsReservationsOnceQuotaIsExhausted() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1000, 10);
+        limiter.updateQuota(2);
+        // 乱序到达的较大剩余配额不会覆盖较小值
+        limiter.updateQuota(50);
+
+        limiter.reserve();
+        limiter.reserve();
+        assertEquals(0, limiter.getQuotaRemaining());
+        assertThrows(TokenBucketRateLimiter.QuotaExhaustedException.class, limiter::reserve);
+        assertEquals(0, limiter.getQuotaRemaining());
+    }
+
+    private static void assertWait(long expectedNanos, long actualNanos) {
+        assertTrue(actualNanos <= expectedNanos && actualNanos >= expectedNanos - SLACK_NANOS,
+                "expected wait of about " + expectedNanos + " ns but was " + actualNanos + " ns");
+    }
+}
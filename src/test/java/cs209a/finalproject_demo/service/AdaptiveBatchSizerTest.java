@@ -0,0 +1,102 @@
+package cs209a.finalproject_demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveBatchSizerTest {
+
+    private static final long TARGET_MILLIS = 100;
+    private static final long MAX_BYTES = 16L * 1024 * 1024;
+    // 高水位设为 1 以上时堆占用永远不超过，设为负数时每批都视为内存压力
+    private static final double NO_HEAP_PRESSURE = 2.0;
+    private static final double ALWAYS_HEAP_PRESSURE = -1.0;
+
+    @Test
+    void growsTowardTargetLatencyAtMostDoublingPerBatch() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10, 100_000, MAX_BYTES, TARGET_MILLIS, NO_HEAP_PRESSURE);
+        long nanosPerRow = 50_000; // 100 ms / 50 µs = 2000 行
+
+        long[] expected = {200, 400, 800, 1600, 2000, 2000};
+        for (long budget : expected) {
+            write(sizer, sizer.getRowBudget(), nanosPerRow);
+            assertEquals(budget, sizer.getRowBudget());
+        }
+    }
+
+    @Test
+    void shrinksTowardTargetLatencyAtMostHalvingPerBatch() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(10_000, 10, 100_000, MAX_BYTES, TARGET_MILLIS, NO_HEAP_PRESSURE);
+        long nanosPerRow = 50_000;
+
+        long[] expected = {5000, 2500, 2000, 2000};
+        for (long budget : expected) {
+            write(sizer, sizer.getRowBudget(), nanosPerRow);
+            assertEquals(budget, sizer.getRowBudget());
+        }
+    }
+
+    @Test
+    void followsSlowerDatabaseThroughMovingAverage() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(2000, 10, 100_000, MAX_BYTES, TARGET_MILLIS, NO_HEAP_PRESSURE);
+        write(sizer, 2000, 50_000);
+        assertEquals(2000, sizer.getRowBudget());
+
+        // 每行耗时翻倍：预算逐步趋近 1000 行，提交耗时回到目标值附近
+        for (int i = 0; i < 30; i++) {
+            write(sizer, sizer.getRowBudget(), 100_000);
+        }
+        assertEquals(1000, sizer.getRowBudget(), 10);
+    }
+
+    @Test
+    void staysWithinConfiguredRange() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(500, 200, 1000, MAX_BYTES, TARGET_MILLIS, NO_HEAP_PRESSURE);
+        for (int i = 0; i < 10; i++) {
+            write(sizer, sizer.getRowBudget(), 1_000);
+        }
+        assertEquals(1000, sizer.getRowBudget());
+
+        for (int i = 0; i < 10; i++) {
+            write(sizer, sizer.getRowBudget(), 10_000_000);
+        }
+        assertEquals(200, sizer.getRowBudget());
+    }
+
+    @Test
+    void halvesRowAndByteBudgetsUnderHeapPressure() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 10, 100_000, MAX_BYTES, TARGET_MILLIS,
+                ALWAYS_HEAP_PRESSURE);
+        long bytes = 4L * 1024 * 1024;
+
+        // 延迟允许放大时仍然减半
+        sizer.recordWrite(1000, bytes, 1000 * 1_000L);
+        assertEquals(500, sizer.getRowBudget());
+        assertEquals(bytes / 2, sizer.getByteBudget());
+
+        sizer.recordWrite(500, bytes / 2, 500 * 1_000L);
+        assertEquals(250, sizer.getRowBudget());
+        assertEquals(bytes / 4, sizer.getByteBudget());
+
+        for (int i = 0; i < 20; i++) {
+            sizer.recordWrite(sizer.getRowBudget(), 1024, 1_000L);
+        }
+        assertEquals(10, sizer.getRowBudget());
+    }
+
+    @Test
+    void batchIsFullByRowsOrBytesButNeverEmpty() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10, 1000, 1000, TARGET_MILLIS, NO_HEAP_PRESSURE);
+
+        assertFalse(sizer.isFull(0, 500, 5000));
+        assertFalse(sizer.isFull(3, 99, 999));
+        assertTrue(sizer.isFull(3, 100, 10));
+        assertTrue(sizer.isFull(1, 1, 1000));
+    }
+
+    private static void write(AdaptiveBatchSizer sizer, long rows, long nanosPerRow) {
+        sizer.recordWrite(rows, rows * 100, rows * nanosPerRow);
+    }
+}
@@ -0,0 +1,126 @@
+package cs209a.finalproject_demo.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KllSketchTest {
+
+    private static final double[] FRACTIONS = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99};
+
+    @Test
+    void smallInputIsExactAndMatchesLinearInterpolation() {
+        KllSketch sketch = new KllSketch();
+        for (double value : new double[]{7, 1, 5, 3, 9}) {
+            sketch.update(value);
+        }
+
+        assertTrue(sketch.isExact());
+        assertEquals(0.0, sketch.normalizedRankError());
+        assertEquals(1.0, sketch.quantile(0.0));
+        assertEquals(5.0, sketch.quantile(0.5));
+        assertEquals(4.0, sketch.quantile(0.375));
+        assertEquals(9.0, sketch.quantile(1.0));
+    }
+
+    @Test
+    void rankErrorStaysWithinReportedBound() {
+        int n = 100_000;
+        KllSketch sketch = new KllSketch();
+        for (double value : shuffledRange(0, n, 42)) {
+            sketch.update(value);
+        }
+
+        assertFalse(sketch.isExact());
+        assertEquals(n, sketch.getN());
+        assertTrue(sketch.getRetainedItems() < 3 * KllSketch.DEFAULT_K,
+                "retained " + sketch.getRetainedItems() + " items");
+        assertRankErrorWithinBound(sketch, n);
+    }
+
+    @Test
+    void mergeMatchesSketchOfUnion() {
+        int n = 60_000;
+        List<Double> values = shuffledRange(0, n, 7);
+        KllSketch union = new KllSketch();
+        KllSketch merged = new KllSketch();
+        // 按月预聚合的用法：多个大小不一的草图依次合并
+        int[] bounds = {0, 1_000, 16_000, 17_000, 45_000, n};
+        for (int part = 0; part + 1 < bounds.length; part++) {
+            KllSketch partSketch = new KllSketch();
+            for (double value : values.subList(bounds[part], bounds[part + 1])) {
+                partSketch.update(value);
+                union.update(value);
+            }
+            merged.merge(partSketch);
+        }
+
+        assertEquals(union.getN(), merged.getN());
+        assertEquals(union.getMin(), merged.getMin());
+        assertEquals(union.getMax(), merged.getMax());
+        assertRankErrorWithinBound(union, n);
+        assertRankErrorWithinBound(merged, n);
+    }
+
+    @Test
+    void exactMergeEqualsSketchOfUnion() {
+        KllSketch union = new KllSketch();
+        KllSketch left = new KllSketch();
+        KllSketch right = new KllSketch();
+        for (double value : shuffledRange(0, 150, 3)) {
+            union.update(value);
+            (value < 60 ? left : right).update(value);
+        }
+        left.merge(right);
+
+        assertTrue(left.isExact());
+        for (double fraction : FRACTIONS) {
+            assertEquals(union.quantile(fraction), left.quantile(fraction));
+        }
+    }
+
+    @Test
+    void stateRoundTripPreservesQuantiles() {
+        KllSketch sketch = new KllSketch();
+        for (double value : shuffledRange(0, 20_000, 11)) {
+            sketch.update(value);
+        }
+
+        KllSketch restored = KllSketch.fromState(sketch.toState());
+
+        assertEquals(sketch.getN(), restored.getN());
+        assertEquals(sketch.getRetainedItems(), restored.getRetainedItems());
+        for (double fraction : FRACTIONS) {
+            assertEquals(sketch.quantile(fraction), restored.quantile(fraction));
+        }
+    }
+
+    /**
+     * 样本为 0..n-1 的排列，值 v 的真实秩为 (v + 1) / n
+     */
+    private static void assertRankErrorWithinBound(KllSketch sketch, int n) {
+        double epsilon = sketch.normalizedRankError();
+        for (double fraction : FRACTIONS) {
+            double estimate = sketch.quantile(fraction);
+            double trueRank = (estimate + 1) / n;
+            assertTrue(Math.abs(trueRank - fraction) <= epsilon,
+                    "rank error at " + fraction + " is " + Math.abs(trueRank - fraction) + " > " + epsilon);
+        }
+    }
+
+    private static List<Double> shuffledRange(int from, int to, long seed) {
+        List<Double> values = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            values.add((double) i);
+        }
+        Collections.shuffle(values, new Random(seed));
+        return values;
+    }
+}
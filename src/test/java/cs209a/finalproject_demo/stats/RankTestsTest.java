@@ -0,0 +1,88 @@
+package cs209a.finalproject_demo.stats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 参考值：Mann-Whitney 与 scipy.stats.mannwhitneyu(method="asymptotic") 一致（正态近似、连续性与并列校正）；
+ * KS 为 Numerical Recipes 的 probks（λ = (√Ne + 0.12 + 0.11/√Ne)·D）
+ */
+class RankTestsTest {
+
+    private static final double P_TOLERANCE = 1e-6;
+
+    @Test
+    void separatedSamples() {
+        RankTests.Result result = RankTests.compare(
+                new double[]{1, 2, 3, 4, 5},
+                new double[]{6, 7, 8, 9, 10});
+
+        assertEquals(5, result.n1());
+        assertEquals(5, result.n2());
+        assertEquals(0.0, result.u());
+        assertEquals(0.012185780355344818, result.mannWhitneyP(), P_TOLERANCE);
+        assertEquals(1.0, result.ksStatistic());
+        assertEquals(0.0037813540593701006, result.ksP(), P_TOLERANCE);
+    }
+
+    @Test
+    void unequalSizes() {
+        // scipy 文档中 mannwhitneyu 的示例数据
+        RankTests.Result result = RankTests.compare(
+                new double[]{16, 19, 22, 24, 29},
+                new double[]{11, 12, 17, 20});
+
+        assertEquals(17.0, result.u());
+        assertEquals(0.11134688653314048, result.mannWhitneyP(), P_TOLERANCE);
+        assertEquals(0.6, result.ksStatistic(), 1e-12);
+        assertEquals(0.25870469671266844, result.ksP(), P_TOLERANCE);
+    }
+
+    @Test
+    void tiesUseAverageRanksAndTieCorrection() {
+        RankTests.Result result = RankTests.compare(
+                new double[]{1, 2, 2, 3, 3, 5},
+                new double[]{2, 3, 4, 4, 6, 7, 8});
+
+        assertEquals(8.0, result.u());
+        assertEquals(0.07057406795683319, result.mannWhitneyP(), P_TOLERANCE);
+        assertEquals(23.0 / 42.0, result.ksStatistic(), 1e-12);
+        assertEquals(0.19093360145775548, result.ksP(), P_TOLERANCE);
+    }
+
+    @Test
+    void identicalSamplesAreNotSignificant() {
+        double[] sample = {1, 2, 2, 3, 4};
+        RankTests.Result result = RankTests.compare(sample, sample.clone());
+
+        assertEquals(12.5, result.u());
+        assertEquals(0.0, result.z());
+        assertEquals(1.0, result.mannWhitneyP());
+        assertEquals(0.0, result.ksStatistic());
+        assertEquals(1.0, result.ksP());
+    }
+
+    @Test
+    void emptyGroupHasNoResult() {
+        assertNull(RankTests.compare(new double[0], new double[]{1, 2}));
+        assertNull(RankTests.compare(new double[]{1, 2}, new double[0]));
+    }
+
+    @Test
+    void kolmogorovTailMatchesCriticalValues() {
+        assertEquals(0.10, RankTests.kolmogorovQ(1.2238), 1e-4);
+        assertEquals(0.05, RankTests.kolmogorovQ(1.3581), 1e-4);
+        assertEquals(0.01, RankTests.kolmogorovQ(1.6276), 1e-4);
+        assertEquals(1.0, RankTests.kolmogorovQ(0.0));
+    }
+
+    @Test
+    void erfcMatchesReferenceValues() {
+        assertEquals(1.0, RankTests.erfc(0.0), 1e-7);
+        assertEquals(0.15729920705028513, RankTests.erfc(1.0), 1e-7);
+        assertEquals(0.4795001221869535, RankTests.erfc(0.5), 1e-7);
+        assertEquals(1.842700792949715, RankTests.erfc(-1.0), 1e-7);
+    }
+}